@@ -0,0 +1,26 @@
+package printocr;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+/*****************************************************************************************************************
+*
+*  BenchmarkRunner
+*
+*  Purpose: main class of benchmarks.jar. takes the usual jmh command line options but writes the results as
+*  	json (to jmh-result.json unless -rff is given) so runs can be compared between releases
+*
+******************************************************************************************************************/
+
+public class BenchmarkRunner{
+
+	public static void main(String[] args) throws Exception{
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		ChainedOptionsBuilder opt = new OptionsBuilder().parent(cmd);
+		if(!cmd.getResultFormat().hasValue()){
+			opt.resultFormat(ResultFormatType.JSON);
+		}
+		new Runner(opt.build()).run();
+	}
+}
@@ -0,0 +1,111 @@
+package printocr;
+
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import weka.core.Instances;
+
+/*****************************************************************************************************************
+*
+*  GlyphBenchmark
+*
+*  Purpose: jmh benchmarks for the per glyph stages of the pipeline. each call handles the next glyph of a
+*  	synthetic page so the score is the cost of one glyph. classification is run with both the
+*  	MultilayerPerceptron and the SMO model built from the font.arff training data (-Darff=<file> to change it).
+*  	nearestSample compares the glyph with every training vector of the arff data held in a TrainingMatrix
+*
+******************************************************************************************************************/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class GlyphBenchmark{
+
+	@Param({"150", "300", "600"})
+	public int dpi;
+
+	@Param({"10", "14"})
+	public int pointSize;
+
+	BitSet bits;
+	int width;
+	int height;
+	Region[] regions;
+	int[][][] glyphs;
+	LetterVector[] vectors;
+
+	@Setup(Level.Trial)
+	public void render(){
+		BufferedImage page = SyntheticPage.render(dpi, pointSize, 1.0, 4, 2, 474).getImage();
+		width = page.getWidth();
+		height = page.getHeight();
+		bits = PrintOcr.convertImageToBinary(page);
+		ArrayList<Region> all = new ArrayList<Region>();
+		for(ArrayList<Region> line: PrintOcr.order_by_line(PrintOcr.cluster_connected_pixels(bits, width, height), bits, width, height)){
+			all.addAll(line);
+		}
+		regions = all.toArray(new Region[all.size()]);
+		glyphs = new int[regions.length][][];
+		for(int i=0; i<regions.length; i++){
+			glyphs[i] = PrintOcr.getRegionMatrix(bits, width, height, regions[i], false);
+		}
+		vectors = new LetterVector[glyphs.length];
+		for(int i=0; i<glyphs.length; i++){
+			vectors[i] = PrintOcr.compute_attribute_vector(glyphs[i], false);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor{
+		int next = 0;
+	}
+
+	//the engine depends only on the model type so it is shared by all the dpi and point size combinations
+	@State(Scope.Benchmark)
+	public static class Model{
+		@Param({"mlp", "svm"})
+		public String model;
+
+		OcrEngine engine;
+
+		@Setup(Level.Trial)
+		public void build() throws Exception{
+			OcrConfig config = new OcrConfig.Builder().svm(model.equals("svm")).arffFile(System.getProperty("arff", "../font.arff")).build();
+			engine = OcrEngine.build(config);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Training{
+		TrainingMatrix matrix;
+
+		@Setup(Level.Trial)
+		public void load() throws Exception{
+			matrix = TrainingMatrix.fromInstances(OcrEngine.loadTrainingData(System.getProperty("arff", "../font.arff")));
+		}
+	}
+
+	@Benchmark
+	public int[][] regionMatrix(Cursor c){
+		return PrintOcr.getRegionMatrix(bits, width, height, regions[c.next++ % regions.length], false);
+	}
+
+	@Benchmark
+	public LetterVector features(Cursor c){
+		return PrintOcr.compute_attribute_vector(glyphs[c.next++ % glyphs.length], false);
+	}
+
+	@Benchmark
+	public String classify(Model m, Cursor c){
+		return m.engine.classify(vectors[c.next++ % vectors.length]);
+	}
+
+	@Benchmark
+	public int nearestSample(Training t, Cursor c){
+		return t.matrix.nearest(vectors[c.next++ % vectors.length], null);
+	}
+}
@@ -0,0 +1,109 @@
+package printocr;
+
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*****************************************************************************************************************
+*
+*  PageBenchmark
+*
+*  Purpose: jmh benchmarks for the page level stages of the pipeline (binarization, noise cleanup, deskew,
+*  	labeling, order_by_line and define_spaces) on synthetic pages rendered at several resolutions, font sizes, densities and page sizes.
+*  	labeling runs RunLabeler on a PageBits copy of the page, as the engine does
+*
+******************************************************************************************************************/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class PageBenchmark{
+
+	@Param({"150", "300", "600"})
+	public int dpi;
+
+	@Param({"10", "14"})
+	public int pointSize;
+
+	@Param({"0.3", "1.0"})
+	public double density;
+
+	//width x height in inches
+	@Param({"2x1", "4x2"})
+	public String size;
+
+	BufferedImage page;
+	BitSet bits;
+	int width;
+	int height;
+	PageArena arena;
+	PageBits page_bits;
+	ArrayList<ArrayList<Region>> lines;
+
+	@Setup(Level.Trial)
+	public void render(){
+		String[] wh = size.split("x");
+		page = SyntheticPage.render(dpi, pointSize, density, Double.parseDouble(wh[0]), Double.parseDouble(wh[1]), 474).getImage();
+		width = page.getWidth();
+		height = page.getHeight();
+		bits = PrintOcr.convertImageToBinary(page);
+		arena = new PageArena(new PageArena.Pool(0));
+		page_bits = PageBits.copyOf(bits, width, height, arena);
+		lines = PrintOcr.order_by_line(RunLabeler.label(page_bits), bits, width, height);
+	}
+
+	@TearDown(Level.Trial)
+	public void release(){
+		arena.close();
+	}
+
+	//order_by_line() empties the component list and merges regions so it needs fresh components every call
+	@State(Scope.Thread)
+	public static class Components{
+		ArrayList<Region> components;
+
+		@Setup(Level.Invocation)
+		public void label(PageBenchmark b){
+			components = RunLabeler.label(b.page_bits);
+		}
+	}
+
+	@Benchmark
+	public BitSet binarize(){
+		return PrintOcr.convertImageToBinary(page);
+	}
+
+	@Benchmark
+	public BitSet despeckle(){
+		return NoiseFilter.clean(bits, width, height, true, false, false);
+	}
+
+	@Benchmark
+	public BitSet openClose(){
+		return NoiseFilter.clean(bits, width, height, false, true, true);
+	}
+
+	@Benchmark
+	public BitSet deskew(){
+		return Deskew.deskew(bits, width, height, Deskew.MAX_DEGREES, false);
+	}
+
+	@Benchmark
+	public ArrayList<Region> label(){
+		return RunLabeler.label(page_bits);
+	}
+
+	@Benchmark
+	public ArrayList<ArrayList<Region>> orderByLine(Components c){
+		return PrintOcr.order_by_line(c.components, bits, width, height);
+	}
+
+	@Benchmark
+	public double[] defineSpaces(){
+		return PrintOcr.define_spaces(lines, width, height, false);
+	}
+}
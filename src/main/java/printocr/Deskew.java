@@ -0,0 +1,174 @@
+package printocr;
+
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  Deskew
+*
+*  Purpose: finds and removes the rotation of a scanned page before labeling. order_by_line() groups components
+*  	by overlapping y ranges, so even a 1 or 2 degree skew runs neighbouring lines together
+*
+*  	estimate: the page is cut into strips one long (64 pixels) wide. for a trial angle each strip is moved up or
+*  	down by the amount the angle predicts at its centre and the black pixels (popcounts) of each row of the
+*  	strips are added into one row profile. at the true angle the text lines line up, so the profile is all
+*  	peaks and gaps and its variance is largest. angles are searched coarse (every 0.5 degrees) and then fine
+*  	(every 0.05 degrees) around the best one. the popcounts are taken once, so each trial angle only adds up
+*  	height*width/64 numbers
+*
+*  	correct: two shears that together rotate the page back by the angle found. each strip is moved vertically
+*  	by whole rows, which straightens the lines, then each row is moved horizontally with word shifts, which
+*  	straightens the vertical strokes. the page keeps its size, anything sheared past the edges is lost
+*
+******************************************************************************************************************/
+
+public final class Deskew{
+
+	public static final double MAX_DEGREES = 5;
+	private static final double coarse_step = 0.5;
+	private static final double fine_step = 0.05;
+
+	private Deskew(){}
+
+	/*****************************************************************
+	 *
+	 * function: deskew()
+	 * input:
+	 * 	img: the binary image, bit i*width+j is the pixel in row i, column j. not modified
+	 * 	width, height: size of the image
+	 * 	maxDegrees: the largest skew looked for, either way
+	 * 	output: print the angle found
+	 * output:
+	 * 	the straightened image, or img itself if the skew moves no pixel by a whole row
+	 *
+	 *****************************************************************/
+	public static BitSet deskew(BitSet img, int width, int height, double maxDegrees, boolean output){
+		long[][] rows = PackedRows.pack(img, width, height);
+		double angle = estimateAngle(rows, width, maxDegrees);
+		if(output){
+			System.out.printf("estimated page skew = %.2f degrees\n", angle);
+		}
+		//largest movement at the corners of the page
+		if(Math.abs(Math.tan(Math.toRadians(angle)))*Math.max(width, height)/2<1){
+			return img;
+		}
+		return PackedRows.unpack(correct(rows, width, angle), width, height);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: estimateAngle()
+	 * input:
+	 * 	rows: the packed image
+	 * 	width: width of the image in pixels
+	 * 	maxDegrees: the largest skew looked for, either way
+	 * output:
+	 * 	the skew in degrees. positive if the lines go down to the right
+	 *
+	 *****************************************************************/
+	public static double estimateAngle(long[][] rows, int width, double maxDegrees){
+		int height = rows.length;
+		if(height==0){
+			return 0;
+		}
+		int words = rows[0].length;
+		int[][] counts = new int[height][words];
+		for(int i=0; i<height; i++){
+			for(int k=0; k<words; k++){
+				counts[i][k] = Long.bitCount(rows[i][k]);
+			}
+		}
+		//the profile has room for every row moved by the largest shift either way
+		int max_shift = (int)Math.ceil(Math.tan(Math.toRadians(maxDegrees))*width/2)+1;
+		long[] profile = new long[height+2*max_shift];
+		int[] shifts = new int[words];
+
+		double best = 0;
+		long best_score = score(counts, 0, width, profile, shifts, max_shift);
+		for(double a=-maxDegrees; a<=maxDegrees+1e-9; a+=coarse_step){
+			long s = score(counts, a, width, profile, shifts, max_shift);
+			if(s>best_score){
+				best_score = s;
+				best = a;
+			}
+		}
+		double centre = best;
+		for(double a=centre-coarse_step; a<=centre+coarse_step+1e-9; a+=fine_step){
+			if(Math.abs(a)>maxDegrees){
+				continue;
+			}
+			long s = score(counts, a, width, profile, shifts, max_shift);
+			if(s>best_score){
+				best_score = s;
+				best = a;
+			}
+		}
+		return best;
+	}
+
+	//sum of the squares of the sheared row profile. the total is the same for every angle so this orders the
+	//angles the same way as the variance does
+	private static long score(int[][] counts, double degrees, int width, long[] profile, int[] shifts, int max_shift){
+		stripShifts(degrees, width, shifts);
+		Arrays.fill(profile, 0);
+		for(int i=0; i<counts.length; i++){
+			int[] row = counts[i];
+			for(int k=0; k<row.length; k++){
+				profile[i-shifts[k]+max_shift] += row[k];
+			}
+		}
+		long sum = 0;
+		for(long p: profile){
+			sum += p*p;
+		}
+		return sum;
+	}
+
+	//how far down the angle moves the centre of each strip, relative to the centre of the page
+	private static void stripShifts(double degrees, int width, int[] shifts){
+		double t = Math.tan(Math.toRadians(degrees));
+		for(int k=0; k<shifts.length; k++){
+			double x = Math.min((k<<6)+32, width) - width/2.0;
+			shifts[k] = (int)Math.round(x*t);
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: correct()
+	 * purpose: rotates the packed image back by the angle with a vertical shear of the strips followed by a
+	 * 	horizontal shear of the rows
+	 * output:
+	 * 	the new packed image, the same size as the old one
+	 *
+	 *****************************************************************/
+	public static long[][] correct(long[][] rows, int width, double degrees){
+		int height = rows.length;
+		int words = height==0 ? 0 : rows[0].length;
+		long last = PackedRows.lastWordMask(width);
+		int[] shifts = new int[words];
+		stripShifts(degrees, width, shifts);
+
+		//a line that goes down to the right is moved up on the right of the page
+		long[][] sheared = new long[height][words];
+		for(int k=0; k<words; k++){
+			for(int i=0; i<height; i++){
+				int from = i+shifts[k];
+				if(from>=0&&from<height){
+					sheared[i][k] = rows[from][k];
+				}
+			}
+		}
+
+		//the strokes of a page skewed this way lean left going down, so rows below the centre move right and rows
+		//above it move left
+		double t = Math.tan(Math.toRadians(degrees));
+		for(int i=0; i<height; i++){
+			int shift = (int)Math.round((i-height/2.0)*t);
+			if(shift!=0){
+				sheared[i] = PackedRows.shiftRow(sheared[i], shift, last);
+			}
+		}
+		return sheared;
+	}
+}
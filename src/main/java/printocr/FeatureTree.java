@@ -0,0 +1,167 @@
+package printocr;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+import weka.core.*;
+import weka.classifiers.trees.J48;
+
+/*****************************************************************************************************************
+*
+*  FeatureTree
+*
+*  Purpose: a weka J48 decision tree copied into plain arrays so a glyph can be classified while its attributes
+*  	are computed. walking the tree only asks GlyphFeatures for the attributes tested on the path from the root to
+*  	the leaf, so most glyphs never compute most of the 25 attributes. immutable once built, so it is safe to share
+*  	between threads
+*
+*  	the tree is read from J48's graph() output. the split points there are rounded to 6 decimals, so each one is
+*  	snapped back to the training value it was taken from, and the copy is checked against the J48 on the
+*  	training data before it is used
+*
+******************************************************************************************************************/
+
+public final class FeatureTree{
+
+	private static final Pattern node_line = Pattern.compile("N(\\d+) \\[label=\"(.*)\" (shape=box style=filled )?\\]");
+	private static final Pattern edge_line = Pattern.compile("N(\\d+)->N(\\d+) \\[label=\"(<=|>) (.*)\"\\]");
+
+	//node i tests attribute[i] <= split[i] and goes to left[i] or right[i]. leaves have attribute -1 and a label
+	private final int[] attribute;
+	private final double[] split;
+	private final int[] left;
+	private final int[] right;
+	private final int[] label; //index of the class, same order as alpha_tnr
+	private final double[] purity; //share of the training instances reaching a leaf that have its class
+
+	/*****************************************************************
+	 *
+	 * function: FeatureTree()
+	 * input:
+	 * 	tree: a J48 built from data
+	 * 	data: the training data, class attribute last
+	 *
+	 *****************************************************************/
+	public FeatureTree(J48 tree, Instances data) throws Exception{
+		HashMap<Integer, Integer> ids = new HashMap<Integer, Integer>();
+		ArrayList<int[]> edges = new ArrayList<int[]>(); //parent, child, 0 for <= or 1 for >
+		ArrayList<Double> points = new ArrayList<Double>();
+		ArrayList<String> labels = new ArrayList<String>();
+		ArrayList<Boolean> leaves = new ArrayList<Boolean>();
+		BufferedReader in = new BufferedReader(new StringReader(tree.graph()));
+		String line;
+		while((line = in.readLine())!=null){
+			Matcher m = edge_line.matcher(line);
+			if(m.matches()){
+				edges.add(new int[]{Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), m.group(3).equals("<=") ? 0 : 1});
+				points.add(Double.parseDouble(m.group(4)));
+				continue;
+			}
+			m = node_line.matcher(line);
+			if(m.matches()){
+				ids.put(Integer.parseInt(m.group(1)), labels.size());
+				labels.add(Utils.unbackQuoteChars(m.group(2)));
+				leaves.add(m.group(3)!=null);
+			}else if(line.contains("->")){
+				throw new Exception("Error: can't read the split "+line+" of the decision tree");
+			}
+		}
+		if(labels.isEmpty()){
+			throw new Exception("Error: the decision tree is empty");
+		}
+
+		int n = labels.size();
+		attribute = new int[n];
+		split = new double[n];
+		left = new int[n];
+		right = new int[n];
+		label = new int[n];
+		purity = new double[n];
+		for(int i=0; i<n; i++){
+			String text = labels.get(i);
+			if(leaves.get(i)){
+				//e.g. "a (12.0/1.0)", the class name may itself contain brackets
+				attribute[i] = -1;
+				label[i] = data.classAttribute().indexOfValue(text.substring(0, text.lastIndexOf(" (")));
+				String[] counts = text.substring(text.lastIndexOf(" (")+2, text.length()-1).split("/"); //instances and errors
+				double total = Double.parseDouble(counts[0]);
+				double errors = counts.length>1 ? Double.parseDouble(counts[1]) : 0;
+				purity[i] = total>0 ? (total-errors)/total : 0;
+			}else{
+				Attribute att = data.attribute(text);
+				if(att==null){
+					throw new Exception("Error: the decision tree tests the unknown attribute "+text);
+				}
+				attribute[i] = att.index();
+			}
+		}
+		for(int e=0; e<edges.size(); e++){
+			int parent = ids.get(edges.get(e)[0]);
+			int child = ids.get(edges.get(e)[1]);
+			if(edges.get(e)[2]==0){
+				left[parent] = child;
+				split[parent] = snap(data, attribute[parent], points.get(e));
+			}else{
+				right[parent] = child;
+			}
+		}
+
+		int wrong = 0;
+		for(int i=0; i<data.numInstances(); i++){
+			if(classify(data.instance(i))!=(int)tree.classifyInstance(data.instance(i))){
+				wrong++;
+			}
+		}
+		if(wrong>0){
+			throw new Exception("Error: the copy of the decision tree disagrees with J48 on "+wrong+" training instances");
+		}
+	}
+
+	//J48 splits at one of the training values, so the rounded split point is replaced by the closest one
+	private static double snap(Instances data, int att, double rounded){
+		double best = rounded;
+		double best_diff = 5e-7; //half of the last decimal printed
+		for(int i=0; i<data.numInstances(); i++){
+			double v = data.instance(i).value(att);
+			if(Math.abs(v-rounded)<=best_diff){
+				best = v;
+				best_diff = Math.abs(v-rounded);
+			}
+		}
+		return best;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: classify()
+	 * purpose: walks the tree, computing only the attributes tested on the way
+	 * output:
+	 * 	the index of the class, same order as alpha_tnr
+	 *
+	 *****************************************************************/
+	public int classify(GlyphFeatures glyph){
+		return classify(glyph, null);
+	}
+
+	//the same, also putting the purity of the leaf reached in confidence[0] if confidence isn't null
+	public int classify(GlyphFeatures glyph, double[] confidence){
+		int node = 0;
+		while(attribute[node]>=0){
+			node = glyph.value(attribute[node])<=split[node] ? left[node] : right[node];
+		}
+		if(confidence!=null){
+			confidence[0] = purity[node];
+		}
+		return label[node];
+	}
+
+	private int classify(Instance inst){
+		int node = 0;
+		while(attribute[node]>=0){
+			node = inst.value(attribute[node])<=split[node] ? left[node] : right[node];
+		}
+		return label[node];
+	}
+
+	public int size(){ return attribute.length; }
+}
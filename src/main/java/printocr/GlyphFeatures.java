@@ -0,0 +1,136 @@
+package printocr;
+
+/*****************************************************************************************************************
+*
+*  GlyphFeatures
+*
+*  Purpose: the attributes of one component (glyph), computed only when they are asked for and remembered after
+*  	that. compute_attribute_vector() asks for all of them, FeatureTree only for the ones on the path the decision
+*  	tree takes, which on most glyphs skips the two costly component counts (cc and c). the attributes are in the
+*  	same order as PrintOcr.attributes. not thread safe, each glyph is classified by one thread
+*
+******************************************************************************************************************/
+
+public final class GlyphFeatures{
+
+	public static final int NUM_FEATURES = 25;
+
+	private static final int Q1 = 15; //the four quadrant weights are computed together
+	private static final double[] weights = {
+		1, 1, 1, 1, 1, 1, 1, 1, 1, 1, //V10-V90, H10-H90
+		1, 1, //hsymm, vsymm
+		1, 5, 0.1, //cc, hw, c
+		2, 2, 2, 2, //q1-q4
+		1, 1, 1, 1, 1, 1 //Ih30-Ih80, Iv30-Iv80
+	};
+
+	private final int[][] pixels;
+	private final double[] values = new double[NUM_FEATURES];
+	private final boolean[] computed = new boolean[NUM_FEATURES];
+	private int evaluated = 0;
+	private int[] col_sums; //of every column, made by the first of V10-V90 asked for
+
+	public GlyphFeatures(int[][] pixels){
+		this.pixels = pixels;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: value()
+	 * input:
+	 * 	index: the attribute, 0 to NUM_FEATURES-1
+	 * output:
+	 * 	the value of the attribute, computed the first time it is asked for
+	 *
+	 *****************************************************************/
+	public double value(int index){
+		if(!computed[index]){
+			compute(index);
+		}
+		return values[index];
+	}
+
+	public static double weight(int index){ return weights[index]; }
+
+	//number of attributes computed so far
+	public int getEvaluated(){ return evaluated; }
+
+	//computes every attribute that hasn't been yet
+	public GlyphFeatures evaluateAll(){
+		for(int i=0; i<NUM_FEATURES; i++){
+			value(i);
+		}
+		return this;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: toVector()
+	 * purpose: computes every attribute that hasn't been yet and copies them into a LetterVector
+	 * output:
+	 * 	the LetterVector of all the attributes, sharing the weights
+	 *
+	 *****************************************************************/
+	public LetterVector toVector(){
+		return new LetterVector(evaluateAll().values.clone(), weights);
+	}
+
+	private void compute(int index){
+		int w = pixels[0].length;
+		int h = pixels.length;
+		switch(index){
+			case 0: set(index, (double)colSums()[w*1/10]/h); break; // V10 sum
+			case 1: set(index, (double)colSums()[w*3/10]/h); break; // V30 sum
+			case 2: set(index, (double)colSums()[w*5/10]/h); break; // V50 sum
+			case 3: set(index, (double)colSums()[w*8/10]/h); break; // V80 sum
+			case 4: set(index, (double)colSums()[w*9/10]/h); break; // V90 sum
+
+			case 5: set(index, PrintOcr.pixel_row_sum(pixels, h*1/10)/w); break; // H10 sum
+			case 6: set(index, PrintOcr.pixel_row_sum(pixels, h*3/10)/w); break; // H30 sum
+			case 7: set(index, PrintOcr.pixel_row_sum(pixels, h*5/10)/w); break; // H50 sum
+			case 8: set(index, PrintOcr.pixel_row_sum(pixels, h*8/10)/w); break; // H80 sum
+			case 9: set(index, PrintOcr.pixel_row_sum(pixels, h*9/10)/w); break; // H90 sum
+
+			case 10: set(index, PrintOcr.reflect_over_vertical(pixels)); break; // horizontal symmetry
+			case 11: set(index, PrintOcr.reflect_over_horizontal(pixels)); break; // vertical symmetry
+
+			case 12: set(index, PrintOcr.count_closed_components(pixels).size()); break; //number of closed components
+			case 13: set(index, (double)h/w); break; // height to width ratio
+			case 14: set(index, PrintOcr.count_components(pixels)); break; //number of components (if not a merged char will be zero)
+
+			case 15: case 16: case 17: case 18:
+				double[] quadrants = PrintOcr.weight_quadrants(pixels);
+				for(int q=0; q<4; q++){
+					set(Q1+q, quadrants[q]); //q1-q4
+				}
+				break;
+
+			case 19: set(index, PrintOcr.pixel_row_intersects(pixels, h*3/10)); break; //Ih30
+			case 20: set(index, PrintOcr.pixel_row_intersects(pixels, h*5/10)); break; //Ih50
+			case 21: set(index, PrintOcr.pixel_row_intersects(pixels, h*8/10)); break; //Ih80
+			case 22: set(index, PrintOcr.pixel_col_intersects(pixels, w*3/10)); break; //Iv30
+			case 23: set(index, PrintOcr.pixel_col_intersects(pixels, w*5/10)); break; //Iv50
+			case 24: set(index, PrintOcr.pixel_col_intersects(pixels, w*8/10)); break; //Iv80
+			default:
+				throw new IndexOutOfBoundsException("Error: there is no attribute "+index);
+		}
+	}
+
+	//the same sums as PrintOcr.pixel_col_sum(), adding whole rows at a time
+	private int[] colSums(){
+		if(col_sums==null){
+			col_sums = new int[pixels[0].length];
+			PixelKernels kernels = PixelKernels.get();
+			for(int i=0; i<pixels.length; i++){
+				kernels.addTo(pixels[i], col_sums);
+			}
+		}
+		return col_sums;
+	}
+
+	private void set(int index, double value){
+		values[index] = value;
+		computed[index] = true;
+		evaluated++;
+	}
+}
@@ -0,0 +1,73 @@
+package printocr;
+
+/*****************************************************************************************************************
+*
+*  LetterVector
+*
+*  Purpose: the attribute values of one glyph in a fixed length double[], with the weight of each attribute. the
+*  	weights are shared by every vector made by GlyphFeatures and are never written. a set of training vectors is
+*  	kept in a TrainingMatrix instead of as LetterVectors
+*
+******************************************************************************************************************/
+
+class LetterVector{
+	private final double[] vector;
+	private final double[] weights; //shared, null weighs every attribute 1
+	private String classifier;
+	
+	//the vector keeps the values array, it isn't copied
+	public LetterVector(double[] values, double[] weights){
+		this(values, weights, null);
+	}
+	
+	public LetterVector(double[] values, double[] weights, String c){
+		this.vector = values;
+		this.weights = weights;
+		this.classifier = c;
+	}
+	
+	public double valueAt(int index){
+		if(index<0||index>=this.vector.length){
+			return -1;
+		}else{
+			return this.vector[index];
+		}
+	}
+	
+	public double weightAt(int index){
+		if(this.weights==null||index>=this.weights.length){
+			return 1;
+		}else{
+			return this.weights[index];
+		}
+	}
+	
+	public void setClassifier(String c){
+		this.classifier = c;
+	}
+	
+	public int size(){ return this.vector.length; }
+	
+	public String getClassifier(){ return this.classifier; }
+	
+	//make sure you always add attr in the same order and amount
+	public double computeDistanceTo(LetterVector in){
+		int len = Math.min(this.vector.length, in.vector.length);
+		double distance = 0;
+		for(int i=0; i<len; i++){
+			distance += in.weightAt(i)*Math.abs(this.vector[i]-in.vector[i]);
+		}
+		return distance;
+	}
+	
+	public String toString(){
+		StringBuilder result = new StringBuilder();
+		for(int i=0; i<this.vector.length; i++){
+			if(i>0){
+				result.append(", ");
+			}
+			result.append(this.vector[i]);
+		}
+		return result.toString();
+	}
+}
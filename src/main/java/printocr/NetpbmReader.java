@@ -0,0 +1,247 @@
+package printocr;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  NetpbmReader
+*
+*  Purpose: reads raw pbm (P4, 1 bit per pixel) and pgm (P5, 8 or 16 bits per pixel) files straight into the
+*  	binary image used by the pipeline, without ImageIO, a BufferedImage or the grayscale conversion of
+*  	PrintOcr.convertImageToBinary(). some scanners write these formats, and ImageIO can't read them anyway
+*
+*  	the file is memory mapped (FileChannel.map) and only the header is parsed when it is opened. a mapping can't
+*  	be larger than 2 GB, so the file is mapped as windows of 1 GB and read with long offsets, which lets pages
+*  	of more than 2^31 pixels be read into a PageBits. pbm rows are already packed 8 pixels to a byte with 1
+*  	meaning black, so each byte is bit reversed and ORed into the long where its pixels go, there is no per
+*  	pixel work. pgm pixels are thresholded at the average gray value, as in convertImageToBinary(), reading the
+*  	mapped bytes twice (once for the average)
+*
+*  	the mapping is released when the reader is garbage collected
+*
+******************************************************************************************************************/
+
+public final class NetpbmReader{
+
+	private static final int window_shift = 30;
+	private static final long window_mask = (1L<<window_shift)-1;
+
+	private final MappedByteBuffer[] windows;
+	private final boolean bitmap;
+	private final int width;
+	private final int height;
+	private final int maxval;
+	private final long offset; //of the first pixel
+
+	private NetpbmReader(MappedByteBuffer[] windows, boolean bitmap, int width, int height, int maxval, long offset){
+		this.windows = windows;
+		this.bitmap = bitmap;
+		this.width = width;
+		this.height = height;
+		this.maxval = maxval;
+		this.offset = offset;
+	}
+
+	public int getWidth(){ return width; }
+	public int getHeight(){ return height; }
+	//true for pbm, false for pgm
+	public boolean isBitmap(){ return bitmap; }
+
+	/*****************************************************************
+	 *
+	 * function: isRaw()
+	 * output:
+	 * 	true if the file starts with the P4 or P5 magic number
+	 *
+	 *****************************************************************/
+	public static boolean isRaw(Path file) throws IOException{
+		InputStream in = Files.newInputStream(file);
+		try{
+			int p = in.read();
+			int n = in.read();
+			return p=='P'&&(n=='4'||n=='5');
+		}finally{
+			in.close();
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: open()
+	 * purpose: maps the file and reads its header
+	 * output:
+	 * 	the reader. throws an IOException if the file isn't a raw pbm or pgm file or is shorter than its header says
+	 *
+	 *****************************************************************/
+	public static NetpbmReader open(Path file) throws IOException{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		long length = 0;
+		MappedByteBuffer[] windows = null;
+		try{
+			length = channel.size();
+			windows = new MappedByteBuffer[(int)((length+window_mask)>>>window_shift)];
+			for(int w=0; w<windows.length; w++){
+				long start = (long)w<<window_shift;
+				//mappings stay valid after the channel is closed
+				windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L<<window_shift, length-start));
+			}
+		}finally{
+			channel.close();
+		}
+		NetpbmReader header = new NetpbmReader(windows, false, 0, 0, 0, 0);
+		if(length<2||header.at(0)!='P'||(header.at(1)!='4'&&header.at(1)!='5')){
+			throw new IOException("Error: "+file+" is not a raw pbm or pgm file");
+		}
+		boolean bitmap = header.at(1)=='4';
+		long[] pos = {2};
+		int width = header.number(pos, length, file);
+		int height = header.number(pos, length, file);
+		int maxval = bitmap ? 1 : header.number(pos, length, file);
+		if(width<=0||height<=0||maxval<=0||maxval>65535){
+			throw new IOException("Error: "+file+" has a bad pbm or pgm header");
+		}
+		long offset = pos[0]+1; //a single whitespace character ends the header
+		long row = bitmap ? (width+7)>>>3 : (long)width*(maxval>255 ? 2 : 1);
+		if(offset+row*height>length){
+			throw new IOException("Error: "+file+" is shorter than its pbm or pgm header says");
+		}
+		return new NetpbmReader(windows, bitmap, width, height, maxval, offset);
+	}
+
+	//the byte at position pos of the file
+	private byte at(long pos){
+		return windows[(int)(pos>>>window_shift)].get((int)(pos&window_mask));
+	}
+
+	//the next decimal number of the header, skipping whitespace and # comments. pos is left on the character after it
+	private int number(long[] pos, long limit, Path file) throws IOException{
+		long p = pos[0];
+		while(p<limit){
+			byte c = at(p);
+			if(c=='#'){
+				while(p<limit&&at(p)!='\n'&&at(p)!='\r'){
+					p++;
+				}
+			}else if(Character.isWhitespace(c)){
+				p++;
+			}else{
+				break;
+			}
+		}
+		long value = 0;
+		long start = p;
+		while(p<limit&&at(p)>='0'&&at(p)<='9'&&value<=Integer.MAX_VALUE){
+			value = value*10 + (at(p)-'0');
+			p++;
+		}
+		if(p==start||value>Integer.MAX_VALUE){
+			throw new IOException("Error: "+file+" has a bad pbm or pgm header");
+		}
+		pos[0] = p;
+		return (int)value;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: binarize()
+	 * input:
+	 * 	arena: owns the image, which can't be used after the arena is closed
+	 * output:
+	 * 	the binary image, bit i*width+j is the pixel in row i, column j
+	 *
+	 *****************************************************************/
+	public PageBits binarize(PageArena arena){
+		PageBits page = arena.allocate(width, height);
+		if(bitmap){
+			unpackBits(page);
+		}else{
+			threshold(page);
+		}
+		return page;
+	}
+
+	private void unpackBits(PageBits page){
+		int row_bytes = (width+7)>>>3;
+		long last = (width&7)==0 ? 0xff : (1<<(width&7))-1; //pixels of the last byte that are inside the row
+		for(int i=0; i<height; i++){
+			long start = (long)i*width;
+			long p = offset + (long)i*row_bytes;
+			for(int k=0; k<row_bytes; k++){
+				int b = at(p+k)&0xff;
+				if(b==0){
+					continue;
+				}
+				//the first pixel is the high bit of the byte but the lowest bit of the page
+				long v = Integer.reverse(b)>>>24;
+				if(k==row_bytes-1){
+					v &= last;
+				}
+				long bit = start + ((long)k<<3);
+				int off = (int)(bit&63);
+				page.orWord(bit>>>6, v<<off);
+				if(off>56&&v>>>(64-off)!=0){ //a pixel past the last word of the page never spills
+					page.orWord((bit>>>6)+1, v>>>(64-off));
+				}
+			}
+		}
+	}
+
+	private void threshold(PageBits page){
+		long n = page.size();
+		long sum = 0;
+		for(long p=0; p<n; p++){
+			sum += sample(p);
+		}
+		int threshold = (int)(sum/n);
+		long word = 0;
+		for(long p=0; p<n; p++){
+			if(sample(p)<threshold){ //lower numbers are black points
+				word |= 1L<<(p&63);
+			}
+			if((p&63)==63||p==n-1){
+				page.orWord(p>>>6, word);
+				word = 0;
+			}
+		}
+	}
+
+	//gray value of pixel p (row major) of a pgm, 16 bit values are big endian
+	private int sample(long p){
+		if(maxval>255){
+			long pos = offset+2*p;
+			return (at(pos)&0xff)<<8 | at(pos+1)&0xff;
+		}
+		return at(offset+p)&0xff;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: toImage()
+	 * purpose: a color copy of the image, for outlining the components when debugging. the pipeline doesn't use it
+	 *
+	 *****************************************************************/
+	public BufferedImage toImage(){
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int row_bytes = (width+7)>>>3;
+		for(int i=0; i<height; i++){
+			for(int j=0; j<width; j++){
+				int gray = 0;
+				if(bitmap){
+					gray = (at(offset + (long)i*row_bytes + (j>>>3))<<(j&7)&0x80)!=0 ? 0 : 255;
+				}else{
+					gray = sample((long)i*width+j)*255/maxval;
+				}
+				img.setRGB(j, i, gray<<16 | gray<<8 | gray);
+			}
+		}
+		return img;
+	}
+}
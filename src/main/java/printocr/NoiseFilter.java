@@ -0,0 +1,228 @@
+package printocr;
+
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  NoiseFilter
+*
+*  Purpose: removes scanner noise so fewer bogus components reach the classifier. works in two places
+*
+*  	before labeling, on the binary image packed 64 pixels to a long with every row starting on a new long
+*  	(see PackedRows):
+*  		despeckle: clears black pixels with no black neighbour (8-connected)
+*  		opening: erosion then dilation with a 3x3 square, removes specks and spurs smaller than 3x3
+*  		closing: dilation then erosion with a 3x3 square, fills pin holes and small gaps in the strokes
+*  	each output long is computed from the longs above, below and beside it with shifts and AND/OR, so a pass
+*  	over the image handles 64 pixels per operation instead of one
+*
+*  	after labeling, components much smaller than the typical (median) letter are dropped. a dropped speck
+*  	that lies inside the box of a kept component is marked as noise on that component so getRegionMatrix()
+*  	leaves it out of the letter
+*
+*  	opening and closing change the strokes of small or thin fonts, so they are off unless asked for
+*
+******************************************************************************************************************/
+
+public final class NoiseFilter{
+
+	private static final int min_text_height = 5; //components lower than this don't count towards the median size
+
+	private NoiseFilter(){}
+
+	/*****************************************************************
+	 *
+	 * function: clean()
+	 * input:
+	 * 	img: the binary image, bit i*width+j is the pixel in row i, column j. not modified
+	 * 	width, height: size of the image
+	 * 	despeckle, open, close: the cleanups to run, in that order
+	 * output:
+	 * 	the cleaned binary image in the same layout
+	 *
+	 *****************************************************************/
+	public static BitSet clean(BitSet img, int width, int height, boolean despeckle, boolean open, boolean close){
+		if(!despeckle&&!open&&!close){
+			return img;
+		}
+		long[][] rows = PackedRows.pack(img, width, height);
+		long last = PackedRows.lastWordMask(width);
+		if(despeckle){
+			rows = despeckle(rows, last);
+		}
+		if(open){
+			rows = dilate(erode(rows, last), last);
+		}
+		if(close){
+			rows = erode(dilate(rows, last), last);
+		}
+		return PackedRows.unpack(rows, width, height);
+	}
+
+	//bit j of the result is the pixel to the left (x-1) of bit j of row[k]
+	private static long west(long[] row, int k){
+		return (row[k]<<1) | (k>0 ? row[k-1]>>>63 : 0);
+	}
+
+	//bit j of the result is the pixel to the right (x+1) of bit j of row[k]
+	private static long east(long[] row, int k){
+		return (row[k]>>>1) | (k<row.length-1 ? row[k+1]<<63 : 0);
+	}
+
+	//each pixel OR its left and right neighbours
+	private static long[][] horizontalDilate(long[][] rows, long last){
+		long[][] out = new long[rows.length][];
+		for(int i=0; i<rows.length; i++){
+			long[] r = rows[i];
+			long[] o = new long[r.length];
+			for(int k=0; k<r.length; k++){
+				o[k] = r[k] | west(r, k) | east(r, k);
+			}
+			o[r.length-1] &= last;
+			out[i] = o;
+		}
+		return out;
+	}
+
+	//each pixel AND its left and right neighbours. pixels outside the image are white
+	private static long[][] horizontalErode(long[][] rows, long last){
+		long[][] out = new long[rows.length][];
+		for(int i=0; i<rows.length; i++){
+			long[] r = rows[i];
+			long[] o = new long[r.length];
+			for(int k=0; k<r.length; k++){
+				o[k] = r[k] & west(r, k) & east(r, k);
+			}
+			o[r.length-1] &= last;
+			out[i] = o;
+		}
+		return out;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: dilate()
+	 * purpose: 3x3 square dilation, a pixel is black if any pixel in the 3x3 square around it is black
+	 *
+	 *****************************************************************/
+	static long[][] dilate(long[][] rows, long last){
+		long[][] h = horizontalDilate(rows, last);
+		long[][] out = new long[rows.length][];
+		for(int i=0; i<rows.length; i++){
+			long[] o = h[i].clone();
+			for(int k=0; k<o.length; k++){
+				if(i>0){
+					o[k] |= h[i-1][k];
+				}
+				if(i<rows.length-1){
+					o[k] |= h[i+1][k];
+				}
+			}
+			out[i] = o;
+		}
+		return out;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: erode()
+	 * purpose: 3x3 square erosion, a pixel stays black only if the whole 3x3 square around it is black
+	 *
+	 *****************************************************************/
+	static long[][] erode(long[][] rows, long last){
+		long[][] h = horizontalErode(rows, last);
+		long[][] out = new long[rows.length][];
+		for(int i=0; i<rows.length; i++){
+			long[] o = h[i].clone();
+			for(int k=0; k<o.length; k++){
+				o[k] &= (i>0 ? h[i-1][k] : 0) & (i<rows.length-1 ? h[i+1][k] : 0);
+			}
+			out[i] = o;
+		}
+		return out;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: despeckle()
+	 * purpose: clears every black pixel that has no black pixel among its 8 neighbours
+	 *
+	 *****************************************************************/
+	static long[][] despeckle(long[][] rows, long last){
+		long[][] h = horizontalDilate(rows, last);
+		long[][] out = new long[rows.length][];
+		for(int i=0; i<rows.length; i++){
+			long[] r = rows[i];
+			long[] o = new long[r.length];
+			for(int k=0; k<r.length; k++){
+				long neighbours = west(r, k) | east(r, k);
+				if(i>0){
+					neighbours |= h[i-1][k];
+				}
+				if(i<rows.length-1){
+					neighbours |= h[i+1][k];
+				}
+				o[k] = r[k] & neighbours;
+			}
+			out[i] = o;
+		}
+		return out;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: filterComponents()
+	 * purpose: removes the components whose box is smaller than minFraction of the median box area of the text.
+	 * 	the median is taken over the components at least min_text_height pixels high, so on a noisy scan where
+	 * 	most of the components are specks it is still the size of a letter (all of them if none are that high).
+	 * 	a removed component inside the box of a kept one is marked as noise on the kept one
+	 * input:
+	 * 	components: the labeled components, modified
+	 * 	minFraction: e.g. 0.015 keeps periods and i dots of the same font but drops specks
+	 * output:
+	 * 	the number of components removed
+	 *
+	 *****************************************************************/
+	public static int filterComponents(ArrayList<Region> components, double minFraction){
+		if(components.isEmpty()){
+			return 0;
+		}
+		int[] areas = new int[components.size()];
+		int[] text = new int[components.size()];
+		int n = 0;
+		for(int i=0; i<areas.length; i++){
+			Region r = components.get(i);
+			areas[i] = area(r);
+			if(r.getYmax()-r.getYmin()+1>=min_text_height){
+				text[n++] = areas[i];
+			}
+		}
+		int[] sorted = n>0 ? Arrays.copyOf(text, n) : areas.clone();
+		Arrays.sort(sorted);
+		double min_area = sorted[sorted.length/2]*minFraction;
+
+		ArrayList<Region> kept = new ArrayList<Region>();
+		ArrayList<Region> specks = new ArrayList<Region>();
+		for(int i=0; i<areas.length; i++){
+			if(areas[i]<min_area){
+				specks.add(components.get(i));
+			}else{
+				kept.add(components.get(i));
+			}
+		}
+		for(Region s: specks){
+			for(Region r: kept){
+				if(s.getXmin()>=r.getXmin()&&s.getXmax()<=r.getXmax()&&s.getYmin()>=r.getYmin()&&s.getYmax()<=r.getYmax()){
+					r.markNoise(s.getXmin(), s.getXmax(), s.getYmin(), s.getYmax());
+				}
+			}
+		}
+		components.clear();
+		components.addAll(kept);
+		return specks.size();
+	}
+
+	private static int area(Region r){
+		return (r.getXmax()-r.getXmin()+1)*(r.getYmax()-r.getYmin()+1);
+	}
+}
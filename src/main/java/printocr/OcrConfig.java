@@ -0,0 +1,173 @@
+/*****************************************************************************************************************
+*
+*  OcrConfig
+*
+*  Purpose: immutable set of options used by an OcrEngine. replaces the static flags that used to live in PrintOcr
+*  	so that several engines (or one engine shared by many threads) can run in the same JVM. use the Builder to
+*  	create one, every field has a default matching the original command line behaviour
+*
+******************************************************************************************************************/
+
+package printocr;
+
+public final class OcrConfig{
+	
+	private final boolean debug;
+	private final boolean svm;
+	private final String arffFile;
+	private final OcrMetrics metrics;
+	private final String[] modelOptions;
+	private final boolean tree;
+	private final boolean despeckle;
+	private final boolean opening;
+	private final boolean closing;
+	private final double minComponentFraction;
+	private final boolean deskew;
+	private final boolean textBlocks;
+	private final boolean columns;
+	private final int targetXHeight;
+	private final boolean cascade;
+	private final double cascadeMargin;
+	private final String dictionary;
+	private final double correctBelow;
+	
+	private OcrConfig(Builder b){
+		this.debug = b.debug;
+		this.svm = b.svm;
+		this.arffFile = b.arffFile;
+		this.metrics = b.metrics;
+		this.modelOptions = b.modelOptions==null ? null : b.modelOptions.clone();
+		this.tree = b.tree;
+		this.despeckle = b.despeckle;
+		this.opening = b.opening;
+		this.closing = b.closing;
+		this.minComponentFraction = b.minComponentFraction;
+		this.deskew = b.deskew;
+		this.textBlocks = b.textBlocks;
+		this.columns = b.columns;
+		this.targetXHeight = b.targetXHeight;
+		this.cascade = b.cascade;
+		this.cascadeMargin = b.cascadeMargin;
+		this.dictionary = b.dictionary;
+		this.correctBelow = b.correctBelow;
+	}
+	
+	public static OcrConfig defaults(){ return new Builder().build(); }
+	
+	public boolean isDebug(){ return debug; }
+	public boolean isSvm(){ return svm; }
+	public String getArffFile(){ return arffFile; }
+	public OcrMetrics getMetrics(){ return metrics; }
+	public String[] getModelOptions(){ return modelOptions==null ? null : modelOptions.clone(); }
+	public boolean isTree(){ return tree; }
+	public String getModelName(){ return tree ? "J48" : svm ? "SMO" : "MultilayerPerceptron"; }
+	public boolean isDespeckle(){ return despeckle; }
+	public boolean isOpening(){ return opening; }
+	public boolean isClosing(){ return closing; }
+	public double getMinComponentFraction(){ return minComponentFraction; }
+	public boolean isDeskew(){ return deskew; }
+	public boolean isTextBlocks(){ return textBlocks; }
+	public boolean isColumns(){ return columns; }
+	public int getTargetXHeight(){ return targetXHeight; }
+	public boolean isCascade(){ return cascade; }
+	public double getCascadeMargin(){ return cascadeMargin; }
+	public String getDictionary(){ return dictionary; }
+	public double getCorrectBelow(){ return correctBelow; }
+	
+	/*****************************************************************
+	 *
+	 * function: fingerprint()
+	 * output:
+	 * 	the options that change the recognized text, as a string. two configs with the same fingerprint and
+	 * 	training data give the same text for every image (used by ResultCache)
+	 *
+	 *****************************************************************/
+	public String fingerprint(){
+		return "model="+getModelName()+" options="+(modelOptions==null ? "default" : String.join(" ", modelOptions))
+			+" despeckle="+despeckle+" opening="+opening+" closing="+closing+" minComponentFraction="+minComponentFraction
+			+" deskew="+deskew+" textBlocks="+textBlocks+" columns="+columns+" targetXHeight="+targetXHeight
+			+" cascade="+cascade+" cascadeMargin="+cascadeMargin+" dictionary="+dictionary+" correctBelow="+correctBelow;
+	}
+	
+	public Builder toBuilder(){
+		Builder b = new Builder();
+		b.debug = this.debug;
+		b.svm = this.svm;
+		b.arffFile = this.arffFile;
+		b.metrics = this.metrics;
+		b.modelOptions = this.modelOptions;
+		b.tree = this.tree;
+		b.despeckle = this.despeckle;
+		b.opening = this.opening;
+		b.closing = this.closing;
+		b.minComponentFraction = this.minComponentFraction;
+		b.deskew = this.deskew;
+		b.textBlocks = this.textBlocks;
+		b.columns = this.columns;
+		b.targetXHeight = this.targetXHeight;
+		b.cascade = this.cascade;
+		b.cascadeMargin = this.cascadeMargin;
+		b.dictionary = this.dictionary;
+		b.correctBelow = this.correctBelow;
+		return b;
+	}
+	
+	public static final class Builder{
+		private boolean debug = false;
+		private boolean svm = false;
+		private String arffFile = "font.arff";
+		private OcrMetrics metrics = OcrMetrics.NONE;
+		private String[] modelOptions = null;
+		private boolean tree = false;
+		private boolean despeckle = false;
+		private boolean opening = false;
+		private boolean closing = false;
+		private double minComponentFraction = 0;
+		private boolean deskew = false;
+		private boolean textBlocks = false;
+		private boolean columns = false;
+		private int targetXHeight = 0;
+		private boolean cascade = false;
+		private double cascadeMargin = 0.2;
+		private String dictionary = null;
+		private double correctBelow = 0.9;
+		
+		//outputs extra information (vector values, region matrices) to the command line
+		public Builder debug(boolean debug){ this.debug = debug; return this; }
+		//use the SMO classifier instead of the MultilayerPerceptron
+		public Builder svm(boolean svm){ this.svm = svm; return this; }
+		//the training data used when the engine builds its own model
+		public Builder arffFile(String arffFile){ this.arffFile = arffFile; return this; }
+		//receives the stage timings and counters of every page. OcrMetrics.NONE turns them off
+		public Builder metrics(OcrMetrics metrics){ this.metrics = metrics; return this; }
+		//weka options for the classifier (e.g. the ones found by OcrTuner). null uses the defaults
+		public Builder modelOptions(String[] modelOptions){ this.modelOptions = modelOptions==null ? null : modelOptions.clone(); return this; }
+		//use a J48 decision tree (overrides svm) and compute each glyph's attributes only as the tree tests them
+		public Builder tree(boolean tree){ this.tree = tree; return this; }
+		//clear isolated black pixels before labeling
+		public Builder despeckle(boolean despeckle){ this.despeckle = despeckle; return this; }
+		//3x3 morphological opening (removes specks and spurs) and closing (fills pin holes) before labeling
+		public Builder opening(boolean opening){ this.opening = opening; return this; }
+		public Builder closing(boolean closing){ this.closing = closing; return this; }
+		//drop components whose box is smaller than this fraction of the median component's box. 0 keeps them all
+		public Builder minComponentFraction(double minComponentFraction){ this.minComponentFraction = minComponentFraction; return this; }
+		//find the page skew (up to Deskew.MAX_DEGREES) and straighten the binary image before labeling
+		public Builder deskew(boolean deskew){ this.deskew = deskew; return this; }
+		//only binarize and label the blocks of the page that have ink on them (see TextBlocks)
+		public Builder textBlocks(boolean textBlocks){ this.textBlocks = textBlocks; return this; }
+		//split the page into columns and blocks with xy cuts (see PageLayout) and recognize each block as its own task
+		public Builder columns(boolean columns){ this.columns = columns; return this; }
+		//scale high resolution images down by a whole factor while their x-height stays at least this many pixels. 0 never scales
+		public Builder targetXHeight(int targetXHeight){ this.targetXHeight = targetXHeight; return this; }
+		//classify with a nearest template model first and only use the weka model for glyphs it isn't sure of
+		public Builder cascade(boolean cascade){ this.cascade = cascade; return this; }
+		//glyphs whose top two template probabilities are closer than this go to the weka model
+		public Builder cascadeMargin(double cascadeMargin){ this.cascadeMargin = cascadeMargin; return this; }
+		//a word list (see WordCorrector) used to correct the words with an unsure glyph. null doesn't correct
+		public Builder dictionary(String dictionary){ this.dictionary = dictionary; return this; }
+		//the glyphs classified with a probability below this may be changed by the dictionary correction
+		public Builder correctBelow(double correctBelow){ this.correctBelow = correctBelow; return this; }
+		
+		public OcrConfig build(){ return new OcrConfig(this); }
+	}
+}
@@ -0,0 +1,39 @@
+package printocr;
+
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  OcrDocument
+*
+*  Purpose: immutable result of recognizing a multi-page image (e.g. a tiff from a scanner). holds one OcrResult
+*  	per page in page order. the text of the document is the text of each page, separated by a form feed
+*
+******************************************************************************************************************/
+
+public final class OcrDocument{
+	
+	public static final char PAGE_SEPARATOR = '\f';
+	
+	private final List<OcrResult> pages;
+	
+	OcrDocument(List<OcrResult> pages){
+		this.pages = Collections.unmodifiableList(new ArrayList<OcrResult>(pages));
+	}
+	
+	public List<OcrResult> getPages(){ return pages; }
+	public int getPageCount(){ return pages.size(); }
+	
+	public String getText(){
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<pages.size(); i++){
+			if(i>0){
+				sb.append(PAGE_SEPARATOR);
+			}
+			sb.append(pages.get(i).getText());
+		}
+		return sb.toString();
+	}
+	
+	public String toString(){ return getText(); }
+}
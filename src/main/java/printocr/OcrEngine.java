@@ -0,0 +1,869 @@
+package printocr;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import weka.core.*;
+import weka.classifiers.*;
+import weka.classifiers.functions.SMO;
+import weka.core.converters.ConverterUtils.DataSource;
+import weka.classifiers.functions.MultilayerPerceptron;
+import weka.classifiers.trees.J48;
+
+/*****************************************************************************************************************
+*
+*  OcrEngine
+*
+*  Purpose: reusable, thread safe entry point to the ocr pipeline. holds an immutable OcrConfig, the trained
+*  	classifier and the header of the training data. recognize() runs binarization, clustering, line ordering,
+*  	spacing and classification for one image and returns an OcrResult without touching any static state,
+*  	files or the command line (unless the config asks for debug output)
+*
+*  	weka classifiers keep scratch state while classifying (the MultilayerPerceptron stores the current instance
+*  	in its nodes) so each thread classifies with its own copy of the model
+*
+*  	the model can also be built on a background thread (buildAsync()). images are then binarized, clustered
+*  	and have their attribute vectors computed while the model is built, and only classification waits for it
+*
+*  	in cascade mode each glyph is first classified by a TemplateClassifier. only the glyphs where it is unsure
+*  	(the margin between its two most likely characters is below the configured threshold) are escalated to the
+*  	weka model, so on clean images the expensive model is rarely run
+*
+*  	in tree mode the model is a J48 decision tree that is copied into a FeatureTree, and the attributes of each
+*  	glyph are only computed as the tree tests them (see GlyphFeatures)
+*
+*  	after binarization, scaling, cleanup and deskew the page is copied into a PageBits owned by an arena that is
+*  	closed as soon as the page is done, and labeled with a RunLabeler. the arenas of an engine reuse each
+*  	other's memory
+*
+*  	in columns mode the page is split into blocks of text (see PageLayout) and the lines of each block are
+*  	found, spaced and classified as a separate task, so columns are read one after the other
+*
+*  	if the config names a word list, the words of each line with an unsure glyph are corrected against it (see
+*  	WordCorrector) from the classifier's distribution of every glyph. the list is loaded along with the model
+*
+******************************************************************************************************************/
+
+public class OcrEngine{
+
+	private static final int pooled_chunks = 32; //256 MB of page buffers kept for reuse
+
+	private final OcrConfig config;
+	private final Future<Trained> trained;
+	private final ThreadLocal<Classifier> classifiers;
+	private final AtomicLong cascade_glyphs = new AtomicLong();
+	private final AtomicLong cascade_escalated = new AtomicLong();
+	private final AtomicLong tree_glyphs = new AtomicLong();
+	private final AtomicLong tree_features = new AtomicLong();
+	private final AtomicLong checked_words = new AtomicLong();
+	private final AtomicLong corrected_words = new AtomicLong();
+	private final PageArena.Pool page_pool = new PageArena.Pool(pooled_chunks);
+
+	/*****************************************************************
+	 *
+	 * function: OcrEngine()
+	 * input:
+	 * 	config: the options for this engine
+	 * 	model: an already built classifier. a private copy is taken so later changes to it do not affect us
+	 * 	data: the training data the model was built from. only the attribute header is kept
+	 *
+	 *****************************************************************/
+	public OcrEngine(OcrConfig config, Classifier model, Instances data) throws Exception{
+		this(config, CompletableFuture.completedFuture(new Trained(Classifier.makeCopy(model), data, config)));
+	}
+
+	private OcrEngine(OcrConfig config, Future<Trained> trained){
+		this.config = config;
+		this.trained = trained;
+		this.classifiers = new ThreadLocal<Classifier>(){
+			@Override
+			protected Classifier initialValue(){
+				try{
+					return Classifier.makeCopy(trained().model);
+				}catch(IllegalStateException e){
+					throw e;
+				}catch(Exception e){
+					throw new IllegalStateException("Error: could not copy the classifier model", e);
+				}
+			}
+		};
+	}
+
+	/*****************************************************************
+	 *
+	 * function: build()
+	 * purpose: loads the arff training data named in the config and builds either the SMO or the
+	 * 	MultilayerPerceptron classifier from it
+	 * output:
+	 * 	returns a new engine ready to recognize images
+	 *
+	 *****************************************************************/
+	public static OcrEngine build(OcrConfig config) throws Exception{
+		Instances data = loadTrainingData(config.getArffFile());
+		return new OcrEngine(config, buildModel(config, data), data);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: buildAsync()
+	 * purpose: same as build() but the training data is loaded and the model built on a background thread.
+	 * 	the engine can be used straight away, classification waits for the model to be ready
+	 * output:
+	 * 	returns a new engine. if the model fails to build recognize() throws an IllegalStateException
+	 *
+	 *****************************************************************/
+	public static OcrEngine buildAsync(final OcrConfig config){
+		FutureTask<Trained> task = new FutureTask<Trained>(new Callable<Trained>(){
+			public Trained call() throws Exception{
+				Instances data = loadTrainingData(config.getArffFile());
+				return new Trained(buildModel(config, data), data, config);
+			}
+		});
+		Thread t = new Thread(task, "OcrEngine model builder");
+		t.setDaemon(true);
+		t.start();
+		return new OcrEngine(config, task);
+	}
+
+	public static Instances loadTrainingData(String arffFile) throws Exception{
+		DataSource src = new DataSource(arffFile);
+		Instances data = src.getDataSet();
+		if (data.classIndex() == -1){
+			data.setClassIndex(data.numAttributes() - 1);
+		}
+		return data;
+	}
+
+	public static Classifier buildModel(OcrConfig config, Instances data) throws Exception{
+		Classifier model = newModel(config);
+		model.buildClassifier(data);
+		return model;
+	}
+
+	//the classifier chosen by the config with its options set but not yet built
+	public static Classifier newModel(OcrConfig config) throws Exception{
+		if(config.isTree()){
+			Classifier model = new J48();
+			if(config.getModelOptions()!=null){
+				model.setOptions(config.getModelOptions());
+			}
+			return model;
+		}
+		return newModel(config.isSvm(), config.getModelOptions());
+	}
+
+	public static Classifier newModel(boolean svm, String[] options) throws Exception{
+		Classifier model = null;
+		if(svm){
+			model = (Classifier)new SMO();
+			String[] opt = {"-M"};
+			model.setOptions(opt);
+		}else{
+			model = (Classifier)new MultilayerPerceptron();
+		}
+		if(options!=null){
+			model.setOptions(options.clone()); //weka empties the array as it reads the options
+		}
+		return model;
+	}
+
+	public OcrConfig getConfig(){ return config; }
+
+	public boolean isModelReady(){ return trained.isDone(); }
+
+	/*****************************************************************
+	 *
+	 * function: awaitModel()
+	 * purpose: waits for the model to be built
+	 * output:
+	 * 	throws the exception that stopped the model from building, if any
+	 *
+	 *****************************************************************/
+	public void awaitModel() throws Exception{
+		try{
+			trained.get();
+		}catch(ExecutionException e){
+			throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+		}
+	}
+
+	private Trained trained(){
+		try{
+			return trained.get();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Error: interrupted while waiting for the model", e);
+		}catch(ExecutionException e){
+			throw new IllegalStateException("Error: the model failed to build correctly", e.getCause());
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: recognize()
+	 * purpose: reads the image file and recognizes it
+	 * output:
+	 * 	the recognized text. throws an IOException if the file can't be read as an image
+	 *
+	 *****************************************************************/
+	public OcrResult recognize(Path file) throws IOException{
+		final ArrayList<OcrLine> lines = new ArrayList<OcrLine>();
+		recognize(file, new OcrLineListener(){
+			public void lineRecognized(OcrLine line){
+				lines.add(line);
+			}
+		});
+		return new OcrResult(lines);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: recognize()
+	 * purpose: streaming version of recognize(Path). when the config has a target x-height the image is first
+	 * 	decoded at low resolution to estimate the x-height and then decoded at the lowest resolution that keeps
+	 * 	the glyphs at the target size. the lines still have the coordinates of the full size image. raw pbm and
+	 * 	pgm files are read straight into the binary image by a NetpbmReader, and can have more than 2^31 pixels
+	 * 	if the config doesn't ask for scaling, cleanup or deskew
+	 * output:
+	 * 	returns the number of lines recognized. throws an IOException if the file can't be read as an image
+	 *
+	 *****************************************************************/
+	public int recognize(Path file, OcrLineListener listener) throws IOException{
+		OcrStageTimer timer = new OcrStageTimer(config.getMetrics());
+		if(NetpbmReader.isRaw(file)){
+			PageArena arena = new PageArena(page_pool);
+			try{
+				timer.start();
+				NetpbmReader pnm = NetpbmReader.open(file);
+				PageBits page = pnm.binarize(arena);
+				timer.stop(OcrStage.BINARIZE, page.size());
+				if(usesBitSet()&&page.size()<=Integer.MAX_VALUE){
+					BitSet img_data = page.toBitSet();
+					arena.close();
+					return recognize(img_data, pnm.getWidth(), pnm.getHeight(), listener, 0, pnm.getWidth(), pnm.getHeight(), timer);
+				}
+				if(usesBitSet()&&config.isDebug()){
+					System.out.printf("the %dx%d page is too large to scale, clean up or deskew, skipping them\n", pnm.getWidth(), pnm.getHeight());
+				}
+				return recognize(page, listener, 0, pnm.getWidth(), pnm.getHeight(), timer);
+			}finally{
+				arena.close();
+			}
+		}
+		if(config.getTargetXHeight()<=0){
+			BufferedImage img = ImageIO.read(file.toFile());
+			if(img==null){
+				throw new IOException("Error: "+file+" is not a readable image");
+			}
+			return recognize(img, listener, 0, img.getWidth(), img.getHeight(), timer);
+		}
+		ImageInputStream in = ImageIO.createImageInputStream(file.toFile());
+		if(in==null){
+			throw new IOException("Error: could not open "+file);
+		}
+		ImageReader reader = null;
+		try{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if(!readers.hasNext()){
+				throw new IOException("Error: "+file+" is not a readable image");
+			}
+			reader = readers.next();
+			reader.setInput(in, true, true);
+			timer.start();
+			int preview = ResolutionNormalizer.PREVIEW_SUBSAMPLING;
+			int x_height = ResolutionNormalizer.estimateXHeight(ResolutionNormalizer.read(reader, 0, preview))*preview;
+			int scale = ResolutionNormalizer.factor(x_height, config.getTargetXHeight());
+			timer.stop(OcrStage.NORMALIZE, 1);
+			if(config.isDebug()){
+				System.out.printf("estimated x-height = %d pixels, decoding every %d pixels\n", x_height, scale);
+			}
+			return recognize(ResolutionNormalizer.read(reader, 0, scale), listener, scale, reader.getWidth(0), reader.getHeight(0), timer);
+		}finally{
+			if(reader!=null){
+				reader.dispose();
+			}
+			in.close();
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: recognize()
+	 * purpose: isolates, orders and classifies the components of the image. adds spaces and new line
+	 * 	characters where appropriate. the image is only read, never modified
+	 * output:
+	 * 	the recognized text
+	 *
+	 *****************************************************************/
+	public OcrResult recognize(BufferedImage img){
+		final ArrayList<OcrLine> lines = new ArrayList<OcrLine>();
+		recognize(img, new OcrLineListener(){
+			public void lineRecognized(OcrLine line){
+				lines.add(line);
+			}
+		});
+		return new OcrResult(lines);
+	}
+	
+	/*****************************************************************
+	 *
+	 * function: recognize()
+	 * purpose: streaming version of recognize(). each line is handed to the listener as soon as its components
+	 * 	are classified instead of building up the whole page
+	 * input:
+	 * 	img: the image to recognize, only read
+	 * 	listener: receives the lines in reading order
+	 * output:
+	 * 	returns the number of lines recognized
+	 *
+	 *****************************************************************/
+	public int recognize(BufferedImage img, OcrLineListener listener){
+		return recognize(img, listener, 0, img.getWidth(), img.getHeight(), new OcrStageTimer(config.getMetrics()));
+	}
+
+	//scale: how many pixels of the original image each pixel of img stands for, or 0 if this is not yet known
+	//full_width, full_height: the size of the original image, the boxes are scaled back to it and kept inside it
+	private int recognize(BufferedImage img, OcrLineListener listener, int scale, int full_width, int full_height, OcrStageTimer timer){
+		boolean debug = config.isDebug();
+		int img_width = img.getWidth();
+		int img_height = img.getHeight();
+
+		timer.start();
+		BitSet img_data = null;
+		if(config.isTextBlocks()){
+			ArrayList<Rectangle> blocks = new ArrayList<Rectangle>();
+			img_data = TextBlocks.binarize(img, blocks);
+			if(debug){
+				System.out.printf("binarized %d text blocks covering %.1f%% of the page\n", blocks.size(), 100*TextBlocks.coverage(blocks, img_width, img_height));
+			}
+		}else{
+			img_data = PrintOcr.convertImageToBinary(img);
+		}
+		timer.stop(OcrStage.BINARIZE, (long)img_width*img_height);
+		return recognize(img_data, img_width, img_height, listener, scale, full_width, full_height, timer);
+	}
+
+	//the rest of the pipeline, from the binary image on
+	private int recognize(BitSet img_data, int img_width, int img_height, OcrLineListener listener, int scale, int full_width, int full_height, OcrStageTimer timer){
+		boolean debug = config.isDebug();
+		if(scale==0&&config.getTargetXHeight()>0){
+			timer.start();
+			int x_height = ResolutionNormalizer.estimateXHeight(PackedRows.pack(img_data, img_width, img_height));
+			scale = ResolutionNormalizer.factor(x_height, config.getTargetXHeight());
+			if(scale>1){
+				img_data = ResolutionNormalizer.downscale(img_data, img_width, img_height, scale);
+				img_width = ResolutionNormalizer.scaledSize(img_width, scale);
+				img_height = ResolutionNormalizer.scaledSize(img_height, scale);
+			}
+			timer.stop(OcrStage.NORMALIZE, 1);
+			if(debug){
+				System.out.printf("estimated x-height = %d pixels, scaling down by %d\n", x_height, scale);
+			}
+		}
+		
+		if(config.isDespeckle()||config.isOpening()||config.isClosing()){
+			timer.start();
+			img_data = NoiseFilter.clean(img_data, img_width, img_height, config.isDespeckle(), config.isOpening(), config.isClosing());
+			timer.stop(OcrStage.CLEANUP, (long)img_width*img_height);
+		}
+		
+		if(config.isDeskew()){
+			timer.start();
+			img_data = Deskew.deskew(img_data, img_width, img_height, Deskew.MAX_DEGREES, debug);
+			timer.stop(OcrStage.DESKEW, (long)img_width*img_height);
+		}
+		
+		PageArena arena = new PageArena(page_pool);
+		try{
+			return recognize(PageBits.copyOf(img_data, img_width, img_height, arena), listener, scale, full_width, full_height, timer);
+		}finally{
+			arena.close(); //the next page reuses the memory
+		}
+	}
+
+	//the stages that only work on a BitSet
+	private boolean usesBitSet(){
+		return config.getTargetXHeight()>0||config.isDespeckle()||config.isOpening()||config.isClosing()||config.isDeskew();
+	}
+
+	//labeling and everything after it. the page must stay open until this returns
+	private int recognize(PageBits page, OcrLineListener listener, int scale, int full_width, int full_height, OcrStageTimer timer){
+		boolean debug = config.isDebug();
+		int img_width = page.getWidth();
+		int img_height = page.getHeight();
+		timer.start();
+		ArrayList<Region> components = null;
+		if(config.isTextBlocks()){
+			//found again on the binary image since cleanup, scaling and deskew move the pixels
+			List<Rectangle> blocks = TextBlocks.fromBits(page);
+			if(debug){
+				System.out.printf("labeling %d text blocks covering %.1f%% of the page\n", blocks.size(), 100*TextBlocks.coverage(blocks, img_width, img_height));
+			}
+			components = TextBlocks.label(page, blocks);
+		}else{
+			components = RunLabeler.label(page);
+		}
+		timer.stop(OcrStage.LABEL, components.size());
+		
+		if(config.getMinComponentFraction()>0){
+			timer.start();
+			int removed = NoiseFilter.filterComponents(components, config.getMinComponentFraction());
+			timer.stop(OcrStage.FILTER, removed);
+		}
+		int num_components = components.size();
+		
+		if(!config.isColumns()){
+			int[] counts = recognizeLines(components, page, scale, full_width, full_height, timer, 0, listener);
+			timer.pageCompleted(num_components, num_components-counts[1], counts[0], counts[1]);
+			return counts[0];
+		}
+		
+		timer.start();
+		PageLayout layout = PageLayout.cut(PackedRows.pack(page), img_width, components);
+		List<Rectangle> blocks = layout==null ? new ArrayList<Rectangle>() : layout.leaves();
+		List<ArrayList<Region>> block_components = new ArrayList<ArrayList<Region>>();
+		for(ArrayList<Region> block: PageLayout.split(components, blocks)){
+			if(!block.isEmpty()){ //all of its components were dropped as noise
+				block_components.add(block);
+			}
+		}
+		timer.stop(OcrStage.LAYOUT, block_components.size());
+		if(debug){
+			System.out.printf("layout: %d blocks\n", block_components.size());
+		}
+		int[] counts = recognizeBlocks(block_components, page, scale, full_width, full_height, timer, listener);
+		timer.pageCompleted(num_components, num_components-counts[1], counts[0], counts[1]);
+		return counts[0];
+	}
+
+	/*****************************************************************
+	 *
+	 * function: recognizeLines()
+	 * purpose: orders the components into lines, finds the word spaces and classifies each line, handing the lines
+	 * 	to the listener as they are done
+	 * input:
+	 * 	components: the components of the page or of one block, emptied
+	 * 	scale, full_width, full_height: the factor the page was scaled down by and the size of the original image,
+	 * 	the boxes are scaled back to it
+	 * 	first: the index of the first line
+	 * output:
+	 * 	{number of lines, number of glyphs}
+	 *
+	 *****************************************************************/
+	private int[] recognizeLines(ArrayList<Region> components, PageBits page, int scale, int full_width, int full_height, OcrStageTimer timer, int first, OcrLineListener listener){
+		boolean debug = config.isDebug();
+		int img_width = page.getWidth();
+		int img_height = page.getHeight();
+		timer.start();
+		ArrayList<ArrayList<Region>> lineslist = PrintOcr.order_by_line(components, null, img_width, img_height); //only the boxes are used
+		timer.stop(OcrStage.ORDER_LINES, lineslist.size());
+		
+		timer.start();
+		double[] spaces = PrintOcr.define_spaces(lineslist, img_width, img_height, debug); //[average space between letters, average space between words]
+		timer.stop(OcrStage.SPACES, lineslist.size());
+
+		//while the model is still being built compute the vectors of every line up front so that work overlaps the
+		//build, otherwise compute them a line at a time so each line can be handed over as soon as possible. in
+		//tree mode only the region matrices are made here, the attributes are computed while classifying
+		GlyphFeatures[][] pending = null;
+		if(!isModelReady()){
+			pending = new GlyphFeatures[lineslist.size()][];
+			for(int k=0; k<lineslist.size(); k++){
+				timer.start();
+				pending[k] = lineGlyphs(lineslist.get(k), page);
+				timer.stop(OcrStage.FEATURES, lineslist.get(k).size());
+			}
+		}
+
+		WordCorrector corrector = config.getDictionary()==null ? null : trained().corrector;
+		int count = 0;
+		int glyphs = 0;
+		for(ArrayList<Region> line: lineslist){
+			GlyphFeatures[] features = null;
+			if(pending!=null){
+				features = pending[count];
+				pending[count] = null;
+			}else{
+				timer.start();
+				features = lineGlyphs(line, page);
+				timer.stop(OcrStage.FEATURES, line.size());
+			}
+			
+			timer.start();
+			String[] letters = new String[line.size()];
+			double[] confidences = new double[line.size()];
+			boolean[] word_starts = new boolean[line.size()];
+			double[][] dists = corrector==null ? null : new double[line.size()][]; //only kept for the correction
+			double[] confidence = new double[1];
+			for(int i=0; i<line.size(); i++){
+				word_starts[i] = i==0||PrintOcr.is_word_space(spaces, line, i);
+				if(dists!=null){
+					dists[i] = isLazy() ? distribution(features[i]) : cascadeDistribution(features[i].toVector());
+					int best = PrintOcr.max_index(dists[i]);
+					letters[i] = PrintOcr.alpha_tnr[best];
+					confidences[i] = dists[i][best];
+				}else{
+					letters[i] = isLazy() ? classify(features[i], confidence) : classify(features[i].toVector(), confidence);
+					confidences[i] = confidence[0];
+				}
+			}
+			timer.stop(OcrStage.CLASSIFY, line.size());
+			glyphs += line.size();
+			if(corrector!=null){
+				timer.start();
+				int[] words = corrector.correct(letters, confidences, word_starts, dists, config.getCorrectBelow());
+				checked_words.addAndGet(words[0]);
+				corrected_words.addAndGet(words[1]);
+				timer.stop(OcrStage.CORRECT, words[0]);
+			}
+			StringBuilder text = new StringBuilder();
+			for(int i=0; i<line.size(); i++){
+				if(i>0&&word_starts[i]){
+					text.append(' ');
+				}
+				text.append(letters[i]);
+			}
+			if(scale>1){
+				for(Region r: line){
+					r.scale(scale, full_width, full_height); //back to the coordinates of the original image
+				}
+			}
+			ArrayList<OcrGlyph> line_glyphs = new ArrayList<OcrGlyph>(line.size());
+			for(int i=0; i<line.size(); i++){
+				line_glyphs.add(new OcrGlyph(letters[i], confidences[i], word_starts[i], line.get(i)));
+			}
+			listener.lineRecognized(new OcrLine(first+count++, text.toString(), line, line_glyphs));
+		}
+		return new int[]{count, glyphs};
+	}
+
+	/*****************************************************************
+	 *
+	 * function: recognizeBlocks()
+	 * purpose: runs recognizeLines() on each block of the page as a separate task on the common fork join pool,
+	 * 	each with its own word spacing. the lines are handed to the listener in block order, each block's as soon
+	 * 	as it and the blocks before it are done. a page with one block is recognized on the calling thread
+	 * input:
+	 * 	blocks: the components of each block in reading order
+	 * output:
+	 * 	{number of lines, number of glyphs}
+	 *
+	 *****************************************************************/
+	private int[] recognizeBlocks(List<ArrayList<Region>> blocks, final PageBits page, final int scale, final int full_width, final int full_height, OcrStageTimer timer, OcrLineListener listener){
+		if(blocks.size()==1){
+			return recognizeLines(blocks.get(0), page, scale, full_width, full_height, timer, 0, listener);
+		}
+		ArrayList<Future<ArrayList<OcrLine>>> tasks = new ArrayList<Future<ArrayList<OcrLine>>>();
+		final ArrayList<OcrStageTimer> timers = new ArrayList<OcrStageTimer>();
+		for(final ArrayList<Region> block: blocks){
+			final OcrStageTimer block_timer = new OcrStageTimer(config.getMetrics());
+			timers.add(block_timer);
+			tasks.add(ForkJoinPool.commonPool().submit(new Callable<ArrayList<OcrLine>>(){
+				public ArrayList<OcrLine> call(){
+					final ArrayList<OcrLine> lines = new ArrayList<OcrLine>();
+					recognizeLines(block, page, scale, full_width, full_height, block_timer, 0, new OcrLineListener(){
+						public void lineRecognized(OcrLine line){
+							lines.add(line);
+						}
+					});
+					return lines;
+				}
+			}));
+		}
+
+		int count = 0;
+		int glyphs = 0;
+		try{
+			for(int b=0; b<tasks.size(); b++){
+				for(OcrLine line: tasks.get(b).get()){
+					glyphs += line.getRegions().size();
+					listener.lineRecognized(new OcrLine(count++, line.getText(), line.getRegions(), line.getGlyphs()));
+				}
+				timer.add(timers.get(b));
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Error: interrupted while recognizing the blocks of a page", e);
+		}catch(ExecutionException e){
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException("Error: failed to recognize a block of the page", e.getCause());
+		}finally{
+			for(Future<ArrayList<OcrLine>> task: tasks){
+				task.cancel(true); //no effect on blocks that are already done
+			}
+		}
+		return new int[]{count, glyphs};
+	}
+
+	private GlyphFeatures[] lineGlyphs(ArrayList<Region> line, PageBits page){
+		boolean debug = config.isDebug();
+		GlyphFeatures[] features = new GlyphFeatures[line.size()];
+		for(int i=0; i<line.size(); i++){
+			int[][] rmat = PrintOcr.getRegionMatrix(page, line.get(i), debug);
+			features[i] = new GlyphFeatures(rmat);
+			if(!isLazy()){
+				features[i].evaluateAll();
+				if(debug){
+					PrintOcr.output_vector(features[i].toVector());
+				}
+			}
+		}
+		return features;
+	}
+
+	//the cascade's template stage needs every attribute, so the attributes are only computed lazily without it
+	private boolean isLazy(){
+		return config.isTree()&&!config.isCascade();
+	}
+
+	/*****************************************************************
+	 *
+	 * function: recognizePages()
+	 * purpose: recognizes every page of a multi-page image (e.g. tiff) in parallel on a pool with one thread per core
+	 * output:
+	 * 	the text of all the pages in page order
+	 *
+	 *****************************************************************/
+	public OcrDocument recognizePages(Path file) throws IOException{
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try{
+			return recognizePages(file, pool, 2*threads);
+		}finally{
+			pool.shutdownNow();
+		}
+	}
+	
+	/*****************************************************************
+	 *
+	 * function: recognizePages()
+	 * purpose: recognizes every page of a multi-page image. pages are decoded one at a time on the calling thread
+	 * 	through ImageReader.read(page) and handed to the pool. at most maxInFlight pages are decoded and not yet
+	 * 	recognized at once, so the whole document is never held in memory
+	 * input:
+	 * 	file: the image file. single page images work too
+	 * 	pool: runs the recognition of each page
+	 * 	maxInFlight: the maximum number of decoded pages waiting on or being processed by the pool
+	 * output:
+	 * 	the text of all the pages in page order
+	 *
+	 *****************************************************************/
+	public OcrDocument recognizePages(Path file, ExecutorService pool, int maxInFlight) throws IOException{
+		ImageInputStream in = ImageIO.createImageInputStream(file.toFile());
+		if(in==null){
+			throw new IOException("Error: could not open "+file);
+		}
+		ImageReader reader = null;
+		final Semaphore in_flight = new Semaphore(maxInFlight);
+		ArrayList<Future<OcrResult>> pages = new ArrayList<Future<OcrResult>>();
+		try{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if(!readers.hasNext()){
+				throw new IOException("Error: "+file+" is not a readable image");
+			}
+			reader = readers.next();
+			reader.setInput(in, false, true);
+			int num_pages = reader.getNumImages(true);
+			for(int p=0; p<num_pages; p++){
+				in_flight.acquire();
+				final BufferedImage img;
+				try{
+					img = reader.read(p);
+				}catch(IOException e){
+					in_flight.release();
+					throw e;
+				}
+				pages.add(pool.submit(new Callable<OcrResult>(){
+					public OcrResult call(){
+						try{
+							return recognize(img);
+						}finally{
+							in_flight.release();
+						}
+					}
+				}));
+			}
+			
+			ArrayList<OcrResult> results = new ArrayList<OcrResult>();
+			for(Future<OcrResult> page: pages){
+				results.add(page.get());
+			}
+			return new OcrDocument(results);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Error: interrupted while recognizing "+file);
+		}catch(ExecutionException e){
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException("Error: failed to recognize a page of "+file, e.getCause());
+		}finally{
+			for(Future<OcrResult> page: pages){
+				page.cancel(true); //no effect on pages that are already done
+			}
+			if(reader!=null){
+				reader.dispose();
+			}
+			in.close();
+		}
+	}
+	
+	/*****************************************************************
+	 *
+	 * function: classify()
+	 * purpose: classifies a single attribute vector with this thread's copy of the model
+	 * output:
+	 * 	returns the most likely letter according to our classification model
+	 *
+	 *****************************************************************/
+	public String classify(LetterVector vector){
+		return classify(vector, null);
+	}
+
+	//the same, also putting the probability of the letter in confidence[0] if confidence isn't null
+	String classify(LetterVector vector, double[] confidence){
+		double[] dist = cascadeDistribution(vector);
+		int best = PrintOcr.max_index(dist);
+		if(confidence!=null){
+			confidence[0] = dist[best];
+		}
+		return PrintOcr.alpha_tnr[best];
+	}
+
+	//the distribution of the stage of the cascade that decides the glyph, the model's if there is no cascade
+	private double[] cascadeDistribution(LetterVector vector){
+		if(config.isCascade()){
+			cascade_glyphs.incrementAndGet();
+			double[] first = trained().templates.distribution(vector);
+			if(TemplateClassifier.margin(first)>=config.getCascadeMargin()){
+				return first;
+			}
+			cascade_escalated.incrementAndGet();
+		}
+		return distribution(vector);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: printCascadeStats()
+	 * purpose: outputs how many glyphs each stage of the cascade classified since the engine was created
+	 *
+	 *****************************************************************/
+	public void printCascadeStats(PrintStream out){
+		long glyphs = cascade_glyphs.get();
+		long escalated = cascade_escalated.get();
+		out.printf("cascade: %d glyphs, template stage classified %d (%.1f%%), escalated %d (%.1f%%) to the %s\n", glyphs,
+			glyphs-escalated, glyphs==0 ? 0 : 100.0*(glyphs-escalated)/glyphs, escalated, glyphs==0 ? 0 : 100.0*escalated/glyphs,
+			config.getModelName());
+	}
+
+	public long getCascadeGlyphs(){ return cascade_glyphs.get(); }
+	public long getCascadeEscalated(){ return cascade_escalated.get(); }
+
+	/*****************************************************************
+	 *
+	 * function: classify()
+	 * purpose: classifies a glyph with the decision tree, computing only the attributes the tree tests
+	 * output:
+	 * 	returns the most likely letter according to the tree
+	 *
+	 *****************************************************************/
+	public String classify(GlyphFeatures glyph){
+		return classify(glyph, null);
+	}
+
+	//the same, also putting the purity of the tree's leaf in confidence[0] if confidence isn't null
+	String classify(GlyphFeatures glyph, double[] confidence){
+		String letter = PrintOcr.alpha_tnr[trained().tree.classify(glyph, confidence)];
+		tree_glyphs.incrementAndGet();
+		tree_features.addAndGet(glyph.getEvaluated());
+		return letter;
+	}
+
+	//the tree's answer as a distribution: the purity of the leaf for its class, the rest shared by the other classes
+	private double[] distribution(GlyphFeatures glyph){
+		double[] confidence = new double[1];
+		String letter = classify(glyph, confidence);
+		int n = PrintOcr.alpha_tnr.length;
+		double[] dist = new double[n];
+		Arrays.fill(dist, (1-confidence[0])/(n-1));
+		for(int k=0; k<n; k++){
+			if(PrintOcr.alpha_tnr[k].equals(letter)){
+				dist[k] = confidence[0];
+			}
+		}
+		return dist;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: printTreeStats()
+	 * purpose: outputs the average number of attributes the decision tree needed per glyph since the engine was created
+	 *
+	 *****************************************************************/
+	public void printTreeStats(PrintStream out){
+		long glyphs = tree_glyphs.get();
+		out.printf("decision tree: %d glyphs, %.2f of %d attributes computed per glyph on average\n", glyphs,
+			glyphs==0 ? 0 : (double)tree_features.get()/glyphs, GlyphFeatures.NUM_FEATURES);
+	}
+
+	public long getTreeGlyphs(){ return tree_glyphs.get(); }
+	public long getTreeFeatures(){ return tree_features.get(); }
+
+	/*****************************************************************
+	 *
+	 * function: printCorrectionStats()
+	 * purpose: outputs how many words the dictionary correction looked up and changed since the engine was created
+	 *
+	 *****************************************************************/
+	public void printCorrectionStats(PrintStream out){
+		long checked = checked_words.get();
+		long corrected = corrected_words.get();
+		out.printf("dictionary: %d unsure words looked up, %d (%.1f%%) corrected\n", checked, corrected, checked==0 ? 0 : 100.0*corrected/checked);
+	}
+
+	public long getCheckedWords(){ return checked_words.get(); }
+	public long getCorrectedWords(){ return corrected_words.get(); }
+
+	public double[] distribution(LetterVector vector){
+		Instances header = trained().header;
+		Instance temp = new Instance(header.numAttributes());
+		temp.setDataset(header);
+		for(int i=0; i<header.numAttributes()-1; i++){
+			temp.setValue(header.attribute(i), vector.valueAt(i));
+		}
+		try{
+			return classifiers.get().distributionForInstance(temp);
+		}catch(Exception e){
+			throw new IllegalStateException("Error occured while classifying the test instance", e);
+		}
+	}
+
+	//the built classifier, the attribute header of the data it was built from, the cascade's first stage, the
+	//copy of the decision tree used in tree mode and the word list of the dictionary correction
+	private static final class Trained{
+		final Classifier model;
+		final Instances header;
+		final TemplateClassifier templates;
+		final FeatureTree tree;
+		final WordCorrector corrector;
+
+		Trained(Classifier model, Instances data, OcrConfig config) throws Exception{
+			this.model = model;
+			this.header = new Instances(data, 0);
+			this.templates = config.isCascade() ? new TemplateClassifier(data) : null;
+			this.tree = model instanceof J48 ? new FeatureTree((J48)model, data) : null;
+			this.corrector = config.getDictionary()==null ? null : WordCorrector.load(Paths.get(config.getDictionary()), PrintOcr.alpha_tnr);
+		}
+	}
+}
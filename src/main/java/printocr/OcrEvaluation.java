@@ -0,0 +1,116 @@
+package printocr;
+
+import java.util.*;
+import java.util.concurrent.*;
+import weka.core.*;
+import weka.classifiers.*;
+
+/*****************************************************************************************************************
+*
+*  OcrEvaluation
+*
+*  Purpose: k-fold cross validation of the classifier with the folds trained and tested in parallel. the data is
+*  	shuffled and stratified with a fixed seed and the predictions of each fold are merged into a single weka
+*  	Evaluation in fold order, so the result is the same as weka's serial crossValidateModel no matter how
+*  	the folds are scheduled
+*
+******************************************************************************************************************/
+
+public class OcrEvaluation{
+
+	/*****************************************************************
+	 *
+	 * function: crossValidate()
+	 * input:
+	 * 	template: the (unbuilt) classifier to evaluate. each fold builds its own copy
+	 * 	data: the training data
+	 * 	folds: number of folds
+	 * 	seed: seed for shuffling the data and picking the folds
+	 * 	pool: trains and tests the folds
+	 * output:
+	 * 	the evaluation of all the folds merged together
+	 *
+	 *****************************************************************/
+	public static Evaluation crossValidate(Classifier template, Instances data, final int folds, long seed, ExecutorService pool) throws Exception{
+		//one random number generator used in the same order as crossValidateModel
+		Random rand = new Random(seed);
+		final Instances shuffled = new Instances(data);
+		shuffled.randomize(rand);
+		if(shuffled.classAttribute().isNominal()){
+			shuffled.stratify(folds);
+		}
+
+		ArrayList<Instances> train_sets = new ArrayList<Instances>();
+		ArrayList<Future<double[][]>> predictions = new ArrayList<Future<double[][]>>();
+		for(int i=0; i<folds; i++){
+			final Instances train = shuffled.trainCV(folds, i, rand);
+			final Instances test = shuffled.testCV(folds, i);
+			final Classifier model = Classifier.makeCopy(template);
+			train_sets.add(train);
+			predictions.add(pool.submit(new Callable<double[][]>(){
+				public double[][] call() throws Exception{
+					model.buildClassifier(train);
+					double[][] dist = new double[test.numInstances()][];
+					for(int j=0; j<test.numInstances(); j++){
+						dist[j] = model.distributionForInstance(test.instance(j));
+					}
+					return dist;
+				}
+			}));
+		}
+
+		//merge in fold order, setting the priors from each training fold the same way crossValidateModel does
+		Evaluation eval = new Evaluation(shuffled);
+		try{
+			for(int i=0; i<folds; i++){
+				double[][] dist = predictions.get(i).get();
+				Instances test = shuffled.testCV(folds, i);
+				eval.setPriors(train_sets.get(i));
+				for(int j=0; j<test.numInstances(); j++){
+					eval.evaluateModelOnce(dist[j], test.instance(j));
+				}
+			}
+		}catch(ExecutionException e){
+			throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+		}finally{
+			for(Future<double[][]> f: predictions){
+				f.cancel(true);
+			}
+		}
+		return eval;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: confusions()
+	 * purpose: a readable version of the confusion matrix. for each character of alpha_tnr that was
+	 * 	misclassified, lists what it was mistaken for and how often
+	 * output:
+	 * 	one line per character, e.g. "l (12 instances, 75.0% correct): I x2, 1 x1"
+	 *
+	 *****************************************************************/
+	public static String confusions(Evaluation eval, Instances data){
+		double[][] matrix = eval.confusionMatrix();
+		Attribute cls = data.classAttribute();
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<matrix.length; i++){
+			double total = 0;
+			for(int j=0; j<matrix[i].length; j++){
+				total += matrix[i][j];
+			}
+			if(total==0||matrix[i][i]==total){
+				continue;
+			}
+			sb.append(String.format("%s (%d instances, %.1f%% correct):", cls.value(i), (int)total, 100*matrix[i][i]/total));
+			String sep = " ";
+			for(int j=0; j<matrix[i].length; j++){
+				if(j!=i&&matrix[i][j]>0){
+					sb.append(String.format("%s%s x%d", sep, cls.value(j), (int)matrix[i][j]));
+					sep = ", ";
+				}
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,45 @@
+package printocr;
+
+/*****************************************************************************************************************
+*
+*  OcrGlyph
+*
+*  Purpose: one classified component of an OcrLine: the letter(s) it was recognized as, how sure the classifier
+*  	was and its box in the original image (inclusive pixel coordinates, as Region). the confidence is the
+*  	probability the model gave the letter, or in tree mode the share of the training glyphs at the tree's
+*  	leaf that have the letter
+*
+******************************************************************************************************************/
+
+public final class OcrGlyph{
+
+	private final String text;
+	private final double confidence;
+	private final boolean wordStart;
+	private final int xmin;
+	private final int ymin;
+	private final int xmax;
+	private final int ymax;
+
+	OcrGlyph(String text, double confidence, boolean wordStart, Region r){
+		this.text = text;
+		this.confidence = confidence;
+		this.wordStart = wordStart;
+		this.xmin = r.getXmin();
+		this.ymin = r.getYmin();
+		this.xmax = r.getXmax();
+		this.ymax = r.getYmax();
+	}
+
+	public String getText(){ return text; }
+	//0 to 1
+	public double getConfidence(){ return confidence; }
+	//true for the first glyph of the line and every glyph with a word space before it
+	public boolean isWordStart(){ return wordStart; }
+	public int getXmin(){ return xmin; }
+	public int getYmin(){ return ymin; }
+	public int getXmax(){ return xmax; }
+	public int getYmax(){ return ymax; }
+
+	public String toString(){ return text; }
+}
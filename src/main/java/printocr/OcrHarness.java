@@ -0,0 +1,449 @@
+package printocr;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+
+/*****************************************************************************************************************
+*
+*  OcrHarness
+*
+*  Purpose: end to end accuracy and throughput check. runs the whole recognition pipeline over a corpus of pages
+*  	with known text, several pages at a time, and reports characters and pages per second, the p50/p99 page
+*  	latency, the peak heap and the character and word error rates. every performance change can then be checked
+*  	against accuracy in one run
+*
+*  	the corpus is either a directory of images, each with its ground truth text in a .txt file of the same name
+*  	(page1.jpg and page1.txt), or pages rendered by SyntheticPage. each page of a tiff is a page of the corpus of
+*  	its own, with the part of the .txt up to the next form feed as its ground truth
+*
+*  To Run: java -cp weka.jar:target/print-ocr.jar printocr.OcrHarness <corpus directory or synthetic> <optional parameters>
+*
+*  optional parameters:
+*  	svm: use the SMO classifier instead of the MultilayerPerceptron
+*  	tree: use the J48 decision tree with lazily computed attributes
+*  	threads=<n>: number of pages recognized at once (default: one per core)
+*  	pages=<n>: number of synthetic pages (default 20)
+*  	dpi=<n>, pt=<n>: resolution and font size of the synthetic pages (default 300 and 12)
+*
+******************************************************************************************************************/
+
+public class OcrHarness{
+
+	private static final long heap_sample_millis = 10;
+
+	public static void main(String[] args){
+		if(args.length<1){
+			System.err.println("Error: usage is OcrHarness <corpus directory or synthetic> <optional parameters>");
+			System.exit(1);
+		}
+		boolean svm = false;
+		boolean tree = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int pages = 20;
+		int dpi = 300;
+		int pt = 12;
+		for(int i=1; i<args.length; i++){
+			if(args[i].equals("svm")){
+				svm = true;
+			}else if(args[i].equals("tree")){
+				tree = true;
+			}else if(args[i].startsWith("threads=")){
+				threads = Integer.parseInt(args[i].substring(8));
+			}else if(args[i].startsWith("pages=")){
+				pages = Integer.parseInt(args[i].substring(6));
+			}else if(args[i].startsWith("dpi=")){
+				dpi = Integer.parseInt(args[i].substring(4));
+			}else if(args[i].startsWith("pt=")){
+				pt = Integer.parseInt(args[i].substring(3));
+			}
+		}
+
+		List<Page> corpus = null;
+		try{
+			corpus = args[0].equals("synthetic") ? syntheticCorpus(pages, dpi, pt) : loadCorpus(Paths.get(args[0]));
+		}catch(IOException e){
+			System.err.printf("Error: could not read the corpus %s\n", args[0]);
+			System.exit(1);
+		}catch(IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+		if(corpus.isEmpty()){
+			System.err.println("Error: the corpus has no pages with ground truth text");
+			System.exit(1);
+		}
+
+		OcrConfig config = new OcrConfig.Builder().svm(svm).tree(tree).build();
+		System.out.printf("Building the classifier using the WEKA %s classifier function .... \n", config.getModelName());
+		OcrEngine engine = null;
+		try{
+			engine = OcrEngine.build(config);
+		}catch(Exception e){
+			System.err.println("Error: the model failed to build correctly");
+			System.exit(1);
+		}
+
+		System.out.printf("Recognizing %d pages on %d threads ... \n", corpus.size(), threads);
+		try{
+			run(engine, corpus, threads).print(System.out);
+			if(tree){
+				engine.printTreeStats(System.out);
+			}
+		}catch(Exception e){
+			System.err.println("Error: "+e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: run()
+	 * purpose: recognizes every page of the corpus on a pool of threads and compares the text to the ground truth
+	 * output:
+	 * 	the throughput, latency, memory and accuracy numbers for the run. the peak heap is the most heap in use
+	 * 	at any of the samples taken every heap_sample_millis during the run
+	 *
+	 *****************************************************************/
+	public static Report run(final OcrEngine engine, List<Page> corpus, int threads) throws Exception{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		//the peaks of the separate heap pools are reached at different times, so their sum overstates the peak.
+		//the total in use is sampled instead
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		final AtomicLong peak = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+		ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+		sampler.scheduleAtFixedRate(new Runnable(){
+			public void run(){
+				long used = memory.getHeapMemoryUsage().getUsed();
+				long prev;
+				do{
+					prev = peak.get();
+				}while(used>prev&&!peak.compareAndSet(prev, used));
+			}
+		}, 0, heap_sample_millis, TimeUnit.MILLISECONDS);
+		try{
+			long start = System.nanoTime();
+			ArrayList<Future<PageStats>> results = new ArrayList<Future<PageStats>>();
+			for(final Page page: corpus){
+				results.add(pool.submit(new Callable<PageStats>(){
+					public PageStats call() throws Exception{
+						return page.recognize(engine);
+					}
+				}));
+			}
+			ArrayList<PageStats> stats = new ArrayList<PageStats>();
+			for(Future<PageStats> f: results){
+				stats.add(f.get());
+			}
+			long wall = System.nanoTime() - start;
+			return new Report(stats, wall, peak.get());
+		}finally{
+			sampler.shutdownNow();
+			pool.shutdownNow();
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: loadCorpus()
+	 * purpose: finds the images in a directory that have a ground truth .txt file with the same name. the images
+	 * 	are only read when they are recognized. a tiff gives one page of the corpus for each of its pages, so each
+	 * 	is a latency sample and they are recognized on the harness pool like any other page. throws an
+	 * 	IllegalArgumentException if a tiff's ground truth doesn't have one form feed separated text for each page
+	 *
+	 *****************************************************************/
+	public static List<Page> loadCorpus(Path dir) throws IOException{
+		ArrayList<Page> corpus = new ArrayList<Page>();
+		DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{jpg,jpeg,png,gif,bmp,tif,tiff}");
+		try{
+			for(Path image: files){
+				String name = image.getFileName().toString();
+				Path truth = image.resolveSibling(name.substring(0, name.lastIndexOf('.'))+".txt");
+				if(!Files.isRegularFile(truth)){
+					continue;
+				}
+				String text = new String(Files.readAllBytes(truth), StandardCharsets.UTF_8);
+				if(!isMultiPage(name)){
+					corpus.add(new Page(image, -1, text));
+					continue;
+				}
+				String[] texts = text.split(String.valueOf(OcrDocument.PAGE_SEPARATOR), -1);
+				int pages = pageCount(image);
+				if(texts.length!=pages){
+					throw new IllegalArgumentException("Error: "+name+" has "+pages+" pages but its ground truth has "+texts.length);
+				}
+				for(int p=0; p<pages; p++){
+					corpus.add(new Page(image, p, texts[p]));
+				}
+			}
+		}finally{
+			files.close();
+		}
+		Collections.sort(corpus, new Comparator<Page>(){
+			public int compare(Page a, Page b){
+				int c = a.name.compareTo(b.name);
+				return c!=0 ? c : Integer.compare(a.page, b.page);
+			}
+		});
+		return corpus;
+	}
+
+	static boolean isMultiPage(String name){
+		name = name.toLowerCase();
+		return name.endsWith(".tif")||name.endsWith(".tiff");
+	}
+
+	//the number of pages of a multi-page image, from its headers
+	static int pageCount(Path file) throws IOException{
+		ImageInputStream in = openImage(file);
+		try{
+			ImageReader reader = reader(file, in);
+			try{
+				return reader.getNumImages(true);
+			}finally{
+				reader.dispose();
+			}
+		}finally{
+			in.close();
+		}
+	}
+
+	//decodes one page of a multi-page image
+	static BufferedImage readPage(Path file, int page) throws IOException{
+		ImageInputStream in = openImage(file);
+		try{
+			ImageReader reader = reader(file, in);
+			try{
+				return reader.read(page);
+			}finally{
+				reader.dispose();
+			}
+		}finally{
+			in.close();
+		}
+	}
+
+	private static ImageInputStream openImage(Path file) throws IOException{
+		ImageInputStream in = ImageIO.createImageInputStream(file.toFile());
+		if(in==null){
+			throw new IOException("Error: could not open "+file);
+		}
+		return in;
+	}
+
+	private static ImageReader reader(Path file, ImageInputStream in) throws IOException{
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+		if(!readers.hasNext()){
+			throw new IOException("Error: "+file+" is not a readable image");
+		}
+		ImageReader reader = readers.next();
+		reader.setInput(in, false, true);
+		return reader;
+	}
+
+	//pages are rendered by the thread that recognizes them, with the page number as the seed
+	public static List<Page> syntheticCorpus(int pages, int dpi, int pt){
+		ArrayList<Page> corpus = new ArrayList<Page>();
+		for(int i=0; i<pages; i++){
+			corpus.add(new Page(dpi, pt, i));
+		}
+		return corpus;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: editDistance()
+	 * purpose: levenshtein distance between two sequences (characters or words), keeping two rows of the table
+	 *
+	 *****************************************************************/
+	public static <T> int editDistance(List<T> a, List<T> b){
+		int[] prev = new int[b.size()+1];
+		int[] curr = new int[b.size()+1];
+		for(int j=0; j<=b.size(); j++){
+			prev[j] = j;
+		}
+		for(int i=1; i<=a.size(); i++){
+			curr[0] = i;
+			for(int j=1; j<=b.size(); j++){
+				int cost = a.get(i-1).equals(b.get(j-1)) ? 0 : 1;
+				curr[j] = Math.min(Math.min(curr[j-1]+1, prev[j]+1), prev[j-1]+cost);
+			}
+			int[] temp = prev;
+			prev = curr;
+			curr = temp;
+		}
+		return prev[b.size()];
+	}
+
+	static List<Character> chars(String text){
+		ArrayList<Character> list = new ArrayList<Character>();
+		for(int i=0; i<text.length(); i++){
+			list.add(text.charAt(i));
+		}
+		return list;
+	}
+
+	static List<String> words(String text){
+		ArrayList<String> list = new ArrayList<String>();
+		for(String w: text.trim().split("\\s+")){
+			if(w.length()>0){
+				list.add(w);
+			}
+		}
+		return list;
+	}
+
+	/*****************************************************************
+	 *
+	 * class: Page
+	 * purpose: one page of the corpus with its ground truth text. either an image file, a page of a multi-page
+	 * 	image file or a rendered page
+	 *
+	 *****************************************************************/
+	public static final class Page{
+		private final Path image;
+		private final int page;
+		private final String truth;
+		private final int dpi;
+		private final int pt;
+		private final long seed;
+		private final String name;
+
+		//page is the page of a multi-page image, -1 for a single image
+		Page(Path image, int page, String truth){
+			this.image = image;
+			this.page = page;
+			this.truth = truth.trim();
+			this.dpi = 0;
+			this.pt = 0;
+			this.seed = 0;
+			this.name = image.getFileName().toString();
+		}
+
+		Page(int dpi, int pt, long seed){
+			this.image = null;
+			this.page = -1;
+			this.truth = null;
+			this.dpi = dpi;
+			this.pt = pt;
+			this.seed = seed;
+			this.name = "synthetic "+seed;
+		}
+
+		//the latency includes decoding the image file, or the page of a tiff, but not rendering a synthetic page
+		PageStats recognize(OcrEngine engine) throws IOException{
+			String text = null;
+			String truth = this.truth;
+			long start = 0;
+			if(image==null){
+				SyntheticPage page = SyntheticPage.render(dpi, pt, 1.0, 4, 2, seed);
+				truth = page.getText().trim();
+				start = System.nanoTime();
+				text = engine.recognize(page.getImage()).getText();
+			}else if(page>=0){
+				start = System.nanoTime();
+				text = engine.recognize(readPage(image, page)).getText();
+			}else{
+				start = System.nanoTime();
+				text = engine.recognize(image).getText();
+			}
+			long latency = System.nanoTime() - start;
+			text = text.trim();
+			List<String> truth_words = words(truth);
+			return new PageStats(latency, text.length(), truth.length(), editDistance(chars(text), chars(truth)),
+				truth_words.size(), editDistance(words(text), truth_words));
+		}
+	}
+
+	//the numbers for one page of the corpus
+	static final class PageStats{
+		final long latency;
+		final int chars;
+		final int truth_chars;
+		final int char_errors;
+		final int truth_words;
+		final int word_errors;
+
+		PageStats(long latency, int chars, int truth_chars, int char_errors, int truth_words, int word_errors){
+			this.latency = latency;
+			this.chars = chars;
+			this.truth_chars = truth_chars;
+			this.char_errors = char_errors;
+			this.truth_words = truth_words;
+			this.word_errors = word_errors;
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * class: Report
+	 * purpose: totals for one run of the harness
+	 *
+	 *****************************************************************/
+	public static final class Report{
+		private final int pages;
+		private final double seconds;
+		private final long chars;
+		private final double p50;
+		private final double p99;
+		private final long peak_heap;
+		private final double cer;
+		private final double wer;
+
+		Report(List<PageStats> stats, long wallNanos, long peakHeap){
+			long[] latencies = new long[stats.size()];
+			long chars = 0, truth_chars = 0, char_errors = 0, truth_words = 0, word_errors = 0;
+			for(int i=0; i<stats.size(); i++){
+				PageStats s = stats.get(i);
+				latencies[i] = s.latency;
+				chars += s.chars;
+				truth_chars += s.truth_chars;
+				char_errors += s.char_errors;
+				truth_words += s.truth_words;
+				word_errors += s.word_errors;
+			}
+			Arrays.sort(latencies);
+			this.pages = stats.size();
+			this.seconds = wallNanos/1e9;
+			this.chars = chars;
+			this.p50 = percentile(latencies, 50)/1e6;
+			this.p99 = percentile(latencies, 99)/1e6;
+			this.peak_heap = peakHeap;
+			this.cer = truth_chars==0 ? 0 : (double)char_errors/truth_chars;
+			this.wer = truth_words==0 ? 0 : (double)word_errors/truth_words;
+		}
+
+		//nearest rank percentile of sorted values
+		static long percentile(long[] sorted, int p){
+			int rank = (int)Math.ceil(p/100.0*sorted.length);
+			return sorted[Math.max(0, rank-1)];
+		}
+
+		public double getCharsPerSecond(){ return chars/seconds; }
+		public double getPagesPerSecond(){ return pages/seconds; }
+		public double getP50Millis(){ return p50; }
+		public double getP99Millis(){ return p99; }
+		public long getPeakHeapBytes(){ return peak_heap; }
+		public double getCharErrorRate(){ return cer; }
+		public double getWordErrorRate(){ return wer; }
+
+		public void print(PrintStream out){
+			out.printf("pages              %12d\n", pages);
+			out.printf("wall time (s)      %12.2f\n", seconds);
+			out.printf("chars/second       %12.1f\n", getCharsPerSecond());
+			out.printf("pages/second       %12.3f\n", getPagesPerSecond());
+			out.printf("p50 latency (ms)   %12.1f\n", p50);
+			out.printf("p99 latency (ms)   %12.1f\n", p99);
+			out.printf("peak heap (MB)     %12.1f\n", peak_heap/(1024.0*1024.0));
+			out.printf("char error rate    %12.4f\n", cer);
+			out.printf("word error rate    %12.4f\n", wer);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package printocr;
+
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  OcrLine
+*
+*  Purpose: one recognized line of text. holds the text, the position of the line in reading order and the box
+*  	around all of its components in the original image. handed to an OcrLineListener as soon as the line is
+*  	classified. the glyphs (letter, confidence and box of each component) are there for lines recognized by the
+*  	engine and for lines read back from a ResultCache
+*
+******************************************************************************************************************/
+
+public final class OcrLine{
+	
+	private final int index;
+	private final String text;
+	private final List<Region> regions;
+	private final List<OcrGlyph> glyphs;
+	private final int xmin;
+	private final int ymin;
+	private final int xmax;
+	private final int ymax;
+	
+	OcrLine(int index, String text, List<Region> regions){
+		this(index, text, regions, Collections.<OcrGlyph>emptyList());
+	}
+	
+	OcrLine(int index, String text, List<Region> regions, List<OcrGlyph> glyphs){
+		this.index = index;
+		this.text = text;
+		this.regions = Collections.unmodifiableList(new ArrayList<Region>(regions));
+		this.glyphs = Collections.unmodifiableList(new ArrayList<OcrGlyph>(glyphs));
+		Region box = new Region();
+		for(Region r: regions){
+			box.updateX(r.getXmin());
+			box.updateX(r.getXmax());
+			box.updateY(r.getYmin());
+			box.updateY(r.getYmax());
+		}
+		this.xmin = box.getXmin();
+		this.ymin = box.getYmin();
+		this.xmax = box.getXmax();
+		this.ymax = box.getYmax();
+	}
+	
+	public int getIndex(){ return index; }
+	public String getText(){ return text; }
+	public int getXmin(){ return xmin; }
+	public int getYmin(){ return ymin; }
+	public int getXmax(){ return xmax; }
+	public int getYmax(){ return ymax; }
+	//in reading order, one per component. empty if not known
+	public List<OcrGlyph> getGlyphs(){ return glyphs; }
+	
+	List<Region> getRegions(){ return regions; }
+	
+	public String toString(){ return text; }
+}
@@ -0,0 +1,15 @@
+/*****************************************************************************************************************
+*
+*  OcrLineListener
+*
+*  Purpose: callback used by OcrEngine.recognize() to hand over each line as soon as it is classified, so callers
+*  	can start on the text before the rest of the page is done. lines arrive in reading order on the thread
+*  	that called recognize()
+*
+******************************************************************************************************************/
+
+package printocr;
+
+public interface OcrLineListener{
+	void lineRecognized(OcrLine line);
+}
@@ -0,0 +1,46 @@
+package printocr;
+
+import java.io.*;
+
+/*****************************************************************************************************************
+*
+*  OcrLineWriter
+*
+*  Purpose: OcrLineListener that writes every line to a Writer as it arrives and flushes it, so readers of the
+*  	output file see the text grow line by line. nothing is kept in memory after a line is written
+*
+******************************************************************************************************************/
+
+public class OcrLineWriter implements OcrLineListener, Closeable{
+	
+	private final Writer out;
+	private IOException error = null;
+	
+	public OcrLineWriter(Writer out){
+		this.out = out;
+	}
+	
+	public OcrLineWriter(File file) throws IOException{
+		this(new BufferedWriter(new FileWriter(file)));
+	}
+	
+	public void lineRecognized(OcrLine line){
+		if(error!=null){
+			return;
+		}
+		try{
+			out.write(line.getText());
+			out.write('\n');
+			out.flush();
+		}catch(IOException e){
+			error = e; //remembered and thrown from close() since the listener can't throw
+		}
+	}
+	
+	public void close() throws IOException{
+		out.close();
+		if(error!=null){
+			throw error;
+		}
+	}
+}
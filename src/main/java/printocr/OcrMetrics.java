@@ -0,0 +1,45 @@
+/*****************************************************************************************************************
+*
+*  OcrMetrics
+*
+*  Purpose: pluggable sink for the timings and counters of the ocr pipeline. set one on the OcrConfig to see
+*  	where the time for a page goes. an engine can be used by many threads at once so implementations must be
+*  	thread safe. the default, NONE, turns the measurements off
+*
+******************************************************************************************************************/
+
+package printocr;
+
+public interface OcrMetrics{
+	
+	OcrMetrics NONE = new OcrMetrics(){
+		public void stageCompleted(OcrStage stage, long wallNanos, long cpuNanos, long allocatedBytes, long items){ }
+		public void pageCompleted(long wallNanos, int components, int merges, int lines, int glyphs){ }
+	};
+	
+	/*****************************************************************
+	 *
+	 * function: stageCompleted()
+	 * purpose: called once per stage for every page
+	 * input:
+	 * 	stage: the pipeline stage
+	 * 	wallNanos, cpuNanos: wall clock and thread cpu time spent in the stage (cpu is -1 if not supported)
+	 * 	allocatedBytes: bytes allocated by the thread during the stage (-1 if not supported)
+	 * 	items: pixels binarized, components labeled, lines ordered or glyphs handled by the stage
+	 *
+	 *****************************************************************/
+	void stageCompleted(OcrStage stage, long wallNanos, long cpuNanos, long allocatedBytes, long items);
+	
+	/*****************************************************************
+	 *
+	 * function: pageCompleted()
+	 * purpose: called after all the stages of a page
+	 * input:
+	 * 	wallNanos: total time for the page
+	 * 	components: components found by labeling
+	 * 	merges: components merged into their neighbour by order_by_line
+	 * 	lines, glyphs: lines and glyphs classified
+	 *
+	 *****************************************************************/
+	void pageCompleted(long wallNanos, int components, int merges, int lines, int glyphs);
+}
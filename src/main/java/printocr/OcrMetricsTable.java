@@ -0,0 +1,59 @@
+package printocr;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*****************************************************************************************************************
+*
+*  OcrMetricsTable
+*
+*  Purpose: OcrMetrics sink that adds up the stage timings and page counters of every page it sees and prints
+*  	them as a summary table. used by the stats command line option. safe to share between threads
+*
+******************************************************************************************************************/
+
+public class OcrMetricsTable implements OcrMetrics{
+
+	private final int n = OcrStage.values().length;
+	private final AtomicLongArray wall = new AtomicLongArray(n);
+	private final AtomicLongArray cpu = new AtomicLongArray(n);
+	private final AtomicLongArray bytes = new AtomicLongArray(n);
+	private final AtomicLongArray items = new AtomicLongArray(n);
+	//pages, page wall time, components, merges, lines, glyphs
+	private final AtomicLongArray totals = new AtomicLongArray(6);
+
+	public void stageCompleted(OcrStage stage, long wallNanos, long cpuNanos, long allocatedBytes, long count){
+		int s = stage.ordinal();
+		wall.addAndGet(s, wallNanos);
+		cpu.addAndGet(s, cpuNanos);
+		bytes.addAndGet(s, allocatedBytes);
+		items.addAndGet(s, count);
+	}
+
+	public void pageCompleted(long wallNanos, int components, int merges, int lines, int glyphs){
+		totals.incrementAndGet(0);
+		totals.addAndGet(1, wallNanos);
+		totals.addAndGet(2, components);
+		totals.addAndGet(3, merges);
+		totals.addAndGet(4, lines);
+		totals.addAndGet(5, glyphs);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: print()
+	 * purpose: outputs one row per stage with the total wall and cpu time (ms), MB allocated and items handled,
+	 * 	followed by the page counters. cpu and allocation columns are negative if the jvm can't measure them
+	 *
+	 *****************************************************************/
+	public void print(PrintStream out){
+		long pages = totals.get(0);
+		out.printf("%-18s %12s %12s %12s %12s\n", "stage", "wall ms", "cpu ms", "alloc MB", "items");
+		for(OcrStage stage: OcrStage.values()){
+			int s = stage.ordinal();
+			out.printf("%-18s %12.2f %12.2f %12.2f %12d\n", stage.getLabel(), wall.get(s)/1e6, cpu.get(s)/1e6, bytes.get(s)/(1024.0*1024.0), items.get(s));
+		}
+		out.printf("%-18s %12.2f\n", "total", totals.get(1)/1e6);
+		out.printf("pages = %d, components = %d, merges = %d, lines = %d, glyphs classified = %d\n", pages, totals.get(2), totals.get(3), totals.get(4), totals.get(5));
+	}
+}
@@ -0,0 +1,33 @@
+package printocr;
+
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  OcrResult
+*
+*  Purpose: immutable result of recognizing a single image. holds the recognized text (lines separated by '\n')
+*  	and each OcrLine on its own
+*
+******************************************************************************************************************/
+
+public final class OcrResult{
+	
+	private final String text;
+	private final List<OcrLine> lines;
+	
+	OcrResult(List<OcrLine> lines){
+		this.lines = Collections.unmodifiableList(new ArrayList<OcrLine>(lines));
+		StringBuilder sb = new StringBuilder();
+		for(OcrLine line: lines){
+			sb.append(line.getText()).append('\n');
+		}
+		this.text = sb.toString();
+	}
+	
+	public String getText(){ return text; }
+	public List<OcrLine> getLines(){ return lines; }
+	public int getLineCount(){ return lines.size(); }
+	
+	public String toString(){ return text; }
+}
@@ -0,0 +1,491 @@
+package printocr;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*****************************************************************************************************************
+*
+*  OcrSpool
+*
+*  Purpose: batch recognition by any number of worker processes, on one machine or on several sharing a
+*  	filesystem, coordinated only through files in a spool directory. each worker builds the model once and
+*  	recognizes one image at a time, so a page that crashes or hangs a worker costs that worker (and, after a
+*  	few tries, that page) and nothing else
+*
+*  	spool/pending/<job>.<try>.job	a job waiting for a worker. holds the path of the image
+*  	spool/claimed/<job>.<try>.<worker>	a job being recognized. the file's modification time is the worker's lease,
+*  					renewed every lease/4 while it works, for at most the deadline of a job.
+*  					a worker still on a job at its deadline exits, so the lease runs out
+*  	spool/results/<job>.txt		the recognized text
+*  	spool/status/<job>.status		done or failed, the worker, the try, the time taken and the line count or error
+*
+*  	every step is a rename, which is atomic within a directory tree, so of the workers that try to claim a job
+*  	(or reclaim an expired one) exactly one succeeds and the rest see the file gone. files are written under a
+*  	temporary name first and renamed into place. a claim whose lease is older than the lease time is moved back
+*  	to pending with the next try number by whichever worker notices it first, or to failed once a job has had
+*  	max tries. a reclaimed job can be finished twice (by the slow worker and by the new one), which writes the same
+*  	result twice. leases compare the clocks of the machines, which must agree to well within the lease time
+*
+*  To Run: java -cp weka.jar:target/print-ocr.jar printocr.OcrSpool <spool directory> <command> <parameters>
+*
+*  commands:
+*  	submit <images or directories>: adds a job for every image (the images of a directory, not its subdirectories)
+*  	worker <options>: recognizes jobs until there are none pending or claimed (or for ever with follow)
+*  	local <n> <options>: starts n workers on this machine with the same java and classpath and waits for them
+*  	status: the number of jobs in each state
+*
+*  options (any other option is an error):
+*  	svm, tree, clean, open, close, blocks, columns, deskew, normalize, xheight=<n>, cascade, margin=<x>,
+*  		dict=<word list>, below=<x>: as for PrintOcr. the tuned options in model.options are used as by PrintOcr
+*  	lease=<seconds>: how long a claim lasts without being renewed (default 120)
+*  	deadline=<seconds>: the longest a worker spends on one job before it gives up and exits (default 900)
+*  	tries=<n>: how many times a job is claimed before it fails (default 3)
+*  	follow: keep waiting for new jobs instead of exiting when the spool is empty
+*
+******************************************************************************************************************/
+
+public class OcrSpool{
+
+	private static final String[] image_types = {".jpg", ".jpeg", ".png", ".gif", ".bmp", ".tif", ".tiff", ".pbm", ".pgm"};
+	private static final long poll_millis = 1000;
+
+	private final Path pending;
+	private final Path claimed;
+	private final Path results;
+	private final Path status;
+
+	public OcrSpool(Path dir) throws IOException{
+		this.pending = Files.createDirectories(dir.resolve("pending"));
+		this.claimed = Files.createDirectories(dir.resolve("claimed"));
+		this.results = Files.createDirectories(dir.resolve("results"));
+		this.status = Files.createDirectories(dir.resolve("status"));
+	}
+
+	public static void main(String[] args){
+		if(args.length<2){
+			System.err.println("Error: usage is OcrSpool <spool directory> submit|worker|local|status <parameters>");
+			System.exit(1);
+		}
+		try{
+			OcrSpool spool = new OcrSpool(Paths.get(args[0]));
+			String[] rest = Arrays.copyOfRange(args, 2, args.length);
+			if(args[1].equals("submit")){
+				int jobs = 0;
+				for(String name: rest){
+					jobs += spool.submit(Paths.get(name));
+				}
+				System.out.printf("submitted %d jobs\n", jobs);
+			}else if(args[1].equals("worker")){
+				System.exit(spool.work(rest));
+			}else if(args[1].equals("local")){
+				System.exit(spool.local(Integer.parseInt(rest[0]), Arrays.copyOfRange(rest, 1, rest.length)));
+			}else if(args[1].equals("status")){
+				spool.printStatus(System.out);
+			}else{
+				System.err.printf("Error: unknown command %s\n", args[1]);
+				System.exit(1);
+			}
+		}catch(IOException e){
+			System.err.println("Error: problem with the spool directory: "+e.getMessage());
+			System.exit(1);
+		}catch(IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: submit()
+	 * purpose: adds a pending job for the image, or for every image of the directory
+	 * output:
+	 * 	the number of jobs added
+	 *
+	 *****************************************************************/
+	public int submit(Path image) throws IOException{
+		if(Files.isDirectory(image)){
+			ArrayList<Path> images = new ArrayList<Path>();
+			DirectoryStream<Path> files = Files.newDirectoryStream(image);
+			try{
+				for(Path p: files){
+					if(Files.isRegularFile(p)&&isImage(p)){
+						images.add(p);
+					}
+				}
+			}finally{
+				files.close();
+			}
+			Collections.sort(images);
+			for(Path p: images){
+				submit(p);
+			}
+			return images.size();
+		}
+		String name = image.getFileName().toString().replaceAll("[^A-Za-z0-9_-]", "_");
+		String job = name+"-"+Long.toString(System.currentTimeMillis(), 36)+"-"+Long.toString(ThreadLocalRandom.current().nextLong()&0xffffffffL, 36);
+		publish(pending.resolve(job+".1.job"), image.toAbsolutePath().toString()+"\n");
+		return 1;
+	}
+
+	private static boolean isImage(Path p){
+		String name = p.getFileName().toString().toLowerCase();
+		for(String type: image_types){
+			if(name.endsWith(type)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: work()
+	 * purpose: the worker loop. builds the engine, then reclaims expired leases, claims the next pending job and
+	 * 	recognizes it, until the spool is empty. an exception (or running out of memory) on a page fails that job
+	 * 	and the worker goes on with the next one. a job still running at its deadline (a hung page) stops its
+	 * 	lease from being renewed and exits the process with code 2, the job is retried once the lease runs out
+	 * output:
+	 * 	the exit code, 0 unless the engine couldn't be built
+	 *
+	 *****************************************************************/
+	public int work(String[] options) throws IOException{
+		final Options opt = new Options(options);
+		final String worker = workerId();
+		System.out.printf("worker %s building the %s classifier ... \n", worker, opt.config.getModelName());
+		OcrEngine engine = null;
+		try{
+			engine = OcrEngine.build(opt.config);
+		}catch(Exception e){
+			System.err.println("Error: the model failed to build correctly");
+			return 1;
+		}
+
+		ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "OcrSpool lease renewer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		int done = 0;
+		try{
+			while(true){
+				reclaim(opt.lease_millis, opt.tries);
+				final Path claim = claim(worker);
+				if(claim==null){
+					if(!opt.follow&&isEmpty(claimed)){
+						break;
+					}
+					try{
+						Thread.sleep(poll_millis);
+					}catch(InterruptedException e){
+						Thread.currentThread().interrupt();
+						break;
+					}
+					continue;
+				}
+				final long deadline = System.currentTimeMillis()+opt.deadline_millis;
+				ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(new Runnable(){
+					public void run(){
+						if(System.currentTimeMillis()>deadline){
+							//the claim is left to expire so another worker retries the job, this one is stuck
+							System.err.printf("Error: %s is still running after %d seconds, worker %s exits\n", claim.getFileName(), opt.deadline_millis/1000, worker);
+							System.exit(2);
+						}
+						try{
+							Files.setLastModifiedTime(claim, FileTime.fromMillis(System.currentTimeMillis()));
+						}catch(IOException e){
+							//reclaimed by another worker, finishing the job anyway does no harm
+						}
+					}
+				}, opt.lease_millis/4, opt.lease_millis/4, TimeUnit.MILLISECONDS);
+				try{
+					recognize(engine, claim, worker);
+					done++;
+				}finally{
+					renewal.cancel(false);
+					Files.deleteIfExists(claim);
+				}
+			}
+		}finally{
+			renewer.shutdownNow();
+		}
+		System.out.printf("worker %s finished %d jobs\n", worker, done);
+		return 0;
+	}
+
+	//recognizes the image of a claimed job and writes its result and status
+	private void recognize(OcrEngine engine, Path claim, String worker) throws IOException{
+		String[] name = claim.getFileName().toString().split("\\.");
+		String job = name[0];
+		int attempt = Integer.parseInt(name[1]);
+		long start = System.nanoTime();
+		String outcome = null;
+		try{
+			Path image = Paths.get(new String(Files.readAllBytes(claim), StandardCharsets.UTF_8).trim());
+			String text = null;
+			int lines = 0;
+			if(image.getFileName().toString().toLowerCase().matches(".*\\.tiff?")){
+				OcrDocument doc = engine.recognizePages(image);
+				text = doc.getText();
+				for(OcrResult page: doc.getPages()){
+					lines += page.getLineCount();
+				}
+			}else{
+				OcrResult result = engine.recognize(image);
+				text = result.getText();
+				lines = result.getLineCount();
+			}
+			publish(results.resolve(job+".txt"), text);
+			outcome = String.format("done worker=%s try=%d ms=%d lines=%d\n", worker, attempt, (System.nanoTime()-start)/1000000, lines);
+		}catch(Exception e){
+			outcome = failure(worker, attempt, start, e);
+		}catch(OutOfMemoryError e){
+			outcome = failure(worker, attempt, start, e);
+		}catch(StackOverflowError e){
+			outcome = failure(worker, attempt, start, e);
+		}
+		publish(status.resolve(job+".status"), outcome);
+		System.out.printf("%s: %s", job, outcome);
+	}
+
+	private static String failure(String worker, int attempt, long start, Throwable e){
+		return String.format("failed worker=%s try=%d ms=%d error=%s\n", worker, attempt, (System.nanoTime()-start)/1000000, String.valueOf(e).replace('\n', ' '));
+	}
+
+	/*****************************************************************
+	 *
+	 * function: claim()
+	 * purpose: moves the oldest pending job (by name order) into claimed under this worker's name
+	 * output:
+	 * 	the claim file, or null if there is no pending job left
+	 *
+	 *****************************************************************/
+	private Path claim(String worker) throws IOException{
+		for(Path job: list(pending, "*.job")){
+			String name = job.getFileName().toString();
+			Path claim = claimed.resolve(name.substring(0, name.length()-".job".length())+"."+worker);
+			try{
+				//the move keeps the time of the pending file, which may be older than a lease. it is touched first
+				//so the claim never shows up in claimed with its lease already run out
+				Files.setLastModifiedTime(job, FileTime.fromMillis(System.currentTimeMillis()));
+				Files.move(job, claim, StandardCopyOption.ATOMIC_MOVE);
+				Files.setLastModifiedTime(claim, FileTime.fromMillis(System.currentTimeMillis())); //the lease starts now
+			}catch(NoSuchFileException e){
+				continue; //another worker got it first, or reclaimed it already
+			}catch(FileAlreadyExistsException e){
+				continue;
+			}
+			return claim;
+		}
+		return null;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: reclaim()
+	 * purpose: moves every claim whose lease has run out back to pending with the next try number, or fails its
+	 * 	job if it has had all its tries
+	 *
+	 *****************************************************************/
+	private void reclaim(long leaseMillis, int tries) throws IOException{
+		long now = System.currentTimeMillis();
+		for(Path claim: list(claimed, "*")){
+			try{
+				if(now-Files.getLastModifiedTime(claim).toMillis()<leaseMillis){
+					continue;
+				}
+				String[] name = claim.getFileName().toString().split("\\.");
+				int attempt = Integer.parseInt(name[1]);
+				if(attempt<tries){
+					Files.move(claim, pending.resolve(name[0]+"."+(attempt+1)+".job"), StandardCopyOption.ATOMIC_MOVE);
+					System.out.printf("%s: the lease of %s ran out, trying again\n", name[0], name[2]);
+				}else{
+					//moved aside first so only one worker writes the status
+					Path dead = claimed.resolve(name[0]+"."+attempt+".expired~");
+					Files.move(claim, dead, StandardCopyOption.ATOMIC_MOVE);
+					publish(status.resolve(name[0]+".status"), String.format("failed worker=%s try=%d error=the lease ran out on every try\n", name[2], attempt));
+					Files.deleteIfExists(dead);
+					System.out.printf("%s: failed, the lease ran out on all %d tries\n", name[0], tries);
+				}
+			}catch(NoSuchFileException e){
+				//finished or reclaimed by another worker meanwhile
+			}catch(FileAlreadyExistsException e){
+				//reclaimed by another worker meanwhile
+			}
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: local()
+	 * purpose: runs n workers as separate processes of this machine and waits for all of them to exit
+	 * output:
+	 * 	0 if every job is done, 1 if a worker exited with an error or a job failed or is still pending (e.g.
+	 * 	every worker died)
+	 *
+	 *****************************************************************/
+	public int local(int n, String[] options) throws IOException{
+		new Options(options); //fails here rather than in every worker
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		ArrayList<Process> workers = new ArrayList<Process>();
+		for(int i=0; i<n; i++){
+			ArrayList<String> cmd = new ArrayList<String>();
+			cmd.add(java);
+			if(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+				cmd.add("--add-modules"); //keeps the vector kernels on in the workers
+				cmd.add("jdk.incubator.vector");
+			}
+			cmd.add("-cp");
+			cmd.add(System.getProperty("java.class.path"));
+			cmd.add(OcrSpool.class.getName());
+			cmd.add(claimed.getParent().toString());
+			cmd.add("worker");
+			cmd.addAll(Arrays.asList(options));
+			workers.add(new ProcessBuilder(cmd).inheritIO().start());
+		}
+		System.out.printf("started %d workers\n", n);
+		int errors = 0;
+		for(Process p: workers){
+			try{
+				int code = p.waitFor();
+				if(code!=0){
+					System.err.printf("Error: a worker exited with code %d\n", code);
+					errors++;
+				}
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		int[] counts = printStatus(System.out);
+		return errors+counts[0]+counts[1]+counts[3]==0 ? 0 : 1;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: printStatus()
+	 * output:
+	 * 	the number of pending, claimed, done and failed jobs, which are also printed
+	 *
+	 *****************************************************************/
+	public int[] printStatus(PrintStream out) throws IOException{
+		int[] counts = new int[4];
+		counts[0] = list(pending, "*.job").size();
+		counts[1] = list(claimed, "*").size();
+		for(Path p: list(status, "*.status")){
+			String s = new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+			counts[s.startsWith("done") ? 2 : 3]++;
+		}
+		out.printf("pending = %d, claimed = %d, done = %d, failed = %d\n", counts[0], counts[1], counts[2], counts[3]);
+		return counts;
+	}
+
+	//writes the file under a temporary name and renames it into place, so readers never see half of it
+	private static void publish(Path file, String text) throws IOException{
+		Path tmp = file.resolveSibling(file.getFileName()+"."+UUID.randomUUID()+".tmp~");
+		try{
+			Files.write(tmp, text.getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}finally{
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static List<Path> list(Path dir, String glob) throws IOException{
+		ArrayList<Path> paths = new ArrayList<Path>();
+		DirectoryStream<Path> files = Files.newDirectoryStream(dir, glob);
+		try{
+			for(Path p: files){
+				if(!p.getFileName().toString().endsWith("~")){ //temporary files
+					paths.add(p);
+				}
+			}
+		}finally{
+			files.close();
+		}
+		Collections.sort(paths);
+		return paths;
+	}
+
+	private boolean isEmpty(Path dir) throws IOException{
+		return list(dir, "*").isEmpty();
+	}
+
+	//host and process id, without dots since they separate the parts of a claim's name
+	private static String workerId(){
+		String host = "localhost";
+		try{
+			host = InetAddress.getLocalHost().getHostName();
+		}catch(IOException e){
+			//the process id is still unique on this machine
+		}
+		return (host+"-"+ProcessHandle.current().pid()).replaceAll("[^A-Za-z0-9_-]", "_");
+	}
+
+	//the worker options
+	private static final class Options{
+		OcrConfig config;
+		long lease_millis = 120000;
+		long deadline_millis = 900000;
+		int tries = 3;
+		boolean follow = false;
+
+		//throws an IllegalArgumentException for an unknown option or a bad value
+		Options(String[] args){
+			OcrConfig.Builder b = new OcrConfig.Builder();
+			for(String arg: args){
+				if(arg.equals("svm")){
+					b.svm(true);
+				}else if(arg.equals("tree")){
+					b.tree(true);
+				}else if(arg.equals("clean")){
+					b.despeckle(true).minComponentFraction(0.015);
+				}else if(arg.equals("open")){
+					b.opening(true);
+				}else if(arg.equals("close")){
+					b.closing(true);
+				}else if(arg.equals("cascade")){
+					b.cascade(true);
+				}else if(arg.startsWith("margin=")){
+					b.cascadeMargin(Double.parseDouble(arg.substring(7)));
+				}else if(arg.startsWith("xheight=")){
+					b.targetXHeight(Integer.parseInt(arg.substring(8)));
+				}else if(arg.equals("blocks")){
+					b.textBlocks(true);
+				}else if(arg.equals("columns")){
+					b.columns(true);
+				}else if(arg.equals("deskew")){
+					b.deskew(true);
+				}else if(arg.equals("normalize")){
+					b.targetXHeight(20);
+				}else if(arg.startsWith("dict=")){
+					b.dictionary(arg.substring(5));
+				}else if(arg.startsWith("below=")){
+					b.correctBelow(Double.parseDouble(arg.substring(6)));
+				}else if(arg.startsWith("lease=")){
+					lease_millis = Long.parseLong(arg.substring(6))*1000;
+				}else if(arg.startsWith("deadline=")){
+					deadline_millis = Long.parseLong(arg.substring(9))*1000;
+				}else if(arg.startsWith("tries=")){
+					tries = Integer.parseInt(arg.substring(6));
+				}else if(arg.equals("follow")){
+					follow = true;
+				}else{
+					throw new IllegalArgumentException("Error: unknown worker option "+arg);
+				}
+			}
+			config = b.build();
+			try{
+				config = OcrTuner.withTunedOptions(config);
+			}catch(Exception e){
+				System.err.printf("Error: could not read %s, using the default options\n", OcrTuner.OPTIONS_FILE);
+			}
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*****************************************************************************************************************
+*
+*  OcrStage
+*
+*  Purpose: the stages of the ocr pipeline that are timed and counted by an OcrMetrics sink, in pipeline order
+*
+******************************************************************************************************************/
+
+package printocr;
+
+public enum OcrStage{
+	BINARIZE("binarization"),
+	NORMALIZE("resolution"),
+	CLEANUP("noise cleanup"),
+	DESKEW("deskew"),
+	LABEL("labeling"),
+	FILTER("component filter"),
+	LAYOUT("layout"),
+	ORDER_LINES("order_by_line"),
+	SPACES("define_spaces"),
+	FEATURES("attribute vectors"),
+	CLASSIFY("classification"),
+	CORRECT("dictionary");
+	
+	private final String label;
+	
+	OcrStage(String label){
+		this.label = label;
+	}
+	
+	public String getLabel(){ return label; }
+}
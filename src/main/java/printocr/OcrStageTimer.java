@@ -0,0 +1,163 @@
+package printocr;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import jdk.jfr.*;
+
+/*****************************************************************************************************************
+*
+*  OcrStageTimer
+*
+*  Purpose: measures the stages of the pipeline for a single page on the current thread. a stage can be started
+*  	and stopped several times (e.g. once per line) and the totals are reported once per page to the OcrMetrics
+*  	sink and as jfr events. if neither the sink nor the jfr events are enabled every call returns straight away
+*
+******************************************************************************************************************/
+
+final class OcrStageTimer{
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private static final boolean cpu_supported = threads.isCurrentThreadCpuTimeSupported();
+	private static final boolean alloc_supported = threads instanceof com.sun.management.ThreadMXBean
+		&& ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported();
+
+	private final OcrMetrics sink;
+	private final boolean enabled;
+	private final int n = OcrStage.values().length;
+	private final long[] wall = new long[n];
+	private final long[] cpu = new long[n];
+	private final long[] bytes = new long[n];
+	private final long[] items = new long[n];
+	private long page_start;
+	private long wall_start;
+	private long cpu_start;
+	private long bytes_start;
+
+	OcrStageTimer(OcrMetrics sink){
+		this.sink = sink;
+		this.enabled = sink!=OcrMetrics.NONE || OcrStageEvent.TYPE.isEnabled() || OcrPageEvent.TYPE.isEnabled();
+		if(enabled){
+			page_start = System.nanoTime();
+		}
+	}
+
+	public boolean isEnabled(){ return enabled; }
+
+	public void start(){
+		if(!enabled){
+			return;
+		}
+		cpu_start = cpu_time();
+		bytes_start = allocated_bytes();
+		wall_start = System.nanoTime();
+	}
+
+	public void stop(OcrStage stage, long count){
+		if(!enabled){
+			return;
+		}
+		int s = stage.ordinal();
+		wall[s] += System.nanoTime() - wall_start;
+		cpu[s] += cpu_time() - cpu_start;
+		bytes[s] += allocated_bytes() - bytes_start;
+		items[s] += count;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: add()
+	 * purpose: adds the stage totals of a timer that measured part of the same page on another thread. the
+	 * 	times of parts that ran at the same time are added up, like cpu time
+	 *
+	 *****************************************************************/
+	public void add(OcrStageTimer other){
+		if(!enabled||!other.enabled){
+			return;
+		}
+		for(int s=0; s<n; s++){
+			wall[s] += other.wall[s];
+			cpu[s] += other.cpu[s];
+			bytes[s] += other.bytes[s];
+			items[s] += other.items[s];
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: pageCompleted()
+	 * purpose: reports the totals of each stage that ran and the page counters
+	 *
+	 *****************************************************************/
+	public void pageCompleted(int components, int merges, int lines, int glyphs){
+		if(!enabled){
+			return;
+		}
+		long page_wall = System.nanoTime() - page_start;
+		for(OcrStage stage: OcrStage.values()){
+			int s = stage.ordinal();
+			long c = cpu_supported ? cpu[s] : -1;
+			long b = alloc_supported ? bytes[s] : -1;
+			sink.stageCompleted(stage, wall[s], c, b, items[s]);
+			OcrStageEvent event = new OcrStageEvent();
+			if(event.shouldCommit()){
+				event.stage = stage.getLabel();
+				event.wallTime = wall[s];
+				event.cpuTime = c;
+				event.allocated = b;
+				event.items = items[s];
+				event.commit();
+			}
+		}
+		sink.pageCompleted(page_wall, components, merges, lines, glyphs);
+		OcrPageEvent event = new OcrPageEvent();
+		if(event.shouldCommit()){
+			event.wallTime = page_wall;
+			event.components = components;
+			event.merges = merges;
+			event.lines = lines;
+			event.glyphs = glyphs;
+			event.commit();
+		}
+	}
+
+	private static long cpu_time(){
+		return cpu_supported ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static long allocated_bytes(){
+		if(!alloc_supported){
+			return 0;
+		}
+		return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
+
+@Name("PrintOcr.Stage")
+@Label("OCR Stage")
+@Category("PrintOcr")
+@Description("Totals for one pipeline stage of one page")
+@StackTrace(false)
+class OcrStageEvent extends Event{
+	static final EventType TYPE = EventType.getEventType(OcrStageEvent.class);
+
+	@Label("Stage") String stage;
+	@Label("Wall Time") @Timespan(Timespan.NANOSECONDS) long wallTime;
+	@Label("CPU Time") @Timespan(Timespan.NANOSECONDS) long cpuTime;
+	@Label("Allocated") @DataAmount long allocated;
+	@Label("Items") long items;
+}
+
+@Name("PrintOcr.Page")
+@Label("OCR Page")
+@Category("PrintOcr")
+@Description("Counters for one recognized page")
+@StackTrace(false)
+class OcrPageEvent extends Event{
+	static final EventType TYPE = EventType.getEventType(OcrPageEvent.class);
+
+	@Label("Wall Time") @Timespan(Timespan.NANOSECONDS) long wallTime;
+	@Label("Components") int components;
+	@Label("Merges") int merges;
+	@Label("Lines") int lines;
+	@Label("Glyphs") int glyphs;
+}
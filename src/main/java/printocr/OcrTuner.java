@@ -0,0 +1,352 @@
+package printocr;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import weka.core.*;
+import weka.classifiers.*;
+
+/*****************************************************************************************************************
+*
+*  OcrTuner
+*
+*  Purpose: searches the options of the MultilayerPerceptron (hidden layers, learning rate, epochs) or the SMO
+*  	(C and the kernel) for the best trade off between accuracy and speed. each set of options is cross validated
+*  	as its own task so several are tried at once, one per core. the score of a set of options is
+*
+*  		score = cross validated % correct - latencyWeight * microseconds to classify one glyph
+*
+*  	candidates whose accuracy after the first few folds is far below the best one found so far are dropped, and
+*  	no fold is started that isn't expected to finish within the wall clock budget. the latency is measured after
+*  	the search, one candidate at a time, within the same budget. the winning options are saved in model.options
+*  	so the next run builds the same model
+*
+******************************************************************************************************************/
+
+public class OcrTuner{
+
+	public static final String OPTIONS_FILE = "model.options";
+
+	private static final int folds = 5;
+	private static final long seed = 1;
+	private static final int min_folds = 2; //folds to run before a candidate may be dropped
+	private static final double margin = 10; //% correct below the best at which a candidate is dropped
+	private static final int probe_fraction = 10; //the first fold's time is estimated from a build on 1/10 of it
+	private static final int timing_share = 10; //% of the budget kept for timing the candidates
+
+	private final boolean svm;
+	private final Instances data;
+	private final double latencyWeight;
+
+	public OcrTuner(boolean svm, Instances data, double latencyWeight){
+		this.svm = svm;
+		this.data = data;
+		this.latencyWeight = latencyWeight;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: defaultSpace()
+	 * purpose: the grid of options searched for each model type
+	 * output:
+	 * 	the list of weka option strings
+	 *
+	 *****************************************************************/
+	public static List<String> defaultSpace(boolean svm){
+		ArrayList<String> space = new ArrayList<String>();
+		if(svm){
+			String[] kernels = {"weka.classifiers.functions.supportVector.PolyKernel -E 1.0", "weka.classifiers.functions.supportVector.PolyKernel -E 2.0",
+				"weka.classifiers.functions.supportVector.RBFKernel -G 0.01", "weka.classifiers.functions.supportVector.RBFKernel -G 0.1"};
+			for(String c: new String[]{"0.5", "1.0", "2.0", "8.0"}){
+				for(String k: kernels){
+					space.add("-M -C "+c+" -K \""+k+"\"");
+				}
+			}
+		}else{
+			for(String h: new String[]{"a", "i", "t", "20", "40"}){
+				for(String l: new String[]{"0.1", "0.3"}){
+					for(String n: new String[]{"200", "500"}){
+						space.add("-L "+l+" -M 0.2 -N "+n+" -H "+h);
+					}
+				}
+			}
+		}
+		return space;
+	}
+
+	//picks n of the candidates at random (with a fixed seed) instead of trying the whole grid
+	public static List<String> randomSpace(List<String> space, int n){
+		ArrayList<String> shuffled = new ArrayList<String>(space);
+		Collections.shuffle(shuffled, new Random(seed));
+		return shuffled.subList(0, Math.min(n, shuffled.size()));
+	}
+
+	/*****************************************************************
+	 *
+	 * function: tune()
+	 * purpose: cross validates every candidate on a pool of threads until they are all done or the search part
+	 * 	of the budget runs out, then times the classification of each one on this thread, alone, in the rest of
+	 * 	the budget (timing_share %). a weka classifier can't be stopped while it is being built, so evaluate()
+	 * 	only starts a fold that it expects to finish in time and checks the time between instances. the workers
+	 * 	are daemon threads and are not waited for past the end of the search, a build that overruns is abandoned
+	 * 	with its candidate
+	 * input:
+	 * 	space: weka option strings to try
+	 * 	budgetMillis: wall clock budget for the search and the timing
+	 * 	threads: number of candidates evaluated at once
+	 * output:
+	 * 	all the trials that finished and were timed within the budget, best first. empty if there are none
+	 *
+	 *****************************************************************/
+	public List<Trial> tune(List<String> space, long budgetMillis, int threads) throws Exception{
+		long start = System.currentTimeMillis();
+		long deadline = start + budgetMillis;
+		final long search_deadline = start + budgetMillis*(100-timing_share)/100;
+		final AtomicLong best_accuracy = new AtomicLong(Double.doubleToLongBits(0));
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory(){
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "OcrTuner");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		ArrayList<Future<Candidate>> futures = new ArrayList<Future<Candidate>>();
+		for(final String options: space){
+			futures.add(pool.submit(new Callable<Candidate>(){
+				public Candidate call() throws Exception{
+					return evaluate(options, search_deadline, best_accuracy);
+				}
+			}));
+		}
+		ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+		try{
+			for(int i=0; i<futures.size(); i++){
+				long remaining = search_deadline - System.currentTimeMillis();
+				try{
+					Candidate c = futures.get(i).get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+					if(c!=null){
+						candidates.add(c);
+					}
+				}catch(TimeoutException e){
+					//out of time, the candidate is not counted
+				}catch(ExecutionException e){
+					System.err.printf("Error: the options %s failed: %s\n", space.get(i), e.getCause().getMessage());
+				}
+			}
+		}finally{
+			pool.shutdownNow();
+		}
+
+		//the most accurate are timed first, so if the budget runs out it is the worst ones that are not counted
+		Collections.sort(candidates, new Comparator<Candidate>(){
+			public int compare(Candidate a, Candidate b){ return Double.compare(b.accuracy, a.accuracy); }
+		});
+		ArrayList<Trial> trials = new ArrayList<Trial>();
+		for(Candidate c: candidates){
+			double micros = time(c.model, c.test, deadline);
+			if(micros<0){
+				break;
+			}
+			trials.add(new Trial(c.options, c.accuracy, micros, c.folds_run, latencyWeight));
+		}
+		Collections.sort(trials);
+		return trials;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: evaluate()
+	 * purpose: cross validates one set of options. a fold is only started if it is expected to finish before the
+	 * 	deadline: the first fold by building the model on 1/probe_fraction of its training data and scaling the
+	 * 	time up (linearly for the MultilayerPerceptron, whose epochs go over every instance, and by the square for
+	 * 	SMO), the others by the time the fold before took
+	 * input:
+	 * 	options: the weka options
+	 * 	deadline: when the search ends
+	 * 	best_accuracy: the best accuracy of any candidate so far, as the bits of a double
+	 * output:
+	 * 	the accuracy, with the model and test instances of the last fold run for timing. null if the deadline
+	 * 	comes first
+	 *
+	 *****************************************************************/
+	Candidate evaluate(String options, long deadline, AtomicLong best_accuracy) throws Exception{
+		Random rand = new Random(seed);
+		Instances shuffled = new Instances(data);
+		shuffled.randomize(rand);
+		shuffled.stratify(folds);
+		Evaluation eval = new Evaluation(shuffled);
+		long fold_millis = -1;
+		for(int i=0; i<folds; i++){
+			Instances train = shuffled.trainCV(folds, i, rand);
+			Instances test = shuffled.testCV(folds, i);
+			if(fold_millis<0){
+				long probe_start = System.currentTimeMillis();
+				Classifier probe = OcrEngine.newModel(svm, Utils.splitOptions(options));
+				probe.buildClassifier(new Instances(train, 0, Math.max(1, train.numInstances()/probe_fraction)));
+				fold_millis = (System.currentTimeMillis()-probe_start)*(svm ? probe_fraction*probe_fraction : probe_fraction);
+			}
+			long fold_start = System.currentTimeMillis();
+			if(fold_start+fold_millis>deadline||Thread.currentThread().isInterrupted()){
+				return null;
+			}
+			Classifier model = OcrEngine.newModel(svm, Utils.splitOptions(options));
+			model.buildClassifier(train);
+			eval.setPriors(train);
+			for(int j=0; j<test.numInstances(); j++){
+				if(j%256==0&&(System.currentTimeMillis()>deadline||Thread.currentThread().isInterrupted())){
+					return null;
+				}
+				eval.evaluateModelOnce(model.distributionForInstance(test.instance(j)), test.instance(j));
+			}
+			fold_millis = System.currentTimeMillis() - fold_start;
+			if(i+1>=min_folds&&i+1<folds&&eval.pctCorrect()<Double.longBitsToDouble(best_accuracy.get())-margin){
+				return new Candidate(options, eval.pctCorrect(), i+1, model, test);
+			}
+			if(i+1==folds){
+				double accuracy = eval.pctCorrect();
+				long prev;
+				do{
+					prev = best_accuracy.get();
+				}while(accuracy>Double.longBitsToDouble(prev)&&!best_accuracy.compareAndSet(prev, Double.doubleToLongBits(accuracy)));
+				return new Candidate(options, accuracy, folds, model, test);
+			}
+		}
+		return null;
+	}
+
+	//microseconds to classify one of the test instances, after a pass to warm up the model. -1 if the deadline
+	//comes first
+	private static double time(Classifier model, Instances test, long deadline) throws Exception{
+		for(int j=0; j<test.numInstances(); j++){
+			if(j%256==0&&System.currentTimeMillis()>deadline){
+				return -1;
+			}
+			model.distributionForInstance(test.instance(j));
+		}
+		long start = System.nanoTime();
+		for(int j=0; j<test.numInstances(); j++){
+			model.distributionForInstance(test.instance(j));
+		}
+		long nanos = System.nanoTime() - start;
+		if(System.currentTimeMillis()>deadline){
+			return -1;
+		}
+		return nanos/1000.0/Math.max(1, test.numInstances());
+	}
+
+	//a cross validated set of options waiting to be timed
+	static final class Candidate{
+		final String options;
+		final double accuracy;
+		final int folds_run;
+		final Classifier model;
+		final Instances test;
+
+		Candidate(String options, double accuracy, int folds_run, Classifier model, Instances test){
+			this.options = options;
+			this.accuracy = accuracy;
+			this.folds_run = folds_run;
+			this.model = model;
+			this.test = test;
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: saveOptions()
+	 * purpose: stores the options for the model type in the options file, keeping the other model's options
+	 *
+	 *****************************************************************/
+	public static void saveOptions(File file, boolean svm, Trial winner) throws IOException{
+		Properties props = new Properties();
+		if(file.exists()){
+			FileInputStream in = new FileInputStream(file);
+			try{ props.load(in); }finally{ in.close(); }
+		}
+		props.setProperty(modelName(svm), winner.getOptions());
+		FileOutputStream out = new FileOutputStream(file);
+		try{
+			props.store(out, String.format("%s tuned: %.2f%% correct, %.1f us per glyph", modelName(svm), winner.getAccuracy(), winner.getMicrosPerGlyph()));
+		}finally{
+			out.close();
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: loadOptions()
+	 * output:
+	 * 	the saved options for the model type, or null if there are none
+	 *
+	 *****************************************************************/
+	public static String[] loadOptions(File file, boolean svm) throws Exception{
+		if(!file.exists()){
+			return null;
+		}
+		Properties props = new Properties();
+		FileInputStream in = new FileInputStream(file);
+		try{ props.load(in); }finally{ in.close(); }
+		String options = props.getProperty(modelName(svm));
+		return options==null ? null : Utils.splitOptions(options);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: withTunedOptions()
+	 * output:
+	 * 	the config with the options saved in OPTIONS_FILE for its model, or the config itself if none are saved
+	 * 	or it is for the decision tree, which isn't tuned
+	 *
+	 *****************************************************************/
+	public static OcrConfig withTunedOptions(OcrConfig config) throws Exception{
+		if(config.isTree()){
+			return config;
+		}
+		String[] tuned = loadOptions(new File(OPTIONS_FILE), config.isSvm());
+		return tuned==null ? config : config.toBuilder().modelOptions(tuned).build();
+	}
+
+	private static String modelName(boolean svm){
+		return svm ? "SMO" : "MultilayerPerceptron";
+	}
+
+	/*****************************************************************
+	 *
+	 * class: Trial
+	 * purpose: the outcome of cross validating one set of options. sorts best score first
+	 *
+	 *****************************************************************/
+	public static final class Trial implements Comparable<Trial>{
+		private final String options;
+		private final double accuracy;
+		private final double micros;
+		private final int folds_run;
+		private final double score;
+
+		Trial(String options, double accuracy, double micros, int folds_run, double latencyWeight){
+			this.options = options;
+			this.accuracy = accuracy;
+			this.micros = micros;
+			this.folds_run = folds_run;
+			this.score = accuracy - latencyWeight*micros;
+		}
+
+		public String getOptions(){ return options; }
+		public double getAccuracy(){ return accuracy; }
+		public double getMicrosPerGlyph(){ return micros; }
+		public double getScore(){ return score; }
+		public boolean isComplete(){ return folds_run==folds; }
+
+		public int compareTo(Trial t){
+			if(this.isComplete()!=t.isComplete()){
+				return this.isComplete() ? -1 : 1; //candidates that were dropped early never win
+			}
+			return Double.compare(t.score, this.score);
+		}
+
+		public String toString(){
+			return String.format("%8.2f %10.2f %10.1f %6s  %s", score, accuracy, micros, isComplete() ? "" : "("+folds_run+"/"+folds+")", options);
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package printocr;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/*****************************************************************************************************************
+*
+*  OcrXmlWriter
+*
+*  Purpose: OcrLineListener that writes the lines as hOCR (xhtml) or ALTO (v4) as they arrive, with the box of
+*  	the page, of every line, word and glyph and the classifier's confidence of every word and glyph, so a search
+*  	index can highlight hits without running a second tool. the xml goes through an XMLStreamWriter and is
+*  	flushed after every line, so nothing is kept in memory once a line is written however large the page is
+*
+*  	hOCR: ocr_page, ocr_line, ocrx_word and ocrx_cinfo elements. the bbox of each is x0 y0 x1 y1 with x1 and y1
+*  	one past the last pixel, x_wconf is the word's confidence in percent (the mean of its glyphs) and x_conf the
+*  	glyph's. ALTO: Page, PrintSpace, one TextBlock, TextLine, String (WC 0 to 1), SP and Glyph (GC 0 to 1)
+*  	elements with HPOS, VPOS, WIDTH and HEIGHT in pixels
+*
+*  	a line without glyphs is written as a single word with the line's box and no
+*  	confidence. call startPage() before the first line of each page and close() at the end
+*
+******************************************************************************************************************/
+
+public class OcrXmlWriter implements OcrLineListener, Closeable{
+
+	public enum Format{
+		HOCR("hocr"),
+		ALTO("alto.xml");
+
+		private final String extension;
+
+		Format(String extension){
+			this.extension = extension;
+		}
+
+		//of the output file
+		public String getExtension(){ return extension; }
+	}
+
+	private static final String alto_ns = "http://www.loc.gov/standards/alto/ns-v4#";
+
+	private final Format format;
+	private final Writer out;
+	private final XMLStreamWriter xml;
+	private XMLStreamException error = null;
+	private int page = 0; //pages started
+	private int line_count = 0; //lines of the current page
+	private boolean in_page = false;
+
+	public OcrXmlWriter(Writer out, Format format) throws IOException{
+		this.format = format;
+		this.out = out;
+		try{
+			this.xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+			xml.writeStartDocument("UTF-8", "1.0");
+			xml.writeCharacters("\n");
+			if(format==Format.HOCR){
+				xml.writeStartElement("html");
+				xml.writeDefaultNamespace("http://www.w3.org/1999/xhtml");
+				xml.writeStartElement("head");
+				xml.writeStartElement("title");
+				xml.writeEndElement();
+				meta("ocr-system", "print-ocr");
+				meta("ocr-capabilities", "ocr_page ocr_line ocrx_word ocrx_cinfo");
+				xml.writeEndElement();
+				xml.writeCharacters("\n");
+				xml.writeStartElement("body");
+			}else{
+				xml.writeStartElement("alto");
+				xml.writeDefaultNamespace(alto_ns);
+				xml.writeStartElement("Description");
+				xml.writeStartElement("MeasurementUnit");
+				xml.writeCharacters("pixel");
+				xml.writeEndElement();
+				xml.writeEndElement();
+				xml.writeCharacters("\n");
+				xml.writeStartElement("Layout");
+			}
+		}catch(XMLStreamException e){
+			throw new IOException("Error: could not start the "+format+" output", e);
+		}
+	}
+
+	public OcrXmlWriter(File file, Format format) throws IOException{
+		this(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)), format);
+	}
+
+	private void meta(String name, String content) throws XMLStreamException{
+		xml.writeEmptyElement("meta");
+		xml.writeAttribute("name", name);
+		xml.writeAttribute("content", content);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: startPage()
+	 * purpose: ends the page before (if any) and starts a new one
+	 * input:
+	 * 	image: the name of the image file, written into the page element
+	 * 	width, height: of the image in pixels
+	 *
+	 *****************************************************************/
+	public void startPage(String image, int width, int height) throws IOException{
+		try{
+			endPage();
+			page++;
+			line_count = 0;
+			in_page = true;
+			if(format==Format.HOCR){
+				xml.writeCharacters("\n");
+				xml.writeStartElement("div");
+				xml.writeAttribute("class", "ocr_page");
+				xml.writeAttribute("id", "page_"+page);
+				xml.writeAttribute("title", "image \""+image.replace("\"", "")+"\"; bbox 0 0 "+width+" "+height+"; ppageno "+(page-1));
+			}else{
+				xml.writeCharacters("\n");
+				xml.writeStartElement("Page");
+				xml.writeAttribute("ID", "page_"+page);
+				xml.writeAttribute("PHYSICAL_IMG_NR", String.valueOf(page));
+				xml.writeAttribute("WIDTH", String.valueOf(width));
+				xml.writeAttribute("HEIGHT", String.valueOf(height));
+				xml.writeStartElement("PrintSpace");
+				box(0, 0, width-1, height-1);
+				xml.writeStartElement("TextBlock");
+				xml.writeAttribute("ID", "block_"+page);
+			}
+			flush();
+		}catch(XMLStreamException e){
+			throw new IOException("Error: problem writing the "+format+" output", e);
+		}
+	}
+
+	private void endPage() throws XMLStreamException{
+		if(!in_page){
+			return;
+		}
+		xml.writeEndElement(); //div, or TextBlock
+		if(format==Format.ALTO){
+			xml.writeEndElement(); //PrintSpace
+			xml.writeEndElement(); //Page
+		}
+		in_page = false;
+	}
+
+	public void lineRecognized(OcrLine line){
+		if(error!=null){
+			return;
+		}
+		try{
+			if(!in_page){
+				throw new XMLStreamException("Error: a line arrived before startPage()");
+			}
+			line_count++;
+			String id = page+"_"+line_count;
+			if(format==Format.HOCR){
+				hocrLine(line, id);
+			}else{
+				altoLine(line, id);
+			}
+			flush();
+		}catch(XMLStreamException e){
+			error = e; //remembered and thrown from close() since the listener can't throw
+		}catch(IOException e){
+			error = new XMLStreamException(e);
+		}
+	}
+
+	private void hocrLine(OcrLine line, String id) throws XMLStreamException{
+		xml.writeCharacters("\n");
+		xml.writeStartElement("span");
+		xml.writeAttribute("class", "ocr_line");
+		xml.writeAttribute("id", "line_"+id);
+		xml.writeAttribute("title", bbox(line.getXmin(), line.getYmin(), line.getXmax(), line.getYmax()));
+		List<List<OcrGlyph>> words = words(line);
+		if(words.isEmpty()){
+			xml.writeStartElement("span");
+			xml.writeAttribute("class", "ocrx_word");
+			xml.writeAttribute("id", "word_"+id+"_1");
+			xml.writeAttribute("title", bbox(line.getXmin(), line.getYmin(), line.getXmax(), line.getYmax()));
+			xml.writeCharacters(line.getText());
+			xml.writeEndElement();
+		}
+		for(int w=0; w<words.size(); w++){
+			List<OcrGlyph> word = words.get(w);
+			int[] b = bounds(word);
+			if(w>0){
+				xml.writeCharacters(" ");
+			}
+			xml.writeStartElement("span");
+			xml.writeAttribute("class", "ocrx_word");
+			xml.writeAttribute("id", "word_"+id+"_"+(w+1));
+			xml.writeAttribute("title", bbox(b[0], b[1], b[2], b[3])+String.format(Locale.ROOT, "; x_wconf %d", Math.round(100*confidence(word))));
+			for(OcrGlyph g: word){
+				xml.writeStartElement("span");
+				xml.writeAttribute("class", "ocrx_cinfo");
+				xml.writeAttribute("title", "x_bboxes "+g.getXmin()+" "+g.getYmin()+" "+(g.getXmax()+1)+" "+(g.getYmax()+1)+String.format(Locale.ROOT, "; x_conf %.2f", 100*g.getConfidence()));
+				xml.writeCharacters(g.getText());
+				xml.writeEndElement();
+			}
+			xml.writeEndElement();
+		}
+		xml.writeEndElement();
+	}
+
+	private void altoLine(OcrLine line, String id) throws XMLStreamException{
+		xml.writeCharacters("\n");
+		xml.writeStartElement("TextLine");
+		xml.writeAttribute("ID", "line_"+id);
+		box(line.getXmin(), line.getYmin(), line.getXmax(), line.getYmax());
+		List<List<OcrGlyph>> words = words(line);
+		if(words.isEmpty()){
+			xml.writeEmptyElement("String");
+			xml.writeAttribute("ID", "string_"+id+"_1");
+			box(line.getXmin(), line.getYmin(), line.getXmax(), line.getYmax());
+			xml.writeAttribute("CONTENT", line.getText());
+		}
+		for(int w=0; w<words.size(); w++){
+			List<OcrGlyph> word = words.get(w);
+			int[] b = bounds(word);
+			if(w>0){
+				//the gap between the words
+				int[] prev = bounds(words.get(w-1));
+				xml.writeEmptyElement("SP");
+				xml.writeAttribute("HPOS", String.valueOf(prev[2]+1));
+				xml.writeAttribute("VPOS", String.valueOf(Math.min(prev[1], b[1])));
+				xml.writeAttribute("WIDTH", String.valueOf(Math.max(0, b[0]-prev[2]-1)));
+			}
+			StringBuilder content = new StringBuilder();
+			for(OcrGlyph g: word){
+				content.append(g.getText());
+			}
+			xml.writeStartElement("String");
+			xml.writeAttribute("ID", "string_"+id+"_"+(w+1));
+			box(b[0], b[1], b[2], b[3]);
+			xml.writeAttribute("CONTENT", content.toString());
+			xml.writeAttribute("WC", String.format(Locale.ROOT, "%.4f", confidence(word)));
+			for(int k=0; k<word.size(); k++){
+				OcrGlyph g = word.get(k);
+				xml.writeEmptyElement("Glyph");
+				xml.writeAttribute("ID", "glyph_"+id+"_"+(w+1)+"_"+(k+1));
+				box(g.getXmin(), g.getYmin(), g.getXmax(), g.getYmax());
+				xml.writeAttribute("CONTENT", g.getText());
+				xml.writeAttribute("GC", String.format(Locale.ROOT, "%.4f", g.getConfidence()));
+			}
+			xml.writeEndElement();
+		}
+		xml.writeEndElement();
+	}
+
+	//the glyphs of the line split into words
+	private static List<List<OcrGlyph>> words(OcrLine line){
+		ArrayList<List<OcrGlyph>> words = new ArrayList<List<OcrGlyph>>();
+		for(OcrGlyph g: line.getGlyphs()){
+			if(g.isWordStart()||words.isEmpty()){
+				words.add(new ArrayList<OcrGlyph>());
+			}
+			words.get(words.size()-1).add(g);
+		}
+		return words;
+	}
+
+	//{xmin, ymin, xmax, ymax} around the glyphs
+	private static int[] bounds(List<OcrGlyph> glyphs){
+		Region box = new Region();
+		for(OcrGlyph g: glyphs){
+			box.updateX(g.getXmin());
+			box.updateX(g.getXmax());
+			box.updateY(g.getYmin());
+			box.updateY(g.getYmax());
+		}
+		return new int[]{box.getXmin(), box.getYmin(), box.getXmax(), box.getYmax()};
+	}
+
+	private static double confidence(List<OcrGlyph> glyphs){
+		double sum = 0;
+		for(OcrGlyph g: glyphs){
+			sum += g.getConfidence();
+		}
+		return glyphs.isEmpty() ? 0 : sum/glyphs.size();
+	}
+
+	private static String bbox(int xmin, int ymin, int xmax, int ymax){
+		return "bbox "+xmin+" "+ymin+" "+(xmax+1)+" "+(ymax+1);
+	}
+
+	private void box(int xmin, int ymin, int xmax, int ymax) throws XMLStreamException{
+		xml.writeAttribute("HPOS", String.valueOf(xmin));
+		xml.writeAttribute("VPOS", String.valueOf(ymin));
+		xml.writeAttribute("WIDTH", String.valueOf(xmax-xmin+1));
+		xml.writeAttribute("HEIGHT", String.valueOf(ymax-ymin+1));
+	}
+
+	private void flush() throws XMLStreamException, IOException{
+		xml.flush();
+		out.flush();
+	}
+
+	/*****************************************************************
+	 *
+	 * function: close()
+	 * purpose: ends the document and closes the output. throws the first error any line had
+	 *
+	 *****************************************************************/
+	public void close() throws IOException{
+		try{
+			if(error==null){
+				endPage();
+				xml.writeEndElement(); //body, or Layout
+				xml.writeEndElement(); //html, or alto
+				xml.writeCharacters("\n");
+				xml.writeEndDocument();
+				xml.flush();
+			}
+			xml.close();
+		}catch(XMLStreamException e){
+			if(error==null){
+				error = e;
+			}
+		}finally{
+			out.close();
+		}
+		if(error!=null){
+			throw new IOException("Error: problem writing the "+format+" output", error);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package printocr;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  PackedRows
+*
+*  Purpose: converts the binary image between the BitSet used by the pipeline, where bit i*width+j is the pixel
+*  	in row i, column j, and one long[] per row with every row starting on bit 0 of its first long. in the packed
+*  	form bit j of long k is the pixel in column 64*k+j, so neighbouring rows line up word for word and the
+*  	image can be filtered, sheared and counted 64 pixels at a time
+*
+******************************************************************************************************************/
+
+final class PackedRows{
+
+	private PackedRows(){}
+
+	/*****************************************************************
+	 *
+	 * function: pack()
+	 * purpose: copies the image into one long[] per row, shifting each row so that it starts on bit 0
+	 *
+	 *****************************************************************/
+	public static long[][] pack(BitSet img, int width, int height){
+		long[] src = img.toLongArray(); //trailing zero longs are left off
+		int words = (width+63)>>>6;
+		long last = lastWordMask(width);
+		long[][] rows = new long[height][words];
+		for(int i=0; i<height; i++){
+			long start = (long)i*width;
+			for(int k=0; k<words; k++){
+				long bit = start + ((long)k<<6);
+				int idx = (int)(bit>>>6);
+				int off = (int)(bit&63);
+				long v = word(src, idx)>>>off;
+				if(off!=0){
+					v |= word(src, idx+1)<<(64-off);
+				}
+				rows[i][k] = v;
+			}
+			rows[i][words-1] &= last;
+		}
+		return rows;
+	}
+
+	//the same for a PageBits, which must have fewer than 2^31 rows of fewer than 2^31 pixels
+	public static long[][] pack(PageBits page){
+		int width = page.getWidth();
+		int height = page.getHeight();
+		long total = (page.size()+63)>>>6;
+		int words = (width+63)>>>6;
+		long last = lastWordMask(width);
+		long[][] rows = new long[height][words];
+		for(int i=0; i<height; i++){
+			long start = (long)i*width;
+			for(int k=0; k<words; k++){
+				long bit = start + ((long)k<<6);
+				long idx = bit>>>6;
+				int off = (int)(bit&63);
+				long v = page.word(idx)>>>off;
+				if(off!=0&&idx+1<total){
+					v |= page.word(idx+1)<<(64-off);
+				}
+				rows[i][k] = v;
+			}
+			rows[i][words-1] &= last;
+		}
+		return rows;
+	}
+
+	//the opposite of pack()
+	public static BitSet unpack(long[][] rows, int width, int height){
+		long[] dst = new long[(int)(((long)width*height+63)>>>6)];
+		for(int i=0; i<height; i++){
+			long start = (long)i*width;
+			for(int k=0; k<rows[i].length; k++){
+				long v = rows[i][k];
+				if(v==0){
+					continue;
+				}
+				long bit = start + ((long)k<<6);
+				int idx = (int)(bit>>>6);
+				int off = (int)(bit&63);
+				dst[idx] |= v<<off;
+				if(off!=0&&idx+1<dst.length){
+					dst[idx+1] |= v>>>(64-off);
+				}
+			}
+		}
+		return BitSet.valueOf(dst);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: fromBytes()
+	 * purpose: makes the BitSet of an image stored 8 pixels to a byte with the first pixel of each byte in its high
+	 * 	bit and every row starting on a new byte (pbm files, TYPE_BYTE_BINARY rasters). each byte is bit reversed
+	 * 	and ORed into the long where its 8 pixels go
+	 * input:
+	 * 	data: the bytes, only read
+	 * 	offset: index of the first byte of the first row
+	 * 	stride: bytes from the start of one row to the start of the next
+	 * 	width, height: size of the image
+	 * 	blackIsOne: true if a 1 bit is a black pixel, false if a 0 bit is
+	 *
+	 *****************************************************************/
+	public static BitSet fromBytes(ByteBuffer data, int offset, int stride, int width, int height, boolean blackIsOne){
+		int row_bytes = (width+7)>>>3;
+		int flip = blackIsOne ? 0 : 0xff;
+		long last = (width&7)==0 ? 0xff : (1<<(width&7))-1; //pixels of the last byte that are inside the row
+		long[] bits = new long[(int)(((long)width*height+63)>>>6)];
+		for(int i=0; i<height; i++){
+			long start = (long)i*width;
+			int p = offset + i*stride;
+			for(int k=0; k<row_bytes; k++){
+				int b = (data.get(p+k)&0xff)^flip;
+				if(b==0){
+					continue;
+				}
+				//the first pixel is the high bit of the byte but the lowest bit of the BitSet
+				long v = Integer.reverse(b)>>>24;
+				if(k==row_bytes-1){
+					v &= last;
+				}
+				long bit = start + ((long)k<<3);
+				int idx = (int)(bit>>>6);
+				int off = (int)(bit&63);
+				bits[idx] |= v<<off;
+				if(off>56){
+					bits[idx+1] |= v>>>(64-off);
+				}
+			}
+		}
+		return BitSet.valueOf(bits);
+	}
+
+	private static long word(long[] a, int i){
+		return i>=0&&i<a.length ? a[i] : 0;
+	}
+
+	//the bits of the last long of a row that are inside the image
+	public static long lastWordMask(int width){
+		return (width&63)==0 ? -1L : (1L<<(width&63))-1;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: shiftRow()
+	 * purpose: moves a packed row right (towards larger x) by the given number of pixels, or left if negative.
+	 * 	pixels moved past either end are lost and white pixels are shifted in
+	 *
+	 *****************************************************************/
+	public static long[] shiftRow(long[] row, int pixels, long last){
+		long[] out = new long[row.length];
+		int words = pixels>>6; //rounds down for negative shifts, so bits is always 0 to 63
+		int bits = pixels&63;
+		for(int k=0; k<row.length; k++){
+			long v = word(row, k-words)<<bits;
+			if(bits!=0){
+				v |= word(row, k-words-1)>>>(64-bits);
+			}
+			out[k] = v;
+		}
+		out[row.length-1] &= last;
+		return out;
+	}
+}
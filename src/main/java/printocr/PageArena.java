@@ -0,0 +1,117 @@
+package printocr;
+
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  PageArena
+*
+*  Purpose: owns the memory of the PageBits of one page. the arena is closed as soon as the page is recognized,
+*  	after which its buffers can't be used any more (they throw an IllegalStateException) and their chunks go
+*  	back to a Pool, so the next page reuses them instead of allocating and collecting hundreds of megabytes
+*  	for every large scan
+*
+*  	the memory is long[] chunks of CHUNK_WORDS longs (8 MB) on the java heap. off heap segments
+*  	(java.lang.foreign) would need a preview or incubator module on the jdk we build for, so the chunks are what
+*  	gives the buffers long indexes and deterministic reuse instead. buffers smaller than one chunk get an array
+*  	of their own size that isn't pooled
+*
+******************************************************************************************************************/
+
+public final class PageArena implements AutoCloseable{
+
+	public static final int CHUNK_WORDS = 1<<20;
+
+	private final Pool pool;
+	private final ArrayList<long[]> chunks = new ArrayList<long[]>();
+	private final ArrayList<PageBits> buffers = new ArrayList<PageBits>();
+	private boolean closed = false;
+
+	public PageArena(Pool pool){
+		this.pool = pool;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: allocate()
+	 * purpose: a new all white bit plane of the given size that lives until the arena is closed
+	 *
+	 *****************************************************************/
+	public synchronized PageBits allocate(int width, int height){
+		if(closed){
+			throw new IllegalStateException("Error: the page arena is already closed");
+		}
+		long words = ((long)width*height+63)>>>6;
+		long[][] storage = new long[(int)((words+CHUNK_WORDS-1)/CHUNK_WORDS)][];
+		for(int c=0; c<storage.length; c++){
+			long size = Math.min(CHUNK_WORDS, words-(long)c*CHUNK_WORDS);
+			if(size==CHUNK_WORDS){
+				storage[c] = pool.take();
+				chunks.add(storage[c]);
+			}else{
+				storage[c] = new long[(int)size];
+			}
+		}
+		PageBits bits = new PageBits(width, height, storage);
+		buffers.add(bits);
+		return bits;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: close()
+	 * purpose: invalidates every buffer of the arena and returns their chunks to the pool. closing twice does nothing
+	 *
+	 *****************************************************************/
+	public synchronized void close(){
+		if(closed){
+			return;
+		}
+		closed = true;
+		for(PageBits b: buffers){
+			b.release();
+		}
+		buffers.clear();
+		for(long[] c: chunks){
+			pool.give(c);
+		}
+		chunks.clear();
+	}
+
+	/*****************************************************************
+	 *
+	 * Pool
+	 *
+	 * purpose: the free chunks shared by the arenas of an engine. keeps at most maxChunks of them, any more are
+	 * 	left to the garbage collector. thread safe
+	 *
+	 *****************************************************************/
+	public static final class Pool{
+		private final int max_chunks;
+		private final ArrayDeque<long[]> free = new ArrayDeque<long[]>();
+
+		public Pool(int maxChunks){
+			this.max_chunks = maxChunks;
+		}
+
+		long[] take(){
+			long[] c = null;
+			synchronized(this){
+				c = free.poll();
+			}
+			if(c==null){
+				return new long[CHUNK_WORDS];
+			}
+			Arrays.fill(c, 0); //outside the lock, other threads can take chunks meanwhile
+			return c;
+		}
+
+		synchronized void give(long[] c){
+			if(free.size()<max_chunks){
+				free.push(c);
+			}
+		}
+
+		public synchronized int size(){ return free.size(); }
+	}
+}
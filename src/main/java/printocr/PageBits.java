@@ -0,0 +1,160 @@
+package printocr;
+
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  PageBits
+*
+*  Purpose: the binary image of a page with long indexes, so pages of more than 2^31 pixels (map and blueprint
+*  	scans) can be labeled and have their glyphs cut out. bit y*width+x is the pixel in row y, column x, the same
+*  	layout as the BitSet used by the rest of the pipeline, stored 64 pixels to a long in chunks of
+*  	PageArena.CHUNK_WORDS longs. made by a PageArena and only usable until it is closed
+*
+*  	not thread safe for writing. any number of threads can read a page once it is filled in
+*
+******************************************************************************************************************/
+
+public final class PageBits{
+
+	private static final int chunk_shift = 20; //PageArena.CHUNK_WORDS = 1<<20
+	private static final int chunk_mask = (1<<chunk_shift)-1;
+
+	private final int width;
+	private final int height;
+	private long[][] chunks;
+
+	PageBits(int width, int height, long[][] chunks){
+		this.width = width;
+		this.height = height;
+		this.chunks = chunks;
+	}
+
+	public int getWidth(){ return width; }
+	public int getHeight(){ return height; }
+	public long size(){ return (long)width*height; }
+
+	//called by the arena when it is closed
+	void release(){
+		chunks = null;
+	}
+
+	private long[][] chunks(){
+		long[][] c = chunks;
+		if(c==null){
+			throw new IllegalStateException("Error: the page buffer was used after its arena was closed");
+		}
+		return c;
+	}
+
+	//long number w of the image
+	public long word(long w){
+		return chunks()[(int)(w>>>chunk_shift)][(int)(w&chunk_mask)];
+	}
+
+	//ORs v into long number w
+	public void orWord(long w, long v){
+		chunks()[(int)(w>>>chunk_shift)][(int)(w&chunk_mask)] |= v;
+	}
+
+	public boolean get(long index){
+		return (word(index>>>6)>>>(index&63)&1)!=0;
+	}
+
+	public boolean get(int x, int y){
+		return get((long)y*width+x);
+	}
+
+	public void set(long index){
+		orWord(index>>>6, 1L<<(index&63));
+	}
+
+	/*****************************************************************
+	 *
+	 * function: nextSetBit()
+	 * output:
+	 * 	the index of the first black pixel from from (inclusive) to to (exclusive), -1 if there is none
+	 *
+	 *****************************************************************/
+	public long nextSetBit(long from, long to){
+		long[][] c = chunks();
+		if(from>=to){
+			return -1;
+		}
+		long w = from>>>6;
+		long last = (to-1)>>>6;
+		long v = c[(int)(w>>>chunk_shift)][(int)(w&chunk_mask)] & (-1L<<(from&63));
+		while(true){
+			if(v!=0){
+				long index = (w<<6) + Long.numberOfTrailingZeros(v);
+				return index<to ? index : -1;
+			}
+			if(++w>last){
+				return -1;
+			}
+			v = c[(int)(w>>>chunk_shift)][(int)(w&chunk_mask)];
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: nextClearBit()
+	 * output:
+	 * 	the index of the first white pixel from from (inclusive) to to (exclusive), to if there is none
+	 *
+	 *****************************************************************/
+	public long nextClearBit(long from, long to){
+		long[][] c = chunks();
+		if(from>=to){
+			return to;
+		}
+		long w = from>>>6;
+		long last = (to-1)>>>6;
+		long v = ~c[(int)(w>>>chunk_shift)][(int)(w&chunk_mask)] & (-1L<<(from&63));
+		while(true){
+			if(v!=0){
+				long index = (w<<6) + Long.numberOfTrailingZeros(v);
+				return index<to ? index : to;
+			}
+			if(++w>last){
+				return to;
+			}
+			v = ~c[(int)(w>>>chunk_shift)][(int)(w&chunk_mask)];
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: copyOf()
+	 * purpose: copies a BitSet image into a new buffer of the arena
+	 *
+	 *****************************************************************/
+	public static PageBits copyOf(BitSet img, int width, int height, PageArena arena){
+		PageBits bits = arena.allocate(width, height);
+		long[] src = img.toLongArray();
+		long[][] c = bits.chunks();
+		for(int w=0; w<src.length; w++){
+			c[w>>>chunk_shift][w&chunk_mask] = src[w];
+		}
+		return bits;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: toBitSet()
+	 * purpose: copies the image into a BitSet for the stages that use one. throws an IllegalStateException if
+	 * 	the page has more pixels than a BitSet can index
+	 *
+	 *****************************************************************/
+	public BitSet toBitSet(){
+		if(size()>Integer.MAX_VALUE){
+			throw new IllegalStateException("Error: a "+width+"x"+height+" page is too large for a BitSet");
+		}
+		long[][] c = chunks();
+		long[] words = new long[(int)((size()+63)>>>6)];
+		for(int w=0; w<words.length; w++){
+			words[w] = c[w>>>chunk_shift][w&chunk_mask];
+		}
+		return BitSet.valueOf(words);
+	}
+}
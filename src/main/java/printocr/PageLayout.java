@@ -0,0 +1,283 @@
+package printocr;
+
+import java.awt.Rectangle;
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  PageLayout
+*
+*  Purpose: splits a page into blocks of text with recursive xy cuts so pages with several columns are read one
+*  	column at a time. order_by_line() groups components by overlapping y ranges, so side by side columns would
+*  	otherwise be read as one line across the page
+*
+*  	a block is first trimmed to its ink. then its blank rows and blank columns are found from the packed binary
+*  	image (see PackedRows): a row is blank if its longs inside the block are all 0, and the blank columns are
+*  	the 0 bits of the OR of all the rows of the block, so both profiles cost a pass over the longs, not the
+*  	pixels. a run of blank columns at least minColGap wide or of blank rows at least minRowGap high is a
+*  	valley. the block is cut at every column valley, or if it has none at every row valley, and each piece is
+*  	cut again until no piece has a valley. columns are cut first since cutting into rows first would cut across
+*  	side by side columns wherever their lines happen to line up, and the columns would then be read a line of
+*  	each at a time. blocks lower than two column gaps are single lines and are never cut into columns
+*
+*  	the result is a tree of blocks in reading order: the children of a horizontal cut are top to bottom, the
+*  	children of a vertical cut left to right. every cut goes through white space only, so every component is
+*  	inside exactly one leaf
+*
+******************************************************************************************************************/
+
+public final class PageLayout{
+
+	private static final int min_glyph_height = 3; //shorter components are specks or dots, not glyphs
+
+	private final Rectangle bounds;
+	private final boolean vertical;
+	private final List<PageLayout> children;
+
+	private PageLayout(Rectangle bounds, boolean vertical, List<PageLayout> children){
+		this.bounds = bounds;
+		this.vertical = vertical;
+		this.children = Collections.unmodifiableList(children);
+	}
+
+	//the box around the ink of this block
+	public Rectangle getBounds(){ return new Rectangle(bounds); }
+	//true if the children are side by side (columns), false if they are above each other
+	public boolean isVertical(){ return vertical; }
+	public List<PageLayout> getChildren(){ return children; }
+	public boolean isLeaf(){ return children.isEmpty(); }
+
+	/*****************************************************************
+	 *
+	 * function: leaves()
+	 * output:
+	 * 	the boxes of the blocks that weren't cut any further, in reading order
+	 *
+	 *****************************************************************/
+	public List<Rectangle> leaves(){
+		ArrayList<Rectangle> out = new ArrayList<Rectangle>();
+		addLeaves(out);
+		return out;
+	}
+
+	private void addLeaves(List<Rectangle> out){
+		if(isLeaf()){
+			out.add(getBounds());
+		}
+		for(PageLayout c: children){
+			c.addLeaves(out);
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: cut()
+	 * input:
+	 * 	rows: the packed binary image
+	 * 	width: width of the image in pixels
+	 * 	minRowGap: the fewest blank rows that separate two blocks above each other, at least 1
+	 * 	minColGap: the fewest blank columns that separate two columns, at least 1
+	 * output:
+	 * 	the root of the block tree, or null if the page is blank
+	 *
+	 *****************************************************************/
+	public static PageLayout cut(long[][] rows, int width, int minRowGap, int minColGap){
+		return cut(rows, new Rectangle(0, 0, width, rows.length), Math.max(1, minRowGap), Math.max(1, minColGap));
+	}
+
+	/*****************************************************************
+	 *
+	 * function: cut()
+	 * purpose: same as above with the gaps taken from the median height of the labeled components, leaving out
+	 * 	specks under min_glyph_height. the median glyph is about one and a half x-heights high, so the gaps are
+	 * 	about two x-heights between columns, which is wider than a word space, and one x-height between blocks,
+	 * 	which is more than the space between the lines of a paragraph. the components are used rather than the
+	 * 	row profile of the page (ResolutionNormalizer.estimateXHeight()) since side by side columns whose lines
+	 * 	don't line up leave almost no blank row, and the profile then reads as one line as tall as the page
+	 * input:
+	 * 	rows: the packed binary image
+	 * 	width: width of the image in pixels
+	 * 	components: the components labeled from the image, only their heights are used
+	 *
+	 *****************************************************************/
+	public static PageLayout cut(long[][] rows, int width, List<Region> components){
+		int glyph_height = medianHeight(components);
+		if(glyph_height==0){
+			return cut(rows, width, rows.length, width); //no text, nothing to cut
+		}
+		return cut(rows, width, Math.max(1, 2*glyph_height/3), 3*glyph_height/2);
+	}
+
+	//the median height of the components at least min_glyph_height high, 0 if there are none
+	static int medianHeight(List<Region> components){
+		ArrayList<Integer> heights = new ArrayList<Integer>();
+		for(Region r: components){
+			int h = r.getYmax()-r.getYmin()+1;
+			if(h>=min_glyph_height){
+				heights.add(h);
+			}
+		}
+		if(heights.isEmpty()){
+			return 0;
+		}
+		Collections.sort(heights);
+		return heights.get(heights.size()/2);
+	}
+
+	private static PageLayout cut(long[][] rows, Rectangle area, int min_row_gap, int min_col_gap){
+		int x0 = area.x;
+		int x1 = area.x+area.width;
+		int first_word = x0>>>6;
+		int last_word = (x1-1)>>>6;
+
+		//row profile: which rows have ink inside the area
+		boolean[] inked = new boolean[area.height];
+		long[] columns = new long[last_word-first_word+1];
+		int top = -1;
+		int bottom = -1;
+		for(int i=0; i<area.height; i++){
+			long[] row = rows[area.y+i];
+			for(int k=first_word; k<=last_word; k++){
+				long w = row[k] & mask(k, x0, x1);
+				if(w!=0){
+					inked[i] = true;
+					columns[k-first_word] |= w;
+				}
+			}
+			if(inked[i]){
+				if(top<0){
+					top = i;
+				}
+				bottom = i;
+			}
+		}
+		if(top<0){
+			return null;
+		}
+
+		//column profile: which columns have ink, from the OR of the rows
+		int left = -1;
+		int right = -1;
+		for(int x=x0; x<x1; x++){
+			if(columnInked(columns, first_word, x)){
+				if(left<0){
+					left = x;
+				}
+				right = x;
+			}
+		}
+		Rectangle ink = new Rectangle(left, area.y+top, right-left+1, bottom-top+1);
+
+		//a block lower than two column gaps is a single line, whose word spaces must not be taken for columns
+		List<int[]> col_gaps = new ArrayList<int[]>();
+		if(ink.height>=2*min_col_gap){
+			boolean[] col_inked = new boolean[area.width];
+			for(int x=left; x<=right; x++){
+				col_inked[x-x0] = columnInked(columns, first_word, x);
+			}
+			col_gaps = valleys(col_inked, left-x0, right-x0, min_col_gap);
+		}
+		List<int[]> row_gaps = col_gaps.isEmpty() ? valleys(inked, top, bottom, min_row_gap) : new ArrayList<int[]>();
+		if(row_gaps.isEmpty()&&col_gaps.isEmpty()){
+			return new PageLayout(ink, false, new ArrayList<PageLayout>());
+		}
+		boolean vertical = !col_gaps.isEmpty();
+		ArrayList<PageLayout> children = new ArrayList<PageLayout>();
+		int start = vertical ? left : ink.y;
+		for(int[] gap: vertical ? col_gaps : row_gaps){
+			int offset = vertical ? x0 : area.y;
+			addChild(rows, vertical, ink, start, gap[0]+offset, min_row_gap, min_col_gap, children);
+			start = gap[1]+offset;
+		}
+		addChild(rows, vertical, ink, start, vertical ? right+1 : ink.y+ink.height, min_row_gap, min_col_gap, children);
+		return new PageLayout(ink, vertical, children);
+	}
+
+	//cuts the part of the block from start to end (exclusive) across the cut direction
+	private static void addChild(long[][] rows, boolean vertical, Rectangle ink, int start, int end, int min_row_gap, int min_col_gap, List<PageLayout> children){
+		Rectangle part = vertical ? new Rectangle(start, ink.y, end-start, ink.height) : new Rectangle(ink.x, start, ink.width, end-start);
+		PageLayout child = cut(rows, part, min_row_gap, min_col_gap);
+		if(child!=null){
+			children.add(child);
+		}
+	}
+
+	//the runs of false between from and to (both inked) at least min long, as {first, last+1}
+	private static List<int[]> valleys(boolean[] inked, int from, int to, int min){
+		ArrayList<int[]> out = new ArrayList<int[]>();
+		int i = from;
+		while(i<=to){
+			if(inked[i]){
+				i++;
+				continue;
+			}
+			int start = i;
+			while(!inked[i]){
+				i++;
+			}
+			if(i-start>=min){
+				out.add(new int[]{start, i});
+			}
+		}
+		return out;
+	}
+
+	private static boolean columnInked(long[] columns, int first_word, int x){
+		return (columns[(x>>>6)-first_word]>>>(x&63)&1)!=0;
+	}
+
+	//the bits of word k that are columns from x0 to x1 (exclusive)
+	private static long mask(int k, int x0, int x1){
+		int lo = Math.max(x0-(k<<6), 0);
+		int hi = Math.min(x1-(k<<6), 64);
+		long m = hi>=64 ? -1L : (1L<<hi)-1;
+		return m & (-1L<<lo);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: split()
+	 * purpose: sorts the components into the blocks that contain their top left corner. the cuts only go through
+	 * 	white space so there always should be one, but a component in none of them goes to the nearest block, not
+	 * 	to whichever block is last. components with no blocks at all are an IllegalArgumentException
+	 * input:
+	 * 	components: the labeled components, emptied
+	 * 	blocks: the leaves of the block tree
+	 * output:
+	 * 	the components of each block, in the order of the blocks
+	 *
+	 *****************************************************************/
+	public static List<ArrayList<Region>> split(ArrayList<Region> components, List<Rectangle> blocks){
+		if(blocks.isEmpty()&&!components.isEmpty()){
+			throw new IllegalArgumentException("Error: "+components.size()+" components but no blocks to split them into");
+		}
+		ArrayList<ArrayList<Region>> out = new ArrayList<ArrayList<Region>>();
+		for(int b=0; b<blocks.size(); b++){
+			out.add(new ArrayList<Region>());
+		}
+		for(Region r: components){
+			int found = -1;
+			long nearest = Long.MAX_VALUE;
+			for(int b=0; b<blocks.size(); b++){
+				long d = distance(blocks.get(b), r.getXmin(), r.getYmin());
+				if(d<nearest){
+					nearest = d;
+					found = b;
+				}
+				if(d==0){
+					break;
+				}
+			}
+			out.get(found).add(r);
+		}
+		components.clear();
+		return out;
+	}
+
+	//squared distance from the point to the nearest pixel of the block, 0 if the point is inside it
+	private static long distance(Rectangle block, int x, int y){
+		long dx = Math.max(0, Math.max(block.x-x, x-(block.x+block.width-1)));
+		long dy = Math.max(0, Math.max(block.y-y, y-(block.y+block.height-1)));
+		return dx*dx + dy*dy;
+	}
+}
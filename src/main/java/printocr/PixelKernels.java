@@ -0,0 +1,131 @@
+package printocr;
+
+/*****************************************************************************************************************
+*
+*  PixelKernels
+*
+*  Purpose: the element by element loops of binarization and of the glyph attributes (row and column sums,
+*  	symmetry) behind one class, so they can run on wide vectors where the jvm has them. the kernels are chosen
+*  	once, the first time get() is called:
+*
+*  	VectorKernels (jdk.incubator.vector) if the jvm was started with --add-modules jdk.incubator.vector and
+*  	-Dprintocr.simd=false wasn't given, otherwise the scalar kernels below, which are the loops PrintOcr had
+*  	before
+*
+*  	every kernel gives exactly the same result either way, so the choice only changes the speed. the unit tests
+*  	(PixelKernelsTest) hold the vector kernels to the scalar ones
+*
+******************************************************************************************************************/
+
+abstract class PixelKernels{
+
+	private static final PixelKernels selected = select();
+
+	public static PixelKernels get(){
+		return selected;
+	}
+
+	//scalar or vector, for debug output
+	public abstract String name();
+
+	//the sum of the row
+	public abstract int sum(int[] row);
+
+	//adds the row to sums lane by lane, sums[j] += row[j] for every j of the row
+	public abstract void addTo(int[] row, int[] sums);
+
+	//the number of j < length/2 where row[j] equals row[length-j-1]
+	public abstract int mirrored(int[] row);
+
+	//the number of j where a[j] equals b[j], both have the same length
+	public abstract int matches(int[] a, int[] b);
+
+	/*****************************************************************
+	 *
+	 * function: threshold()
+	 * purpose: thresholds a row of gray bytes into a packed bit image
+	 * input:
+	 * 	data, offset, length: the gray values, as unsigned bytes
+	 * 	cut: the pixels with a gray value below cut are black
+	 * 	words: the image, 64 pixels to a long. only ORed into
+	 * 	bit: the bit of the first pixel of the row
+	 *
+	 *****************************************************************/
+	public abstract void threshold(byte[] data, int offset, int length, int cut, long[] words, long bit);
+
+	//ORs the low bits of m into words starting at bit
+	static void orBits(long[] words, long bit, long m){
+		int idx = (int)(bit>>>6);
+		int off = (int)(bit&63);
+		words[idx] |= m<<off;
+		if(off!=0&&m>>>(64-off)!=0){
+			words[idx+1] |= m>>>(64-off);
+		}
+	}
+
+	private static PixelKernels select(){
+		PixelKernels scalar = new Scalar();
+		if(!Boolean.parseBoolean(System.getProperty("printocr.simd", "true"))||!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+			return scalar;
+		}
+		try{
+			//loaded by name, the class can't even be loaded without the module
+			return (PixelKernels)Class.forName("printocr.VectorKernels").getDeclaredConstructor().newInstance();
+		}catch(ReflectiveOperationException e){
+			System.err.println("Error: couldn't load the vector kernels, using the scalar kernels: "+e);
+		}catch(LinkageError e){
+			System.err.println("Error: couldn't load the vector kernels, using the scalar kernels: "+e);
+		}
+		return scalar;
+	}
+
+	//the loops as they were, one element at a time
+	static final class Scalar extends PixelKernels{
+
+		public String name(){ return "scalar"; }
+
+		public int sum(int[] row){
+			int sum = 0;
+			for(int i=0; i<row.length; i++){
+				sum += row[i];
+			}
+			return sum;
+		}
+
+		public void addTo(int[] row, int[] sums){
+			for(int i=0; i<row.length; i++){
+				sums[i] += row[i];
+			}
+		}
+
+		public int mirrored(int[] row){
+			int w = row.length;
+			int count = 0;
+			for(int j=0; j<w/2; j++){
+				if(row[j]==row[w-j-1]){
+					count++;
+				}
+			}
+			return count;
+		}
+
+		public int matches(int[] a, int[] b){
+			int count = 0;
+			for(int j=0; j<a.length; j++){
+				if(a[j]==b[j]){
+					count++;
+				}
+			}
+			return count;
+		}
+
+		public void threshold(byte[] data, int offset, int length, int cut, long[] words, long bit){
+			for(int j=0; j<length; j++){
+				if((data[offset+j]&0xff)<cut){ //lower numbers are black points
+					long p = bit+j;
+					words[(int)(p>>>6)] |= 1L<<(p&63);
+				}
+			}
+		}
+	}
+}
@@ -6,8 +6,8 @@
 *  Authors: Caralyn Reisle and Sunette Mynhardt
 *  Date: 2014 March 25 (T)
 *
-* To compile: javac -cp weka.jar PrintOcr.java
-* To Run: java -cp weka.jar:. PrintOcr <test image> <optional parameters>
+* To compile: mvn package (or javac -cp weka.jar -d classes src/main/java/printocr/*.java)
+* To Run: java -cp weka.jar:target/print-ocr.jar printocr.PrintOcr <test image> <optional parameters>
 * 
 *  Purpose: this program uses a database of letter images to build a classifier for the times
 *  	new roman font using either a neural network or svm depending on the users choice
@@ -29,13 +29,18 @@
 *
 ******************************************************************************************************************/
 
+package printocr;
+
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.awt.Graphics;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.Color;
 import java.util.*;
+import java.util.concurrent.*;
 import weka.core.*;
 import weka.classifiers.*;
 import weka.classifiers.functions.SMO;
@@ -54,13 +59,31 @@ public class PrintOcr{
 	public static final String[] alpha_tnr = {"a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "m", "n", "o", "p", "q", "r", "s", "t", "u", "v", "w", "x", "y", "z", "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", "N", "O", "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z", "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "fr", "fi", "fo", "rt", "tu", "vw", "KL", "WN", "JU", "?", ".", "(", ")", "]", "[", "-", ";", "<", ">", ","}; 
 	public static final String[] attributes = {"V10", "V30", "V50", "V80", "V90", "H10", "H30", "H50", "H80", "H90", "hsymm", "vsymm", "cc", "hw", "c", "q1", "q2", "q3", "q4", "Ih50", "Ih30", "Ih80", "Iv30", "Iv50", "Iv80", "class"};
 	
-	public static String weka = "";
-	
 	public static void main(String[] args){
 		boolean notest = false;
 		boolean train = false;
 		boolean evaluateModel = false;
+		boolean crossValidate = false;
+		boolean tune = false;
+		boolean tree = false;
+		boolean clean = false;
+		boolean open = false;
+		boolean close = false;
+		boolean deskew = false;
+		int xheight = 0;
+		boolean blocks = false;
+		boolean columns = false;
+		boolean cascade = false;
+		double margin = 0.2;
+		int budget = 600; //seconds
+		int random = 0;
 		boolean annmodeltype = true;
+		OcrMetricsTable stats = null;
+		String cache_dir = null;
+		long cache_mb = 256;
+		OcrXmlWriter.Format xml_format = null; //hOCR or ALTO output next to the text, null for text only
+		String dictionary = null;
+		double correct_below = 0.9;
 		String font = "TimesNewRoman";
 		
 		System.out.println("***************************************");
@@ -83,8 +106,52 @@ public class PrintOcr{
 				notest = true;
 			}else if(args[i].equals("eval")){
 				evaluateModel = true;
+			}else if(args[i].equals("cv")){
+				crossValidate = true;
+			}else if(args[i].equals("tune")){
+				tune = true;
+			}else if(args[i].equals("tree")){
+				tree = true;
+			}else if(args[i].equals("clean")){
+				clean = true;
+			}else if(args[i].equals("open")){
+				open = true;
+			}else if(args[i].equals("close")){
+				close = true;
+			}else if(args[i].equals("deskew")){
+				deskew = true;
+			}else if(args[i].equals("normalize")){
+				xheight = 20;
+			}else if(args[i].startsWith("xheight=")){
+				xheight = Integer.parseInt(args[i].substring(8));
+			}else if(args[i].equals("blocks")){
+				blocks = true;
+			}else if(args[i].equals("columns")){
+				columns = true;
+			}else if(args[i].equals("cascade")){
+				cascade = true;
+			}else if(args[i].startsWith("margin=")){
+				margin = Double.parseDouble(args[i].substring(7));
+			}else if(args[i].startsWith("budget=")){
+				budget = Integer.parseInt(args[i].substring(7));
+			}else if(args[i].startsWith("random=")){
+				random = Integer.parseInt(args[i].substring(7));
 			}else if(args[i].equals("svm")){
 				annmodeltype = false;
+			}else if(args[i].equals("stats")){
+				stats = new OcrMetricsTable();
+			}else if(args[i].startsWith("cache=")){
+				cache_dir = args[i].substring(6);
+			}else if(args[i].startsWith("cachesize=")){
+				cache_mb = Long.parseLong(args[i].substring(10));
+			}else if(args[i].startsWith("dict=")){
+				dictionary = args[i].substring(5);
+			}else if(args[i].startsWith("below=")){
+				correct_below = Double.parseDouble(args[i].substring(6));
+			}else if(args[i].equals("hocr")){
+				xml_format = OcrXmlWriter.Format.HOCR;
+			}else if(args[i].equals("alto")){
+				xml_format = OcrXmlWriter.Format.ALTO;
 			}
 		}
 		
@@ -93,67 +160,157 @@ public class PrintOcr{
 		}
 		
 		/* ======================= BUILD THE MODEL ========================*/
-		Classifier model = null;
-		Instances data = null;
-		
-		if(!annmodeltype){
-			model = (Classifier)new SMO(); //SMO()
-		}else{
-			model = (Classifier)new MultilayerPerceptron();
-		}
-		//read in our data file (either built just now or already there)
-		System.out.println("reading the input arff font library data file ... ");
+		OcrConfig config = new OcrConfig.Builder().debug(output).svm(!annmodeltype).metrics(stats==null ? OcrMetrics.NONE : stats).tree(tree)
+			.despeckle(clean).opening(open).closing(close).minComponentFraction(clean ? 0.015 : 0).deskew(deskew).targetXHeight(xheight).textBlocks(blocks).columns(columns).cascade(cascade).cascadeMargin(margin)
+			.dictionary(dictionary).correctBelow(correct_below).build();
 		try{
-			//load the data from the arff file
-			DataSource src = new DataSource("font.arff");
-			data = src.getDataSet();
-			if (data.classIndex() == -1){
-				data.setClassIndex(data.numAttributes() - 1);
+			//options saved by an earlier tuning run
+			OcrConfig tuned = OcrTuner.withTunedOptions(config);
+			if(tuned!=config){
+				System.out.printf("using the tuned options %s from %s\n", Utils.joinOptions(tuned.getModelOptions()), OcrTuner.OPTIONS_FILE);
+				config = tuned;
 			}
 		}catch(Exception e){
-			System.err.println("Error: the arff file did not load correctly. please ensure to run in taining mode if the arff file does not exist in the smae directory as this program");
-			System.exit(1);
-		}
-		
-		System.out.printf("Building the classifier using the WEKA %s classifier function .... \n", annmodeltype? "MultilayerPerceptron" : "SMO");
-		//set the options and build the classifier
-		try{
-			if(!annmodeltype){
-				String[] opt = {"-M"};
-				model.setOptions(opt);
+			System.err.printf("Error: could not read %s, using the default options\n", OcrTuner.OPTIONS_FILE);
+		}
+		OcrEngine engine = null;
+		if(!tune&&!crossValidate&&!evaluateModel&&!notest){
+			//nothing but the test images needs the model, so build it in the background while the first image is
+			//binarized and clustered. classification waits for the model
+			System.out.printf("Building the classifier using the WEKA %s classifier function in the background .... \n", config.getModelName());
+			engine = OcrEngine.buildAsync(config);
+		}else{
+			Classifier model = null;
+			Instances data = null;
+			
+			//read in our data file (either built just now or already there)
+			System.out.println("reading the input arff font library data file ... ");
+			try{
+				//load the data from the arff file
+				data = OcrEngine.loadTrainingData(config.getArffFile());
+			}catch(Exception e){
+				System.err.println("Error: the arff file did not load correctly. please ensure to run in taining mode if the arff file does not exist in the smae directory as this program");
+				System.exit(1);
 			}
 			
-			model.buildClassifier(data); //trows java.lan.Exception is classifier isn't built correctly
-		}catch(Exception e){
-			System.err.println("Error: the model failed to build correctly");
-			System.exit(1);
-		}
-		
-		if(evaluateModel){
-			System.out.println("Evaluating our classifier ... ");
-			//now we will evaluate the model
+			if(tune&&tree){
+				System.err.println("Error: tune only searches the options of the MultilayerPerceptron and SMO, not the decision tree");
+			}else if(tune){
+				int threads = Runtime.getRuntime().availableProcessors();
+				List<String> space = OcrTuner.defaultSpace(!annmodeltype);
+				if(random>0){
+					space = OcrTuner.randomSpace(space, random);
+				}
+				System.out.printf("Tuning %d sets of options for the %s for up to %d seconds on %d threads ... \n", space.size(), annmodeltype? "MultilayerPerceptron" : "SMO", budget, threads);
+				try{
+					List<OcrTuner.Trial> trials = new OcrTuner(!annmodeltype, data, 0.05).tune(space, budget*1000L, threads);
+					System.out.printf("%8s %10s %10s %6s  %s\n", "score", "% correct", "us/glyph", "folds", "options");
+					for(OcrTuner.Trial t: trials){
+						System.out.println(t);
+					}
+					if(!trials.isEmpty()&&trials.get(0).isComplete()){
+						OcrTuner.saveOptions(new File(OcrTuner.OPTIONS_FILE), !annmodeltype, trials.get(0));
+						config = config.toBuilder().modelOptions(Utils.splitOptions(trials.get(0).getOptions())).build();
+						System.out.printf("saved the winning options to %s\n", OcrTuner.OPTIONS_FILE);
+					}else{
+						System.out.println("no set of options finished within the budget, keeping the current options");
+					}
+				}catch(Exception e){
+					System.err.println("Error: exception tuning the model");
+					System.exit(1);
+				}
+			}
+			
+			if(crossValidate){
+				int folds = 10;
+				int threads = Math.min(folds, Runtime.getRuntime().availableProcessors());
+				System.out.printf("Cross validating our classifier with %d folds on %d threads ... \n", folds, threads);
+				ExecutorService pool = Executors.newFixedThreadPool(threads);
+				try{
+					Evaluation eCv = OcrEvaluation.crossValidate(OcrEngine.newModel(config), data, folds, 1, pool); // using seed = 1
+					System.out.println(eCv.toSummaryString());
+					System.out.println(eCv.toClassDetailsString());
+					System.out.println("Misclassified characters:");
+					System.out.println(OcrEvaluation.confusions(eCv, data));
+				}catch(Exception e){
+					System.err.println("Error: exception cross validating the model");
+					System.exit(1);
+				}finally{
+					pool.shutdown();
+				}
+			}
+			
+			System.out.printf("Building the classifier using the WEKA %s classifier function .... \n", config.getModelName());
+			//set the options and build the classifier
 			try{
-				Evaluation eTest = new Evaluation(data);
-				eTest.evaluateModel(model, data);
-				//Random rand = new Random(1); // using seed = 1
-				//int folds = 10;
-				//eTest.crossValidateModel(model, testset, folds, rand);
-				String summary = eTest.toSummaryString();
-				System.out.println(summary);
+				model = OcrEngine.buildModel(config, data); //trows java.lan.Exception is classifier isn't built correctly
 			}catch(Exception e){
-				System.err.println("Error: exception evaluating the test model");
+				System.err.println("Error: the model failed to build correctly");
+				System.exit(1);
+			}
+			
+			if(evaluateModel){
+				System.out.println("Evaluating our classifier ... ");
+				//now we will evaluate the model
+				try{
+					Evaluation eTest = new Evaluation(data);
+					eTest.evaluateModel(model, data);
+					String summary = eTest.toSummaryString();
+					System.out.println(summary);
+				}catch(Exception e){
+					System.err.println("Error: exception evaluating the test model");
+					System.exit(1);
+				}
+			}
+			
+			//loading in an image
+			if(notest){ System.exit(0); } //program ends here is we don't wish to use the classifier at all
+			
+			try{
+				engine = new OcrEngine(config, model, data);
+			}catch(Exception e){
+				System.err.println("Error: could not create the ocr engine from the model");
 				System.exit(1);
 			}
 		}
-		
-		//loading in an image
-		if(notest){ System.exit(0); } //program ends here is we don't wish to use the classifier at all
-		
+			
+		ResultCache cache = null; //results of images seen before, null unless the cache option is given
+		if(cache_dir!=null){
+			try{
+				cache = new ResultCache(new File(cache_dir).toPath(), cache_mb*1024*1024, config);
+				System.out.printf("using the result cache in %s (%d entries)\n", cache_dir, cache.getEntryCount());
+			}catch(IOException e){
+				System.err.printf("Error: could not open the result cache %s, recognizing every image\n", cache_dir);
+			}
+		}
+			
 		String outputfilename = "out.txt";
 		while(true){
-			if(process_test_file(filename, outputfilename, model, data)<0){
+			if(process_test_file(filename, outputfilename, engine, xml_format, cache)<0){
 				System.out.printf("Error in processing the file %s\n", filename);
+				try{
+					engine.awaitModel();
+				}catch(Exception e){
+					System.err.println("Error: the model failed to build correctly. please ensure to run in taining mode if the arff file does not exist in the smae directory as this program");
+					System.exit(1);
+				}
 			}else{
+				if(stats!=null){
+					System.out.println("Pipeline statistics so far:");
+					stats.print(System.out);
+					System.out.println();
+				}
+				if(cache!=null){
+					cache.print(System.out);
+				}
+				if(cascade){
+					engine.printCascadeStats(System.out);
+				}else if(tree){
+					engine.printTreeStats(System.out);
+				}
+				if(dictionary!=null){
+					engine.printCorrectionStats(System.out);
+				}
 				System.out.printf("File %s was sucessfully processed.\n To run another file enter <inputfile.jpg> <outputfile name> followed by the optional parameter: <output> if chosen for debugging\nEnter q to quit\n\n", filename);
 				Scanner in = new Scanner(System.in);
 				filename = in.next();
@@ -171,80 +328,122 @@ public class PrintOcr{
 	/*****************************************************************
 	 *
 	 * function: process_test_file()
-	 * purpose: for each input test jpg file isolates, orders and classifys components. adds spaces and new line
-	 * 	characters where apprpriate and outputs the result to a text file
+	 * purpose: for each input test jpg file isolates, orders and classifys components using the ocr engine. adds
+	 * 	spaces and new line characters where apprpriate and outputs the result to a text file one line at a time
 	 * input:
 	 * 	filename, outputfilename
-	 * 	model: the classifier model generated using weka
-	 * 	data: the training dataset (we will need to add new instances to this dataset)
+	 * 	engine: the ocr engine holding the classifier model generated using weka
+	 * 	xmlFormat: also write the lines as hOCR or ALTO next to the text file, null for only the text
+	 * 	cache: the results of images recognized before by this engine, null to always recognize the image
 	 * output:
 	 * 	returns -1 if an error occurred. otherwise returns 0
 	 *
 	 *****************************************************************/
-	public static int process_test_file(String filename, String outputfilename, Classifier model, Instances data){
+	public static int process_test_file(String filename, String outputfilename, OcrEngine engine, OcrXmlWriter.Format xmlFormat, ResultCache cache){
+		boolean multipage = filename.toLowerCase().matches(".*\\.tiff?");
+		//a resubmitted image or tiff is answered from the cache without being decoded. not in output mode, which
+		//needs the components of the image to outline them
+		String cache_key = null;
+		if(cache!=null&&!output){
+			try{
+				cache_key = cache.key(new File(filename).toPath());
+			}catch(IOException e){
+				System.err.println("Error: test image not read correctly\n");
+				return -1;
+			}
+			OcrDocument cached = cache.get(cache_key);
+			if(cached!=null){
+				System.out.printf("The input image %s was recognized before, the text is \n\n%s\n", filename, cached.getText());
+				return write_document(filename, outputfilename, cached, xmlFormat);
+			}
+		}
+		if(multipage){
+			return process_multipage_file(filename, outputfilename, engine, xmlFormat, cache, cache_key);
+		}
+		
 		BufferedImage img_color = null;
 		System.out.printf("Loading the input image %s... \n", filename);
-		try{
-			img_color = ImageIO.read(new File(filename));
-		}catch (IOException e){
-			System.err.println("Error: test image not read correctly\n");
-			return -1;
+		if(output){ //the full size image is only decoded here when it is needed for outlining the components
+			try{
+				File file = new File(filename);
+				img_color = NetpbmReader.isRaw(file.toPath()) ? NetpbmReader.open(file.toPath()).toImage() : ImageIO.read(file);
+			}catch (IOException e){
+				System.err.println("Error: test image not read correctly\n");
+				return -1;
+			}
+			if(img_color==null){
+				System.err.println("Error: test image not read correctly\n");
+				return -1;
+			}
 		}
 		
-		//get the heights and widths of the image
-		int img_width = img_color.getWidth();
-		int img_height = img_color.getHeight();
-		
-		System.out.println("Converting Image Data to Binary ... ");
-		BitSet img_data = convertImageToBinary(img_color);		
-		
-		System.out.println("Isolating Putative Text Components ... ");
-		ArrayList<Region> components = cluster_connected_pixels(img_data, img_width, img_height);
-		
-		if(output){ System.out.println("Outlining components on result image ... "); outline_components(img_color, components, red); }
-		
-		System.out.println("Order components by line ... ");
-		ArrayList<ArrayList<Region>> lineslist = order_by_line(components, img_data, img_width, img_height);
-		
-		if(output){ for(ArrayList<Region> line: lineslist){ outline_components(img_color, line, blue); } }
-		
-		System.out.println("Scanning for spaces ... ");
-		double[] spaces = define_spaces(lineslist, img_width, img_height); //array storing the [average space between letters, average space between words]
-		
-		String text = "";
-		
-		int count = 0;
-		
-		System.out.println("Classifying test Components ... \n");
-		for(ArrayList<Region> line: lineslist){
-			for(int i=0; i<line.size(); i++){
-				Region r = line.get(i);
-				//System.out.printf("Component "+(++count)+": ");
-				int[][] rmat = getRegionMatrix(img_data, img_width, img_height, r);
-				LetterVector vector = compute_attribute_vector(rmat);
-				
-				String ch = getLetter(model, data, vector);
-				System.out.printf("%s ", ch);
-				if(spaces!=null&&i>0){
-					int space_from_prev = r.getXmin() - line.get(i-1).getXmax();
-					if(space_from_prev>0){ //ignore overlapping characters
-						if(Math.abs(spaces[0]-space_from_prev)>Math.abs(spaces[1]-space_from_prev)){
-							//this value is closer to the space between words average value. add a space to the output
-							text += ' ';
-						}
-					}
-					
+		//output the resulting text file line by line as the lines are classified
+		System.out.println("Recognizing text components ... ");
+		System.out.printf("\n\nThe text is recognized as \n\n");
+		final ArrayList<OcrLine> lines = new ArrayList<OcrLine>();
+		final boolean keep_lines = output||cache_key!=null;
+		OcrLineWriter writer = null;
+		OcrXmlWriter xml_writer = null;
+		try{
+			writer = new OcrLineWriter(new File(outputfilename));
+			if(xmlFormat!=null){
+				File file = new File(filename);
+				int[] size = null;
+				try{
+					size = img_color!=null ? new int[]{img_color.getWidth(), img_color.getHeight()} : image_size(file);
+				}catch(IOException e){
+					System.err.println("Error: test image not read correctly\n");
+					writer.close();
+					return -1;
 				}
-				
-				text += ch;
+				xml_writer = new OcrXmlWriter(xml_file(outputfilename, xmlFormat), xmlFormat);
+				xml_writer.startPage(file.getName(), size[0], size[1]);
+			}
+			final OcrLineWriter text_output = writer;
+			final OcrXmlWriter xml_output = xml_writer;
+			OcrLineListener listener = new OcrLineListener(){
+				public void lineRecognized(OcrLine line){
+					System.out.println(line.getText());
+					text_output.lineRecognized(line);
+					if(xml_output!=null){ xml_output.lineRecognized(line); }
+					if(keep_lines){ lines.add(line); } //only kept for outlining the result image or caching
+				}
+			};
+			if(img_color!=null){
+				engine.recognize(img_color, listener);
+			}else{
+				try{
+					//lets the engine decode a high resolution image at a lower resolution
+					engine.recognize(new File(filename).toPath(), listener);
+				}catch(IOException e){
+					System.err.println("Error: test image not read correctly\n");
+					writer.close();
+					if(xml_writer!=null){ try{ xml_writer.close(); }catch(IOException ignored){ } }
+					return -1;
+				}
+			}
+			writer.close();
+			if(xml_writer!=null){
+				xml_writer.close();
 			}
-			text += '\n';
+			if(cache_key!=null){
+				cache.put(cache_key, new OcrDocument(Arrays.asList(new OcrResult(lines))));
+			}
+		}catch(IllegalStateException e){
+			System.err.println(e.getMessage());
+			try{ writer.close(); }catch(IOException ignored){ }
+			if(xml_writer!=null){ try{ xml_writer.close(); }catch(IOException ignored){ } }
+			return -1;
+		}catch (IOException e){
+			System.out.println("Error: problem outputting the results text file");
+			return -1;
 		}
-		System.out.printf("\n\nThe text is recognized as \n\n%s\n\n", text);
+		System.out.println();
 		
 		//output the resulting image
 		if(output){
 			System.out.println("Outputting the result image ... ");
+			for(OcrLine line: lines){ outline_components(img_color, line.getRegions(), blue); }
 			try{
 				File outputfile = new File("result.jpg");
 				ImageIO.write(img_color, "jpg", outputfile);
@@ -253,20 +452,162 @@ public class PrintOcr{
 				return -1;
 			}
 		}
-		
-		//output the resulting text file
+		return 0;
+	}
+	
+	//the hOCR or ALTO file written next to the text output file, out.txt -> out.hocr
+	private static File xml_file(String outputfilename, OcrXmlWriter.Format format){
+		String name = outputfilename.contains(".") ? outputfilename.substring(0, outputfilename.lastIndexOf('.')) : outputfilename;
+		return new File(name+"."+format.getExtension());
+	}
+	
+	//the width and height of an image from its header, without decoding it
+	private static int[] image_size(File file) throws IOException{
+		if(NetpbmReader.isRaw(file.toPath())){
+			NetpbmReader pnm = NetpbmReader.open(file.toPath());
+			return new int[]{pnm.getWidth(), pnm.getHeight()};
+		}
+		return page_sizes(file)[0];
+	}
+	
+	//the width and height of every page of an image from its headers, without decoding it
+	private static int[][] page_sizes(File file) throws IOException{
+		ImageInputStream in = ImageIO.createImageInputStream(file);
+		if(in==null){
+			throw new IOException("Error: can't read "+file);
+		}
+		try{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if(!readers.hasNext()){
+				throw new IOException("Error: "+file+" is not an image");
+			}
+			ImageReader reader = readers.next();
+			try{
+				reader.setInput(in, false, true);
+				int[][] sizes = new int[reader.getNumImages(true)][];
+				for(int p=0; p<sizes.length; p++){
+					sizes[p] = new int[]{reader.getWidth(p), reader.getHeight(p)};
+				}
+				return sizes;
+			}finally{
+				reader.dispose();
+			}
+		}finally{
+			in.close();
+		}
+	}
+	
+	/*****************************************************************
+	 *
+	 * function: process_multipage_file()
+	 * purpose: same as process_test_file() for multi-page (tiff) images. the pages are recognized in parallel and
+	 * 	written by write_document()
+	 * input:
+	 * 	filename, outputfilename
+	 * 	engine: the ocr engine holding the classifier model generated using weka
+	 * 	xmlFormat: also write the pages as hOCR or ALTO next to the text file, null for only the text
+	 * 	cache, cacheKey: where to store the document, null to not store it
+	 * output:
+	 * 	returns -1 if an error occurred. otherwise returns 0
+	 *
+	 *****************************************************************/
+	public static int process_multipage_file(String filename, String outputfilename, OcrEngine engine, OcrXmlWriter.Format xmlFormat, ResultCache cache, String cacheKey){
+		System.out.printf("Recognizing the pages of the input image %s... \n", filename);
+		OcrDocument doc = null;
+		try{
+			doc = engine.recognizePages(new File(filename).toPath());
+		}catch(IOException e){
+			System.err.println("Error: test image not read correctly\n");
+			return -1;
+		}catch(IllegalStateException e){
+			System.err.println(e.getMessage());
+			return -1;
+		}
+		System.out.printf("\n\nThe text of the %d pages is recognized as \n\n%s\n\n", doc.getPageCount(), doc.getText());
+		if(cacheKey!=null){
+			cache.put(cacheKey, doc);
+		}
+		return write_document(filename, outputfilename, doc, xmlFormat);
+	}
+	
+	/*****************************************************************
+	 *
+	 * function: write_document()
+	 * purpose: outputs a recognized document: the text of each page, separated by a form feed, and if asked the
+	 * 	hOCR or ALTO file with one page element per page. the page sizes are read from the image headers
+	 * input:
+	 * 	filename: the image the document is from
+	 * 	outputfilename: the text file
+	 * 	doc: the document, recognized or from the result cache
+	 * 	xmlFormat: also write the pages as hOCR or ALTO next to the text file, null for only the text
+	 * output:
+	 * 	returns -1 if an error occurred. otherwise returns 0
+	 *
+	 *****************************************************************/
+	private static int write_document(String filename, String outputfilename, OcrDocument doc, OcrXmlWriter.Format xmlFormat){
 		System.out.println("Outputting the result text ... ");
 		try{
 			File outputfile = new File(outputfilename);
 			BufferedWriter output = new BufferedWriter(new FileWriter(outputfile));
-			output.write(text);
+			output.write(doc.getText());
 			output.close();
 		}catch (IOException e){
 			System.out.println("Error: problem outputting the results text file");
 			return -1;
 		}
+		if(xmlFormat!=null){
+			File file = new File(filename);
+			int[][] sizes = null;
+			try{
+				sizes = NetpbmReader.isRaw(file.toPath()) ? new int[][]{image_size(file)} : page_sizes(file);
+			}catch(IOException e){
+				System.err.println("Error: test image not read correctly\n");
+				return -1;
+			}
+			try{
+				OcrXmlWriter xml_writer = new OcrXmlWriter(xml_file(outputfilename, xmlFormat), xmlFormat);
+				try{
+					for(int p=0; p<doc.getPageCount(); p++){
+						xml_writer.startPage(file.getName(), sizes[p][0], sizes[p][1]);
+						for(OcrLine line: doc.getPages().get(p).getLines()){
+							xml_writer.lineRecognized(line);
+						}
+					}
+				}finally{
+					xml_writer.close();
+				}
+			}catch(IOException e){
+				System.out.println("Error: problem outputting the "+xmlFormat+" file");
+				return -1;
+			}
+		}
 		return 0;
 	}
+	
+	/*****************************************************************
+	 *
+	 * function: is_word_space()
+	 * purpose: decides if a space should be output before the i'th component of a line. the gap to the previous
+	 * 	component is compared to the average letter and word spaces computed by define_spaces()
+	 * input:
+	 * 	spaces: [average letter space, average word space] or null if the image has no words
+	 * 	line: the ordered components of the line
+	 * 	i: index of the current component in the line
+	 * output:
+	 * 	returns true if the gap is closer to the space between words
+	 *
+	 *****************************************************************/
+	public static boolean is_word_space(double[] spaces, List<Region> line, int i){
+		if(spaces==null||i==0){
+			return false;
+		}
+		int space_from_prev = line.get(i).getXmin() - line.get(i-1).getXmax();
+		if(space_from_prev<=0){ //ignore overlapping characters
+			return false;
+		}
+		return Math.abs(spaces[0]-space_from_prev)>Math.abs(spaces[1]-space_from_prev);
+	}
+	
 	/*****************************************************************
 	 *
 	 * function: outline_components()
@@ -280,7 +621,7 @@ public class PrintOcr{
 	 * 	just updates the buffered image. no output
 	 *
 	 *****************************************************************/
-	public static void outline_components(BufferedImage img, ArrayList<Region> setlist, int color){
+	public static void outline_components(BufferedImage img, List<Region> setlist, int color){
 		
 		//int color = 0;
 		for(int i=0; i<setlist.size(); i++){
@@ -310,21 +651,23 @@ public class PrintOcr{
 	 *
 	 *****************************************************************/
 	public static void generate_arff(String font){
-		weka += "% training data\n";
-		weka += "@RELATION \"Times New Roman\"\n\n";
+		StringBuilder weka = new StringBuilder();
+		weka.append("% training data\n");
+		weka.append("@RELATION \"Times New Roman\"\n\n");
 		for(int i=0; i<attributes.length-1; i++){
-			weka += "@ATTRIBUTE "+attributes[i]+" NUMERIC\n";
+			weka.append("@ATTRIBUTE "+attributes[i]+" NUMERIC\n");
 		}
-		weka += "@ATTRIBUTE "+attributes[attributes.length-1]+" {";
+		weka.append("@ATTRIBUTE "+attributes[attributes.length-1]+" {");
 		for(int i=0; i<alpha_tnr.length-1; i++){
-			weka += "\""+alpha_tnr[i]+"\",";
+			weka.append("\""+alpha_tnr[i]+"\",");
 		}
-		weka += "\""+alpha_tnr[alpha_tnr.length-1]+"\"}\n\n@DATA\n";
-		ArrayList<LetterVector> training_set = train_font(font);
+		weka.append("\""+alpha_tnr[alpha_tnr.length-1]+"\"}\n\n@DATA\n");
+		TrainingMatrix training_set = train_font(font);
+		training_set.appendArff(weka);
 		try{
 			File outputfile = new File("font.arff");
 			BufferedWriter output = new BufferedWriter(new FileWriter(outputfile));
-			output.write(weka);
+			output.write(weka.toString());
 			output.close();
 		}catch (IOException e){
 			System.out.println("problem outputting the arff file");
@@ -720,6 +1063,10 @@ public class PrintOcr{
 	 *
 	 *****************************************************************/
 	public static int[][] getRegionMatrix(BitSet pixels, int w, int h, Region r){
+		return getRegionMatrix(pixels, w, h, r, output);
+	}
+	
+	public static int[][] getRegionMatrix(BitSet pixels, int w, int h, Region r, boolean output){
 		//copy area to an int array of bits
 		//change to a bitset?
 		int hs = r.getYmax()-r.getYmin()+1;
@@ -731,7 +1078,7 @@ public class PrintOcr{
 				//corresponds to (i+ymin, j+xmin) in the old array
 				//this is equivalent to index = (i+ymin)*width + (j+xmin)
 				int index = (i+r.getYmin())*w + (j+r.getXmin());
-				if(pixels.get(index)){
+				if(pixels.get(index)&&!r.isNoise(j+r.getXmin(), i+r.getYmin())){
 					subset[i][j] = 1;
 				}
 				if(output){ System.out.printf(subset[i][j]+" "); }
@@ -742,6 +1089,29 @@ public class PrintOcr{
 		return subset;
 	}
 	
+	//the same for a page of more than 2^31 pixels
+	public static int[][] getRegionMatrix(PageBits pixels, Region r, boolean output){
+		int hs = r.getYmax()-r.getYmin()+1;
+		int ws = r.getXmax()-r.getXmin()+1;
+		int[][] subset = new int[hs][ws];
+		for(int i=0; i<hs; i++){
+			long row = (long)(i+r.getYmin())*pixels.getWidth() + r.getXmin();
+			//only the black pixels are visited
+			for(long p=pixels.nextSetBit(row, row+ws); p>=0; p=pixels.nextSetBit(p+1, row+ws)){
+				int j = (int)(p-row);
+				if(!r.isNoise(j+r.getXmin(), i+r.getYmin())){
+					subset[i][j] = 1;
+				}
+			}
+			if(output){
+				for(int j=0; j<ws; j++){ System.out.printf(subset[i][j]+" "); }
+				System.out.println();
+			}
+		}
+		if(output){ System.out.println(); }
+		return subset;
+	}
+	
 	/*****************************************************************
 	 * 
 	 * function: order_by_line()
@@ -834,6 +1204,10 @@ public class PrintOcr{
 	 *
 	 *****************************************************************/
 	public static double[] define_spaces(ArrayList<ArrayList<Region>> lineslist, int w, int h){
+		return define_spaces(lineslist, w, h, output);
+	}
+	
+	public static double[] define_spaces(ArrayList<ArrayList<Region>> lineslist, int w, int h, boolean output){
 		ArrayList<Integer> set = new ArrayList<Integer>();
 		for(ArrayList<Region> line: lineslist){
 			for(int i=1; i<line.size(); i++){
@@ -991,51 +1365,29 @@ public class PrintOcr{
 	 *
 	 *****************************************************************/
 	public static LetterVector compute_attribute_vector(int[][] pixels){
+		return compute_attribute_vector(pixels, output);
+	}
+	
+	public static LetterVector compute_attribute_vector(int[][] pixels, boolean output){
 		
-		int w = pixels[0].length;
-		int h = pixels.length;
-		LetterVector v = new LetterVector();
-		v.add(pixel_col_sum(pixels, w*1/10)/h); // V10 sum
-		v.add(pixel_col_sum(pixels, w*3/10)/h); // V30 sum
-		v.add(pixel_col_sum(pixels, w*5/10)/h); // V50 sum
-		v.add(pixel_col_sum(pixels, w*8/10)/h); // V80 sum
-		v.add(pixel_col_sum(pixels, w*9/10)/h); // V90 sum
-		
-		v.add(pixel_row_sum(pixels, h*1/10)/w); // H10 sum
-		v.add(pixel_row_sum(pixels, h*3/10)/w); // H30 sum
-		v.add(pixel_row_sum(pixels, h*5/10)/w); // H50 sum
-		v.add(pixel_row_sum(pixels, h*8/10)/w); // H80 sum
-		v.add(pixel_row_sum(pixels, h*9/10)/w); // H90 sum
-		
-		v.add(reflect_over_vertical(pixels)); // horizontal symmetry
-		v.add(reflect_over_horizontal(pixels)); // vertical symmetry
-		
-		v.add(count_closed_components(pixels).size());//number of closed components
-		v.add((double)h/w, 5); // height to width ratio
-		v.add(count_components(pixels), 0.1); //number of components (if not a merged char will be zero)
-		double[] quadrants = weight_quadrants(pixels);
-		v.add(quadrants[0], 2); //q1
-		v.add(quadrants[1], 2); //q2
-		v.add(quadrants[2], 2); //q3
-		v.add(quadrants[3], 2); //q4
-		v.add(pixel_row_intersects(pixels, h*3/10)); //Ih50
-		v.add(pixel_row_intersects(pixels, h*5/10)); //Ih50
-		v.add(pixel_row_intersects(pixels, h*8/10)); //Ih50
-		v.add(pixel_col_intersects(pixels, w*3/10)); //Iv50
-		v.add(pixel_col_intersects(pixels, w*5/10)); //Iv50
-		v.add(pixel_col_intersects(pixels, w*8/10)); //Iv50
+		//the attributes themselves are computed by GlyphFeatures so the lazy decision tree uses the same ones
+		LetterVector v = new GlyphFeatures(pixels).toVector();
 		
-		/* outputs the values of the vector */
 		if(output){
-			System.out.print("vector values = [");
-			for(int i=0; i<v.size(); i++){
-				System.out.printf("%.2f ", v.valueAt(i));
-			}
-			System.out.println("]");
+			output_vector(v);
 		}
 		return v;
 	}
 	
+	//outputs the values of the vector
+	public static void output_vector(LetterVector v){
+		System.out.print("vector values = [");
+		for(int i=0; i<v.size(); i++){
+			System.out.printf("%.2f ", v.valueAt(i));
+		}
+		System.out.println("]");
+	}
+	
 	/*****************************************************************
 	 * 
 	 * function: getLetter()
@@ -1057,20 +1409,33 @@ public class PrintOcr{
 		
 		try{
 			double[] fDistribution = model.distributionForInstance(temp);
-			int max_index = 0;
-			for(int i=1; i<fDistribution.length; i++){
-				if(Double.compare(fDistribution[i], fDistribution[max_index])>0){
-					max_index = i;
-				}
-			}
 			//System.out.printf("the max_index is %d and the character this corresponds to is %s\n", max_index, alpha_tnr[max_index]);
-			return alpha_tnr[max_index];
+			return alpha_tnr[max_index(fDistribution)];
 		}catch(Exception e){
 			System.err.println("Error occured while classifying the test instance");
 			return null;
 		}
 	}
 	
+	/*****************************************************************
+	 * 
+	 * function: max_index()
+	 * input:
+	 * 	fDistribution: the class distribution returned by the classifier
+	 * output:
+	 * 	the index of the most likely class (the first one if there is a tie)
+	 *
+	 *****************************************************************/
+	public static int max_index(double[] fDistribution){
+		int max_index = 0;
+		for(int i=1; i<fDistribution.length; i++){
+			if(Double.compare(fDistribution[i], fDistribution[max_index])>0){
+				max_index = i;
+			}
+		}
+		return max_index;
+	}
+	
 	/*****************************************************************
 	 * 
 	 * function: pixel_row_sum()
@@ -1082,12 +1447,7 @@ public class PrintOcr{
 	 *
 	 *****************************************************************/
 	public static double pixel_row_sum(int[][] pixels, int row_index){
-		//find the number of bits set true between row_index*width (inclusive) to (row_index+1)*width (exclusive)
-		double sum = 0;
-		for(int i=0; i<pixels[row_index].length; i++){
-			sum += pixels[row_index][i];
-		}
-		return sum;
+		return PixelKernels.get().sum(pixels[row_index]);
 	}
 	
 	/*****************************************************************
@@ -1163,13 +1523,10 @@ public class PrintOcr{
 	public static double reflect_over_vertical(int[][] pixels){
 		int h = pixels.length;
 		int w = pixels[0].length;
+		PixelKernels kernels = PixelKernels.get();
 		double score = 0;
 		for(int i=0; i<h; i++){
-			for(int j=0; j<w/2; j++){
-				if(pixels[i][j]==pixels[i][w-j-1]){
-					score++;
-				}
-			}
+			score += kernels.mirrored(pixels[i]);
 		}
 		return score/(h*w);
 	}
@@ -1186,13 +1543,11 @@ public class PrintOcr{
 	public static double reflect_over_horizontal(int[][] pixels){
 		int h = pixels.length;
 		int w = pixels[0].length;
+		PixelKernels kernels = PixelKernels.get();
 		double score = 0;
-		for(int i=0; i<w; i++){
-			for(int j=0; j<h/2; j++){
-				if(pixels[j][i]==pixels[h-j-1][i]){
-					score++;
-				}
-			}
+		//row j against row h-j-1, all the columns at once
+		for(int j=0; j<h/2; j++){
+			score += kernels.matches(pixels[j], pixels[h-j-1]);
 		}
 		return score/(h*w);
 	}
@@ -1204,11 +1559,11 @@ public class PrintOcr{
 	 * input:
 	 * 	String font: the font we wish to train (currently always the default, TimesNewRoman)
 	 * output:
-	 * 	the list of vectors with their associated known character
+	 * 	the matrix of vectors with their associated known character
 	 *
 	 *****************************************************************/
-	public static ArrayList<LetterVector> train_font(String font){
-		ArrayList<LetterVector> alpha_vectors = new ArrayList<LetterVector>();
+	public static TrainingMatrix train_font(String font){
+		TrainingMatrix alpha_vectors = new TrainingMatrix(GlyphFeatures.NUM_FEATURES, alpha_tnr);
 		String[] alpha = font.equals("TimesNewRoman")? alpha_tnr: alpha_tnr;
 		System.out.printf("Training for font = %s on the following characters:\n", font);
 		for(int i=0; i<alpha.length; i++){
@@ -1226,12 +1581,12 @@ public class PrintOcr{
 	 * input:
 	 * 	String font: the font we wish to train (currently always the default, TimesNewRoman)
 	 * 	String curr: the letter/String we are looking for
-	 * 	alpha_vectors: the list where we will build our library of trained computed vectors
+	 * 	alpha_vectors: the matrix where we will build our library of trained computed vectors
 	 * output:
 	 * 	none
 	 *
 	 *****************************************************************/
-	public static void train_letter(String curr, String font, ArrayList<LetterVector> alpha_vectors){
+	public static void train_letter(String curr, String font, TrainingMatrix alpha_vectors){
 		System.out.printf("%s ", curr);
 		String foldername = font+"/"; //directory name
 		if(curr.equals(".")){
@@ -1286,10 +1641,7 @@ public class PrintOcr{
 				//if more than one component merge them since we know this should be just one component
 				//outline_components(img_color, components);
 				int[][] curr_region = getRegionMatrix(img_data, img_width, img_height, r);
-				LetterVector v = compute_attribute_vector(curr_region);
-				v.setClassifier(curr);
-				alpha_vectors.add(v);
-				weka += v.toString()+", \""+curr+"\"\n";
+				alpha_vectors.add(compute_attribute_vector(curr_region), curr);
 			    }
 			}
 			
@@ -1339,6 +1691,12 @@ public class PrintOcr{
 	 *
 	 *****************************************************************/
 	public static BitSet convertImageToBinary(BufferedImage img){
+		//1 bit and gray images are read straight from their rasters
+		BitSet direct = RasterBinarizer.binarize(img);
+		if(direct!=null){
+			return direct;
+		}
+		
 		//make the image grayscale
 		int width = img.getWidth();
 		int height = img.getHeight();
@@ -1347,115 +1705,8 @@ public class PrintOcr{
 		g.drawImage(img, 0, 0, null);
 		g.dispose();
 		
-		//now find the average pixel value
-		int[][] pixels = new int[height][width];
-		int average = 0;
-		int min = -1;
-		int max = 0;
-		for(int i=0; i<height; i++){
-			for(int j=0; j<width; j++){
-				Color c = new Color(img_gr.getRGB(j, i));
-				//rgb for each color should be same in grayscale
-				pixels[i][j] = c.getRed();
-				average += pixels[i][j];
-				if(min<0){
-					min = pixels[i][j];
-				}else{
-					if(pixels[i][j]<min){
-						min = pixels[i][j];
-					}
-				}
-				if(pixels[i][j]>max){
-					max = pixels[i][j];
-				}
-			}
-		}
-		int threshold = average/(width*height);
-		
-		//choose the average as the threshold. 1 means a point exists, 0 means this point is blank
-		BitSet points = new BitSet(width*height);
-		for(int i=0; i<height; i++){
-			for(int j=0; j<width; j++){
-				if(pixels[i][j]<threshold){ //lower numbers are black points
-					points.set(i*width+j);
-				}
-			}
-		}
-		return points;
-	}
-}
-
-class LetterVector{
-	private static int attr_num = 19;
-	private ArrayList<Double> vector;
-	private ArrayList<Double> weights;
-	private int index_count = 0;
-	private String classifier;
-	
-	
-	public LetterVector(){
-		this.vector = new ArrayList<Double>();
-		this.weights = new ArrayList<Double>();
-		this.classifier = null;
-	}
-	
-	public LetterVector(String c){
-		this.vector = new ArrayList<Double>();
-		this.weights = new ArrayList<Double>();
-		this.classifier = c;
-	}
-	
-	public void add(double value, double weight){
-		this.vector.add(new Double(value));
-		this.weights.add(new Double(weight));
-	}
-	
-	
-	public void add(double value){
-		this.vector.add(new Double(value));
-		this.weights.add(new Double(1));
-	}
-	
-	public double valueAt(int index){
-		if(index>this.vector.size()){
-			return -1;
-		}else{
-			return this.vector.get(index);
-		}
-	}
-	
-	public void setClassifier(String c){
-		this.classifier = c;
-	}
-	
-	public int size(){ return this.vector.size(); }
-	
-	public String getClassifier(){ return this.classifier; }
-	
-	//make sure you always add attr in the same order and amount
-	public double computeDistanceTo(LetterVector in){
-		int len = this.vector.size();
-		if(in.vector.size()<this.vector.size()){
-			len = in.vector.size();
-		}
-		double distance = 0;
-		for(int i=0; i<len; i++){
-			distance += in.weights.get(i)*Math.abs(this.vector.get(i)-in.vector.get(i));
-		}
-		return distance;
-	}
-	
-	public String toString(){
-		String result = "";
-		for(int i=0; i<this.vector.size(); i++){
-			if(i==this.vector.size()-1){
-				result += this.vector.get(i);
-			}else{
-				result += this.vector.get(i)+", ";
-			}
-			
-		}
-		return result;
+		//the gray copy is thresholded at its average straight from its bytes (see RasterBinarizer)
+		return RasterBinarizer.binarize(img_gr);
 	}
 }
 
@@ -1465,168 +1716,3 @@ class RegionXComparator implements Comparator<Region> {
 	return a.getXmin() - b.getXmin();
     }
 }
-
-class Region{
-	private TreeSet<Integer> equivalent_colors;
-	private int color_id;
-	private int xmin;
-	private int ymin;
-	private int xmax;
-	private int ymax;
-	private char ch;
-	private ArrayList<int[]> noise;
-	
-	public int getCX(){ return (this.xmax-this.xmin)/2 + this.xmin;}
-	public int getCY(){ return (this.ymax-this.ymin)/2 + this.ymin;}
-	
-	public Region(){
-		this.equivalent_colors = new TreeSet<Integer>();
-		this.xmin = -1;
-		this.xmax = -1;
-		this.ymin = -1;
-		this.ymax = -1;
-		this.color_id = 0;
-		this.ch = ' ';
-		this.noise = new ArrayList<int[]>();
-	}
-	
-	private TreeSet<Integer> getColors(){
-		return equivalent_colors;
-	}
-	
-	public int getColorID(){ return color_id; }
-	public int getXmin(){ return xmin; }
-	public int getYmin(){ return ymin; }
-	public int getXmax(){ return xmax; }
-	public int getYmax(){ return ymax; }
-	
-	public boolean isEquivalent(int c){
-		if(equivalent_colors.contains(c)){
-			return true;
-		}else{
-			return false;
-		}
-	}
-	
-	public void addColor(int c){
-		equivalent_colors.add(new Integer(c));
-		color_id = equivalent_colors.first().intValue();
-	}
-	
-	public void mergeSets(Region c){
-		equivalent_colors.addAll(c.getColors());
-		color_id = equivalent_colors.first().intValue();
-		this.updateX(c.getXmin());
-		this.updateX(c.getXmax());
-		this.updateY(c.getYmax());
-		this.updateY(c.getYmin());
-	}
-	
-	public void markNoise(int xmin, int xmax, int ymin, int ymax){
-		int[] n = {xmin, ymin, xmax, ymax};
-		noise.add(n);
-	}
-	
-	public ArrayList<int[]> getNoiseList(){
-		return this.noise;
-	}
-	
-	public void setXmax(int x){
-		this.xmax = x;
-	}
-	
-	public void updateX(int x){
-		if(xmax<0){
-			xmax = x;
-		}
-		if(xmin<0){
-			xmin = x;
-		}
-		if(x>xmax){
-			xmax = x;
-		}
-		if(x<xmin){
-			xmin = x;
-		}
-	}
-	
-	public void updateY(int y){
-		if(ymax<0){
-			ymax = y;
-		}
-		if(ymin<0){
-			ymin = y;
-		}
-		if(y>ymax){
-			ymax = y;
-		}
-		if(y<ymin){
-			ymin = y;
-		}
-	}
-	
-	public String toString(){
-		String result = "";
-		result += "color_id = "+color_id;
-		result += " min ("+this.xmin+", "+this.ymin+") ";
-		result += "max ("+this.xmax+", "+this.ymax+") ";
-		result += "equivalent sets = ";
-		for(Integer n: equivalent_colors){
-			result += n+" ";
-		}
-		return result;
-	}
-	
-	public void setChar(char ch){
-		this.ch = ch;
-	}
-	
-	public char getChar(){ return this.ch; }
-	
-	public boolean checkRangeOverlap(Region r){
-		if(r.getYmin()<this.getYmin()){ //...r...this...
-			if(r.getYmax()>=this.getYmin()){
-				return true;
-			}
-		}else{ //...this...r...
-			if(this.getYmax()>=r.getYmin()){
-				return true;
-			}
-		}
-		return false;
-	}
-	
-	//return false if the overlap is less than half the smaller domain
-	public boolean checkDomainOverlap(Region r){		
-		if(r.getXmin()<this.xmin){ //...r...this...
-			if(r.getXmax()>=this.xmin){
-				return true;
-			}
-		}else{ //...this...r...
-			if(this.xmax>=r.getXmin()){
-				return true;
-			}
-		}
-		return false;
-	}
-	
-	public double getDomainOverlapAsPercent(Region r){
-		double smaller_domain = 0;
-		if(r.getXmax()-r.getXmin()<this.xmax - this.xmin){
-			smaller_domain = r.getXmax()-r.getXmin()+1;
-		}else{
-			smaller_domain = this.xmax - this.xmin + 1;
-		}
-		if(r.getXmin()<this.getXmin()){ //...r...this...
-			if(r.getXmax()>=this.xmin){
-				return (r.getXmax() - this.xmin + 1)/smaller_domain;
-			}
-		}else{ //...this...r...
-			if(this.xmax>=r.getXmin()){
-				return (this.xmax - r.getXmin() + 1)/smaller_domain;
-			}
-		}
-		return 0;
-	}
-	
-}
\ No newline at end of file
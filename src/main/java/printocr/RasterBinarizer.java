@@ -0,0 +1,163 @@
+package printocr;
+
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  RasterBinarizer
+*
+*  Purpose: binarizes images that are already 1 bit or 8 bit gray straight from their raster's byte array.
+*  	PrintOcr.convertImageToBinary() draws every image into a new gray image and reads it back a pixel at a time
+*  	through getRGB() and a Color, which for a fax style tiff or a gray scan is all wasted work
+*
+*  	TYPE_BYTE_BINARY: the bytes of the MultiPixelPackedSampleModel are copied with PackedRows.fromBytes(). the
+*  	color model is checked for which of the two indexes is black, since some files store white as 1
+*
+*  	TYPE_BYTE_GRAY: the bytes are thresholded where they are. getRGB() of a gray image converts the linear gray
+*  	value to srgb, so the gray values are put through the same conversion (a table of 256 entries from the color
+*  	model) before the average is taken, which gives exactly the pixels convertImageToBinary() would. the gray
+*  	values go up with the bytes, so the threshold is a cut on the bytes themselves and the rows are thresholded
+*  	by PixelKernels.threshold()
+*
+*  	any other image, or a raster laid out differently (e.g. a sub image not starting on a byte), returns null
+*  	and is converted the old way
+*
+******************************************************************************************************************/
+
+final class RasterBinarizer{
+
+	private RasterBinarizer(){}
+
+	/*****************************************************************
+	 *
+	 * function: binarize()
+	 * output:
+	 * 	the binary image, bit i*width+j is the pixel in row i, column j, or null if the image isn't a 1 bit or
+	 * 	8 bit gray image this can read directly
+	 *
+	 *****************************************************************/
+	public static BitSet binarize(BufferedImage img){
+		WritableRaster raster = img.getRaster();
+		if(!(raster.getDataBuffer() instanceof DataBufferByte)||raster.getNumBands()!=1){
+			return null;
+		}
+		if(img.getType()==BufferedImage.TYPE_BYTE_BINARY){
+			return binary(img, raster);
+		}
+		if(img.getType()==BufferedImage.TYPE_BYTE_GRAY){
+			return gray(img, raster);
+		}
+		return null;
+	}
+
+	private static BitSet binary(BufferedImage img, WritableRaster raster){
+		if(!(raster.getSampleModel() instanceof MultiPixelPackedSampleModel)||!(img.getColorModel() instanceof IndexColorModel)){
+			return null;
+		}
+		MultiPixelPackedSampleModel sm = (MultiPixelPackedSampleModel)raster.getSampleModel();
+		IndexColorModel cm = (IndexColorModel)img.getColorModel();
+		if(sm.getPixelBitStride()!=1||cm.getMapSize()<2){
+			return null;
+		}
+		int x0 = -raster.getSampleModelTranslateX();
+		int y0 = -raster.getSampleModelTranslateY();
+		if((sm.getBitOffset(x0)&7)!=0){
+			return null;
+		}
+		int dark0 = luminance(cm.getRGB(0));
+		int dark1 = luminance(cm.getRGB(1));
+		if(dark0==dark1){
+			return null; //no black to find
+		}
+		DataBufferByte db = (DataBufferByte)raster.getDataBuffer();
+		int offset = db.getOffset() + sm.getOffset(x0, y0);
+		return PackedRows.fromBytes(ByteBuffer.wrap(db.getData()), offset, sm.getScanlineStride(), img.getWidth(), img.getHeight(), dark1<dark0);
+	}
+
+	private static BitSet gray(BufferedImage img, WritableRaster raster){
+		if(!(raster.getSampleModel() instanceof ComponentSampleModel)){
+			return null;
+		}
+		ComponentSampleModel sm = (ComponentSampleModel)raster.getSampleModel();
+		if(sm.getPixelStride()!=1){
+			return null;
+		}
+		int[] srgb = srgb(img.getColorModel());
+		int width = img.getWidth();
+		int height = img.getHeight();
+		DataBufferByte db = (DataBufferByte)raster.getDataBuffer();
+		byte[] data = db.getData();
+		int offset = db.getOffset() + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+		int stride = sm.getScanlineStride();
+
+		long sum = 0;
+		int[] histogram = new int[256];
+		for(int i=0; i<height; i++){
+			int p = offset + i*stride;
+			for(int j=0; j<width; j++){
+				histogram[data[p+j]&0xff]++;
+			}
+		}
+		for(int v=0; v<256; v++){
+			sum += (long)histogram[v]*srgb[v];
+		}
+		int threshold = (int)(sum/((long)width*height));
+
+		int cut = cut(srgb, threshold);
+		if(cut>=0){
+			long[] words = new long[(int)(((long)width*height+63)>>>6)];
+			PixelKernels kernels = PixelKernels.get();
+			for(int i=0; i<height; i++){
+				kernels.threshold(data, offset + i*stride, width, cut, words, (long)i*width);
+			}
+			return BitSet.valueOf(words);
+		}
+
+		BitSet points = new BitSet(width*height);
+		for(int i=0; i<height; i++){
+			int p = offset + i*stride;
+			for(int j=0; j<width; j++){
+				if(srgb[data[p+j]&0xff]<threshold){ //lower numbers are black points
+					points.set(i*width+j);
+				}
+			}
+		}
+		return points;
+	}
+
+	//the gray value getRGB() gives for each byte of a gray image with this color model
+	static int[] srgb(ColorModel cm){
+		int[] srgb = new int[256];
+		for(int v=0; v<256; v++){
+			srgb[v] = (cm.getRGB(v)>>16)&0xff; //the red value, as convertImageToBinary() takes it
+		}
+		return srgb;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: cut()
+	 * output:
+	 * 	the first byte whose gray value is at least threshold, so the bytes below it are the black pixels. -1 if
+	 * 	the gray values don't go up with the bytes, then there is no such byte and each pixel has to be looked up
+	 *
+	 *****************************************************************/
+	static int cut(int[] srgb, int threshold){
+		for(int v=1; v<srgb.length; v++){
+			if(srgb[v]<srgb[v-1]){
+				return -1;
+			}
+		}
+		int cut = 0;
+		while(cut<srgb.length&&srgb[cut]<threshold){
+			cut++;
+		}
+		return cut;
+	}
+
+	private static int luminance(int rgb){
+		return 299*((rgb>>16)&0xff) + 587*((rgb>>8)&0xff) + 114*(rgb&0xff);
+	}
+}
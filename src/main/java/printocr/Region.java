@@ -0,0 +1,219 @@
+package printocr;
+
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  Region
+*
+*  Purpose: one connected component of the page: its bounding box, the labels that were merged into it, the
+*  	character it was classified as and the boxes inside it that were marked as noise
+*
+******************************************************************************************************************/
+
+class Region{
+	private TreeSet<Integer> equivalent_colors;
+	private int color_id;
+	private int xmin;
+	private int ymin;
+	private int xmax;
+	private int ymax;
+	private char ch;
+	private ArrayList<int[]> noise;
+	
+	public int getCX(){ return (this.xmax-this.xmin)/2 + this.xmin;}
+	public int getCY(){ return (this.ymax-this.ymin)/2 + this.ymin;}
+	
+	public Region(){
+		this.equivalent_colors = new TreeSet<Integer>();
+		this.xmin = -1;
+		this.xmax = -1;
+		this.ymin = -1;
+		this.ymax = -1;
+		this.color_id = 0;
+		this.ch = ' ';
+		this.noise = new ArrayList<int[]>();
+	}
+	
+	private TreeSet<Integer> getColors(){
+		return equivalent_colors;
+	}
+	
+	public int getColorID(){ return color_id; }
+	public int getXmin(){ return xmin; }
+	public int getYmin(){ return ymin; }
+	public int getXmax(){ return xmax; }
+	public int getYmax(){ return ymax; }
+	
+	public boolean isEquivalent(int c){
+		if(equivalent_colors.contains(c)){
+			return true;
+		}else{
+			return false;
+		}
+	}
+	
+	public void addColor(int c){
+		equivalent_colors.add(new Integer(c));
+		color_id = equivalent_colors.first().intValue();
+	}
+	
+	public void mergeSets(Region c){
+		equivalent_colors.addAll(c.getColors());
+		color_id = equivalent_colors.first().intValue();
+		this.updateX(c.getXmin());
+		this.updateX(c.getXmax());
+		this.updateY(c.getYmax());
+		this.updateY(c.getYmin());
+		for(int[] n: c.getNoiseList()){
+			this.noise.add(n.clone());
+		}
+	}
+	
+	public void markNoise(int xmin, int xmax, int ymin, int ymax){
+		int[] n = {xmin, ymin, xmax, ymax};
+		noise.add(n);
+	}
+	
+	public ArrayList<int[]> getNoiseList(){
+		return this.noise;
+	}
+	
+	//moves the region from a part of the image starting at (dx, dy) to the whole image
+	public void translate(int dx, int dy){
+		xmin += dx;
+		xmax += dx;
+		ymin += dy;
+		ymax += dy;
+		for(int[] n: noise){
+			n[0] += dx;
+			n[1] += dy;
+			n[2] += dx;
+			n[3] += dy;
+		}
+	}
+	
+	//moves the region from an image scaled down by the factor to the full size image, width x height. the last
+	//column and row of the scaled image may stand for fewer than factor pixels, so the box is kept inside the image
+	public void scale(int factor, int width, int height){
+		xmin = xmin*factor;
+		ymin = ymin*factor;
+		xmax = Math.min(xmax*factor + factor-1, width-1);
+		ymax = Math.min(ymax*factor + factor-1, height-1);
+		for(int[] n: noise){
+			n[0] = n[0]*factor;
+			n[1] = n[1]*factor;
+			n[2] = Math.min(n[2]*factor + factor-1, width-1);
+			n[3] = Math.min(n[3]*factor + factor-1, height-1);
+		}
+	}
+	
+	//true if the point is inside one of the boxes marked as noise
+	public boolean isNoise(int x, int y){
+		for(int[] n: noise){
+			if(x>=n[0]&&y>=n[1]&&x<=n[2]&&y<=n[3]){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public void setXmax(int x){
+		this.xmax = x;
+	}
+	
+	public void updateX(int x){
+		if(xmax<0){
+			xmax = x;
+		}
+		if(xmin<0){
+			xmin = x;
+		}
+		if(x>xmax){
+			xmax = x;
+		}
+		if(x<xmin){
+			xmin = x;
+		}
+	}
+	
+	public void updateY(int y){
+		if(ymax<0){
+			ymax = y;
+		}
+		if(ymin<0){
+			ymin = y;
+		}
+		if(y>ymax){
+			ymax = y;
+		}
+		if(y<ymin){
+			ymin = y;
+		}
+	}
+	
+	public String toString(){
+		String result = "";
+		result += "color_id = "+color_id;
+		result += " min ("+this.xmin+", "+this.ymin+") ";
+		result += "max ("+this.xmax+", "+this.ymax+") ";
+		result += "equivalent sets = ";
+		for(Integer n: equivalent_colors){
+			result += n+" ";
+		}
+		return result;
+	}
+	
+	public void setChar(char ch){
+		this.ch = ch;
+	}
+	
+	public char getChar(){ return this.ch; }
+	
+	public boolean checkRangeOverlap(Region r){
+		if(r.getYmin()<this.getYmin()){ //...r...this...
+			if(r.getYmax()>=this.getYmin()){
+				return true;
+			}
+		}else{ //...this...r...
+			if(this.getYmax()>=r.getYmin()){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	//return false if the overlap is less than half the smaller domain
+	public boolean checkDomainOverlap(Region r){		
+		if(r.getXmin()<this.xmin){ //...r...this...
+			if(r.getXmax()>=this.xmin){
+				return true;
+			}
+		}else{ //...this...r...
+			if(this.xmax>=r.getXmin()){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public double getDomainOverlapAsPercent(Region r){
+		double smaller_domain = 0;
+		if(r.getXmax()-r.getXmin()<this.xmax - this.xmin){
+			smaller_domain = r.getXmax()-r.getXmin()+1;
+		}else{
+			smaller_domain = this.xmax - this.xmin + 1;
+		}
+		if(r.getXmin()<this.getXmin()){ //...r...this...
+			if(r.getXmax()>=this.xmin){
+				return (r.getXmax() - this.xmin + 1)/smaller_domain;
+			}
+		}else{ //...this...r...
+			if(this.xmax>=r.getXmin()){
+				return (this.xmax - r.getXmin() + 1)/smaller_domain;
+			}
+		}
+		return 0;
+	}
+	
+}
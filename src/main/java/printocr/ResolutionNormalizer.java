@@ -0,0 +1,163 @@
+package printocr;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.*;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+/*****************************************************************************************************************
+*
+*  ResolutionNormalizer
+*
+*  Purpose: brings high resolution scans down to the glyph size the classifier needs. the attributes are ratios
+*  	that don't change with the size of the glyph, but labeling and the attribute vectors cost time in proportion
+*  	to the number of pixels, so a 600 dpi scan costs four times as much as the same page at 300 dpi
+*
+*  	the x-height (height of a lower case x) is estimated from the row profile of the binary image: each text
+*  	line is a run of rows with black pixels, the serifs and curves of the lower case letters make the fullest
+*  	row of its top half the top of the x and the fullest row of its bottom half the baseline. the median over
+*  	the lines is the page's x-height
+*
+*  	image files are first decoded at 1/PREVIEW_SUBSAMPLING resolution (ImageReadParam.setSourceSubsampling) to
+*  	estimate the x-height cheaply, then decoded again keeping every factor'th pixel. images that are already
+*  	decoded are reduced on the binary image instead, a block of factor x factor pixels becoming black when at
+*  	least half of it is black. either way the components are mapped back to the original coordinates after
+*  	they are classified
+*
+******************************************************************************************************************/
+
+public final class ResolutionNormalizer{
+
+	public static final int PREVIEW_SUBSAMPLING = 4;
+
+	private ResolutionNormalizer(){}
+
+	/*****************************************************************
+	 *
+	 * function: factor()
+	 * input:
+	 * 	xHeight: the estimated x-height in pixels
+	 * 	target: the smallest x-height wanted after scaling down
+	 * output:
+	 * 	the largest whole factor that keeps the x-height at or above the target, at least 1
+	 *
+	 *****************************************************************/
+	public static int factor(int xHeight, int target){
+		return target<=0 ? 1 : Math.max(1, xHeight/target);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: estimateXHeight()
+	 * input:
+	 * 	rows: the packed binary image (see PackedRows)
+	 * output:
+	 * 	the median x-height of the text lines in pixels, 0 if there is no text
+	 *
+	 *****************************************************************/
+	public static int estimateXHeight(long[][] rows){
+		int[] profile = new int[rows.length];
+		int max = 0;
+		for(int i=0; i<rows.length; i++){
+			for(long w: rows[i]){
+				profile[i] += Long.bitCount(w);
+			}
+			max = Math.max(max, profile[i]);
+		}
+		if(max==0){
+			return 0;
+		}
+		int threshold = Math.max(1, max/50); //ignores rows with a few specks of noise
+		ArrayList<Integer> heights = new ArrayList<Integer>();
+		int i = 0;
+		while(i<profile.length){
+			if(profile[i]<threshold){
+				i++;
+				continue;
+			}
+			int start = i;
+			while(i<profile.length&&profile[i]>=threshold){
+				i++;
+			}
+			//the tops of the lower case letters and the baseline are the fullest rows in the top and bottom half
+			int mid = (start+i)/2;
+			int top = start;
+			int base = mid;
+			for(int j=start; j<i; j++){
+				if(j<mid&&profile[j]>profile[top]){
+					top = j;
+				}else if(j>=mid&&profile[j]>profile[base]){
+					base = j;
+				}
+			}
+			if(i-start>1){
+				heights.add(base-top+1);
+			}
+		}
+		if(heights.isEmpty()){
+			return 0;
+		}
+		Collections.sort(heights);
+		return heights.get(heights.size()/2);
+	}
+
+	//estimates the x-height of an image that hasn't been binarized yet
+	public static int estimateXHeight(BufferedImage img){
+		return estimateXHeight(PackedRows.pack(PrintOcr.convertImageToBinary(img), img.getWidth(), img.getHeight()));
+	}
+
+	/*****************************************************************
+	 *
+	 * function: read()
+	 * purpose: decodes one image of the reader keeping only every subsampling'th pixel of every subsampling'th row.
+	 * 	for jpeg and most other formats the skipped pixels are never converted, so this is much quicker than
+	 * 	decoding the whole image and scaling it down
+	 *
+	 *****************************************************************/
+	public static BufferedImage read(ImageReader reader, int index, int subsampling) throws IOException{
+		ImageReadParam param = reader.getDefaultReadParam();
+		if(subsampling>1){
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		}
+		return reader.read(index, param);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: downscale()
+	 * purpose: shrinks the binary image by the factor in each direction
+	 * input:
+	 * 	img: the binary image, bit i*width+j is the pixel in row i, column j. not modified
+	 * 	width, height: size of the image
+	 * 	factor: 2 or more
+	 * output:
+	 * 	the binary image of size scaledSize(width, factor) x scaledSize(height, factor)
+	 *
+	 *****************************************************************/
+	public static BitSet downscale(BitSet img, int width, int height, int factor){
+		int w = scaledSize(width, factor);
+		int h = scaledSize(height, factor);
+		BitSet out = new BitSet(w*h);
+		int[] counts = new int[w];
+		int half = (factor*factor+1)/2;
+		for(int y=0; y<h; y++){
+			Arrays.fill(counts, 0);
+			int end = Math.min((y+1)*factor, height)*width;
+			//only the black pixels are visited
+			for(int p=img.nextSetBit(y*factor*width); p>=0&&p<end; p=img.nextSetBit(p+1)){
+				counts[(p%width)/factor]++;
+			}
+			for(int x=0; x<w; x++){
+				if(counts[x]>=half){
+					out.set(y*w+x);
+				}
+			}
+		}
+		return out;
+	}
+
+	public static int scaledSize(int size, int factor){
+		return (size+factor-1)/factor;
+	}
+}
@@ -0,0 +1,367 @@
+package printocr;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*****************************************************************************************************************
+*
+*  ResultCache
+*
+*  Purpose: the recognized documents of image files seen before, kept in a directory so that a byte for byte
+*  	resubmission of a scan (a single image or a multi-page tiff) is answered without decoding, labeling or
+*  	classifying anything. used by the cache command line option, checked by PrintOcr.process_test_file() before
+*  	the image is read
+*
+*  	an entry is keyed by the SHA-256 of the image file's bytes together with a version (see version()) made from
+*  	the options that change the result and the training data the model is built from, so a new model or a
+*  	different option never returns an old result. each entry is one file holding every page of the document:
+*  	the text and box of each line and the text, confidence, word start and box of each glyph, everything the
+*  	text, hOCR and ALTO outputs are made from
+*
+*  	the directory is bounded by maxBytes: the least recently used entries are deleted once the files add up to
+*  	more than that. the order is kept in memory and starts from the files' modification times, which are
+*  	updated on every hit so that the order survives a restart. entries are written to a temporary file and
+*  	renamed into place, so several processes can share a directory, each evicting by its own view of it
+*
+*  	safe to share between threads
+*
+******************************************************************************************************************/
+
+public final class ResultCache{
+
+	private static final int format = 2; //of the entry files, part of the version
+	private static final String suffix = ".ocr";
+
+	private final Path dir;
+	private final long max_bytes;
+	private final String version; //of the engine the results come from
+	//key -> size of its file, least recently used first
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	private long total_bytes = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/*****************************************************************
+	 *
+	 * function: ResultCache()
+	 * purpose: opens (creating it if needed) the cache directory and reads the sizes and ages of its entries
+	 * input:
+	 * 	dir: the cache directory
+	 * 	maxBytes: the most the entry files may add up to
+	 * 	config: the options of the engine whose results are stored, see version()
+	 *
+	 *****************************************************************/
+	public ResultCache(Path dir, long maxBytes, OcrConfig config) throws IOException{
+		this.dir = dir;
+		this.max_bytes = maxBytes;
+		this.version = version(config);
+		Files.createDirectories(dir);
+		final HashMap<Path, FileTime> times = new HashMap<Path, FileTime>();
+		ArrayList<Path> files = new ArrayList<Path>();
+		DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*"+suffix);
+		try{
+			for(Path p: stream){
+				times.put(p, Files.getLastModifiedTime(p));
+				files.add(p);
+			}
+		}finally{
+			stream.close();
+		}
+		Collections.sort(files, new Comparator<Path>(){
+			public int compare(Path a, Path b){
+				return times.get(a).compareTo(times.get(b));
+			}
+		});
+		for(Path p: files){
+			String name = p.getFileName().toString();
+			long size = Files.size(p);
+			entries.put(name.substring(0, name.length()-suffix.length()), size);
+			total_bytes += size;
+		}
+	}
+
+	public long getHits(){ return hits.get(); }
+	public long getMisses(){ return misses.get(); }
+	public long getEvictions(){ return evictions.get(); }
+	public synchronized int getEntryCount(){ return entries.size(); }
+	public synchronized long getBytes(){ return total_bytes; }
+
+	/*****************************************************************
+	 *
+	 * function: version()
+	 * output:
+	 * 	the part of the key that doesn't depend on the image: the cache format, every option that changes the
+	 * 	recognized text (OcrConfig.fingerprint()) and the hash of the training data and of the word list, if
+	 * 	there is one. an unreadable file hashes as empty, the engine fails to build from it anyway
+	 *
+	 *****************************************************************/
+	public static String version(OcrConfig config){
+		MessageDigest md = sha256();
+		md.update(("format="+format+" "+config.fingerprint()).getBytes(StandardCharsets.UTF_8));
+		try{
+			digest(md, Paths.get(config.getArffFile()));
+		}catch(IOException e){
+			md.update((byte)0);
+		}
+		if(config.getDictionary()!=null){
+			try{
+				digest(md, Paths.get(config.getDictionary()));
+			}catch(IOException e){
+				md.update((byte)0);
+			}
+		}
+		return hex(md.digest());
+	}
+
+	/*****************************************************************
+	 *
+	 * function: key()
+	 * output:
+	 * 	the key of an image file for an engine of the given version
+	 *
+	 *****************************************************************/
+	public static String key(Path image, String version) throws IOException{
+		MessageDigest md = sha256();
+		md.update(version.getBytes(StandardCharsets.UTF_8));
+		digest(md, image);
+		return hex(md.digest());
+	}
+
+	//the key of an image file for this cache's engine
+	public String key(Path image) throws IOException{
+		return key(image, version);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: get()
+	 * output:
+	 * 	the document stored for the key, one page for a single image, or null if there is none (or the entry
+	 * 	can't be read, in which case it is deleted)
+	 *
+	 *****************************************************************/
+	public OcrDocument get(String key){
+		Path file = dir.resolve(key+suffix);
+		OcrDocument doc = null;
+		try{
+			doc = read(file);
+		}catch(NoSuchFileException e){
+			doc = null;
+		}catch(IOException e){
+			System.err.println("Error: dropping the unreadable cache entry "+file);
+			try{
+				Files.deleteIfExists(file);
+			}catch(IOException ignored){ } //left for the next eviction
+			doc = null;
+		}
+		if(doc==null){
+			synchronized(this){
+				Long size = entries.remove(key); //deleted by another process
+				if(size!=null){
+					total_bytes -= size;
+				}
+			}
+			misses.incrementAndGet();
+			return null;
+		}
+		try{
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		}catch(IOException e){
+			//only the order after a restart is affected
+		}
+		synchronized(this){
+			if(entries.get(key)==null){ //written by another process
+				long size = file.toFile().length();
+				entries.put(key, size);
+				total_bytes += size;
+			}
+		}
+		hits.incrementAndGet();
+		return doc;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: put()
+	 * purpose: stores the document of an image file and evicts the least recently used entries if the cache is
+	 * 	over its size. a failure to write only loses the entry
+	 *
+	 *****************************************************************/
+	public void put(String key, OcrDocument doc){
+		Path file = dir.resolve(key+suffix);
+		long size = 0;
+		try{
+			Path tmp = Files.createTempFile(dir, key, ".tmp");
+			try{
+				write(tmp, doc);
+				size = Files.size(tmp);
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}finally{
+				Files.deleteIfExists(tmp);
+			}
+		}catch(IOException e){
+			System.err.println("Error: could not write the cache entry "+file+": "+e.getMessage());
+			return;
+		}
+		ArrayList<String> evicted = new ArrayList<String>();
+		synchronized(this){
+			Long old = entries.put(key, size);
+			total_bytes += size - (old==null ? 0 : old);
+			Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+			while(total_bytes>max_bytes&&it.hasNext()){
+				Map.Entry<String, Long> e = it.next();
+				if(e.getKey().equals(key)){
+					continue; //a single entry larger than the cache is still kept until the next put
+				}
+				total_bytes -= e.getValue();
+				evicted.add(e.getKey());
+				it.remove();
+			}
+		}
+		for(String k: evicted){
+			try{
+				Files.deleteIfExists(dir.resolve(k+suffix));
+			}catch(IOException e){
+				System.err.println("Error: could not delete the cache entry "+k);
+			}
+			evictions.incrementAndGet();
+		}
+	}
+
+	//the entry format: format, page count, then for each page its line count and for each line its index, text,
+	//box (x, y min then max) and glyph count, and for each glyph its text, confidence, word start and box
+	private void write(Path file, OcrDocument doc) throws IOException{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+		try{
+			out.writeInt(format);
+			out.writeInt(doc.getPageCount());
+			for(OcrResult page: doc.getPages()){
+				out.writeInt(page.getLineCount());
+				for(OcrLine line: page.getLines()){
+					out.writeInt(line.getIndex());
+					out.writeUTF(line.getText());
+					writeBox(out, line.getXmin(), line.getYmin(), line.getXmax(), line.getYmax());
+					out.writeInt(line.getGlyphs().size());
+					for(OcrGlyph g: line.getGlyphs()){
+						out.writeUTF(g.getText());
+						out.writeDouble(g.getConfidence());
+						out.writeBoolean(g.isWordStart());
+						writeBox(out, g.getXmin(), g.getYmin(), g.getXmax(), g.getYmax());
+					}
+				}
+			}
+		}finally{
+			out.close();
+		}
+	}
+
+	private static void writeBox(DataOutputStream out, int xmin, int ymin, int xmax, int ymax) throws IOException{
+		out.writeInt(xmin);
+		out.writeInt(ymin);
+		out.writeInt(xmax);
+		out.writeInt(ymax);
+	}
+
+	private static Region readBox(DataInputStream in) throws IOException{
+		Region r = new Region();
+		r.updateX(in.readInt());
+		r.updateY(in.readInt());
+		r.updateX(in.readInt());
+		r.updateY(in.readInt());
+		return r;
+	}
+
+	//the lines come back with a region per glyph (or one for the line if it has no glyphs), so their boxes are
+	//the ones stored
+	private static OcrDocument read(Path file) throws IOException{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+		try{
+			if(in.readInt()!=format){
+				throw new IOException("Error: "+file+" is not a cache entry");
+			}
+			int pages = in.readInt();
+			ArrayList<OcrResult> results = new ArrayList<OcrResult>();
+			for(int p=0; p<pages; p++){
+				int n = in.readInt();
+				ArrayList<OcrLine> lines = new ArrayList<OcrLine>();
+				for(int i=0; i<n; i++){
+					int index = in.readInt();
+					String text = in.readUTF();
+					Region box = readBox(in);
+					int count = in.readInt();
+					ArrayList<Region> regions = new ArrayList<Region>();
+					ArrayList<OcrGlyph> glyphs = new ArrayList<OcrGlyph>();
+					for(int k=0; k<count; k++){
+						String glyph = in.readUTF();
+						double confidence = in.readDouble();
+						boolean word_start = in.readBoolean();
+						Region r = readBox(in);
+						regions.add(r);
+						glyphs.add(new OcrGlyph(glyph, confidence, word_start, r));
+					}
+					if(regions.isEmpty()){
+						regions.add(box);
+					}
+					lines.add(new OcrLine(index, text, regions, glyphs));
+				}
+				results.add(new OcrResult(lines));
+			}
+			return new OcrDocument(results);
+		}finally{
+			in.close();
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: print()
+	 * purpose: outputs the hit, miss and eviction counters and the size of the cache
+	 *
+	 *****************************************************************/
+	public void print(PrintStream out){
+		long h = hits.get();
+		long m = misses.get();
+		out.printf("result cache: hits = %d, misses = %d (%.1f%% hits), evictions = %d, entries = %d, %.2f of %.2f MB\n", h, m, h+m==0 ? 0 : 100.0*h/(h+m), evictions.get(), getEntryCount(), getBytes()/(1024.0*1024.0), max_bytes/(1024.0*1024.0));
+	}
+
+	private static MessageDigest sha256(){
+		try{
+			return MessageDigest.getInstance("SHA-256");
+		}catch(NoSuchAlgorithmException e){
+			throw new IllegalStateException("Error: the jvm has no SHA-256", e); //every jvm must have it
+		}
+	}
+
+	//adds the bytes of a file to the digest, a megabyte at a time
+	private static void digest(MessageDigest md, Path file) throws IOException{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try{
+			ByteBuffer buf = ByteBuffer.allocateDirect(1<<20);
+			while(channel.read(buf)>=0){
+				buf.flip();
+				md.update(buf);
+				buf.clear();
+			}
+		}finally{
+			channel.close();
+		}
+	}
+
+	private static String hex(byte[] bytes){
+		StringBuilder sb = new StringBuilder();
+		for(byte b: bytes){
+			sb.append(String.format("%02x", b&0xff));
+		}
+		return sb.toString();
+	}
+}
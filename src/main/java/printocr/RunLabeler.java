@@ -0,0 +1,128 @@
+package printocr;
+
+import java.awt.Rectangle;
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  RunLabeler
+*
+*  Purpose: finds the connected components of a PageBits image, the same components (4-connected: pixels touch
+*  	left, right, above or below) as PrintOcr.cluster_connected_pixels(), without its int label for every pixel
+*
+*  	each row is read as runs of black pixels with nextSetBit()/nextClearBit(), 64 pixels at a time. a run is
+*  	joined (union find) to every run of the row above that shares a column with it. memory is a few ints per
+*  	run, so it stays small on pages far larger than an int[height][width] could be, and white space costs
+*  	nothing but the word scans
+*
+*  	the components come out in the order of their first run (top to bottom, left to right), which is not the
+*  	order cluster_connected_pixels() gives them in
+*
+******************************************************************************************************************/
+
+public final class RunLabeler{
+
+	private RunLabeler(){}
+
+	public static ArrayList<Region> label(PageBits page){
+		return label(page, new Rectangle(0, 0, page.getWidth(), page.getHeight()));
+	}
+
+	/*****************************************************************
+	 *
+	 * function: label()
+	 * input:
+	 * 	page: the binary image, only read
+	 * 	area: only the pixels inside this box are labeled, as if the rest of the page were white
+	 * output:
+	 * 	the components with their boxes in page coordinates
+	 *
+	 *****************************************************************/
+	public static ArrayList<Region> label(PageBits page, Rectangle area){
+		Runs runs = new Runs();
+		int row_first = 0; //first run of the row above, then of this row
+		for(int y=area.y; y<area.y+area.height; y++){
+			long start = (long)y*page.getWidth();
+			long from = start+area.x;
+			long to = from+area.width;
+			int above = row_first;
+			row_first = runs.count;
+			for(long p=page.nextSetBit(from, to); p>=0; p=page.nextSetBit(p, to)){
+				long end = page.nextClearBit(p, to);
+				int x0 = (int)(p-start);
+				int x1 = (int)(end-start)-1;
+				int run = runs.add(y, x0, x1);
+				//runs of the row above that end before this one starts can't touch it or any later run
+				while(above<row_first&&runs.x1[above]<x0){
+					above++;
+				}
+				for(int a=above; a<row_first&&runs.x0[a]<=x1; a++){
+					runs.union(a, run);
+				}
+				p = end;
+			}
+		}
+
+		//one region per root, in the order of the root's first run
+		ArrayList<Region> components = new ArrayList<Region>();
+		int[] region_of = new int[runs.count];
+		Arrays.fill(region_of, -1);
+		for(int r=0; r<runs.count; r++){
+			int root = runs.find(r);
+			if(region_of[root]<0){
+				region_of[root] = components.size();
+				Region c = new Region();
+				c.addColor(components.size()+1);
+				components.add(c);
+			}
+			Region c = components.get(region_of[root]);
+			c.updateX(runs.x0[r]);
+			c.updateX(runs.x1[r]);
+			c.updateY(runs.y[r]);
+		}
+		return components;
+	}
+
+	//the runs found so far and their union find parents, in growable arrays
+	private static final class Runs{
+		int count = 0;
+		int[] y = new int[1024];
+		int[] x0 = new int[1024];
+		int[] x1 = new int[1024];
+		int[] parent = new int[1024];
+
+		int add(int row, int first, int last){
+			if(count==y.length){
+				int n = y.length*2;
+				y = Arrays.copyOf(y, n);
+				x0 = Arrays.copyOf(x0, n);
+				x1 = Arrays.copyOf(x1, n);
+				parent = Arrays.copyOf(parent, n);
+			}
+			y[count] = row;
+			x0[count] = first;
+			x1[count] = last;
+			parent[count] = count;
+			return count++;
+		}
+
+		int find(int r){
+			while(parent[r]!=r){
+				parent[r] = parent[parent[r]]; //path halving
+				r = parent[r];
+			}
+			return r;
+		}
+
+		//the smaller root is kept so every root is the first run of its component
+		void union(int a, int b){
+			int ra = find(a);
+			int rb = find(b);
+			if(ra<rb){
+				parent[rb] = ra;
+			}else if(rb<ra){
+				parent[ra] = rb;
+			}
+		}
+	}
+}
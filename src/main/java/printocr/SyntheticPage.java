@@ -0,0 +1,91 @@
+package printocr;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  SyntheticPage
+*
+*  Purpose: renders deterministic test pages with Java2D so the benchmarks (and anything else that needs pages
+*  	with known text) don't depend on scanned images. the same arguments always give the same text and, on the
+*  	same jvm and fonts, the same pixels
+*
+******************************************************************************************************************/
+
+public final class SyntheticPage{
+
+	private static final String[] words = {"the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "Print", "OCR",
+		"Times", "New", "Roman", "data", "mining", "final", "project", "vector", "letter", "model", "2014", "March", "27"};
+
+	private final BufferedImage image;
+	private final String text;
+
+	private SyntheticPage(BufferedImage image, String text){
+		this.image = image;
+		this.text = text;
+	}
+
+	public BufferedImage getImage(){ return image; }
+	public String getText(){ return text; }
+
+	/*****************************************************************
+	 *
+	 * function: render()
+	 * purpose: renders black serif text on a white page
+	 * input:
+	 * 	dpi: resolution of the page
+	 * 	pointSize: font size in points (1/72 inch)
+	 * 	density: fraction of each line that is filled with words (0 to 1), the rest of the line is left blank
+	 * 	widthInches, heightInches: the page size
+	 * 	seed: picks the words
+	 * output:
+	 * 	the rendered page and the text that was drawn on it (lines separated by '\n')
+	 *
+	 *****************************************************************/
+	public static SyntheticPage render(int dpi, int pointSize, double density, double widthInches, double heightInches, long seed){
+		int width = (int)Math.round(widthInches*dpi);
+		int height = (int)Math.round(heightInches*dpi);
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = img.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.setColor(Color.BLACK);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+		g.setFont(new Font(Font.SERIF, Font.PLAIN, Math.max(1, pointSize*dpi/72)));
+
+		Random rand = new Random(seed);
+		int margin = dpi/4;
+		int line_height = g.getFontMetrics().getHeight()*3/2;
+		int space = g.getFontMetrics().charWidth(' ');
+		int fill_to = margin + (int)((width-2*margin)*density);
+		StringBuilder text = new StringBuilder();
+		for(int y=margin+line_height; y<height-margin; y+=line_height){
+			int x = margin;
+			StringBuilder line = new StringBuilder();
+			while(true){
+				String word = words[rand.nextInt(words.length)];
+				int w = g.getFontMetrics().stringWidth(word);
+				if(x+w>fill_to){
+					break;
+				}
+				g.drawString(word, x, y);
+				if(line.length()>0){
+					line.append(' ');
+				}
+				line.append(word);
+				x += w + space;
+			}
+			if(line.length()>0){
+				text.append(line).append('\n');
+			}
+		}
+		g.dispose();
+		return new SyntheticPage(img, text.toString());
+	}
+}
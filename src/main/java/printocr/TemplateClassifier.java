@@ -0,0 +1,103 @@
+package printocr;
+
+import weka.core.*;
+
+/*****************************************************************************************************************
+*
+*  TemplateClassifier
+*
+*  Purpose: cheap nearest template classifier used as the first stage of the classifier cascade. each character
+*  	is represented by the average (template) of its training vectors. a glyph is compared to every template with
+*  	a weighted L1 distance, where each attribute is divided by its standard deviation in the training data so the
+*  	intersect counts don't swamp the ratios, and the weights are the ones compute_attribute_vector() gives the
+*  	attributes. immutable once built, so it is safe to share between threads
+*
+******************************************************************************************************************/
+
+public final class TemplateClassifier{
+
+	private final double[][] templates; //[class][attribute], null if the class has no training data
+	private final double[] scale; //1/standard deviation of each attribute
+
+	/*****************************************************************
+	 *
+	 * function: TemplateClassifier()
+	 * input:
+	 * 	data: the training data, class attribute last
+	 *
+	 *****************************************************************/
+	public TemplateClassifier(Instances data){
+		this(TrainingMatrix.fromInstances(data));
+	}
+
+	public TemplateClassifier(TrainingMatrix data){
+		templates = data.classMeans();
+		double[] sd = data.deviations();
+		scale = new double[sd.length];
+		for(int a=0; a<sd.length; a++){
+			scale[a] = sd[a]>1e-6 ? 1/sd[a] : 1;
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: distribution()
+	 * purpose: turns the distances to the templates into probabilities, p ~ exp(-d/d_nearest), so an exact match
+	 * 	gets all the weight and a glyph half way between two templates gets about the same for both
+	 * output:
+	 * 	the probability of each class, in the order of the class attribute (same as alpha_tnr)
+	 *
+	 *****************************************************************/
+	public double[] distribution(LetterVector vector){
+		double[] dist = new double[templates.length];
+		double nearest = Double.MAX_VALUE;
+		for(int c=0; c<templates.length; c++){
+			if(templates[c]==null){
+				dist[c] = Double.MAX_VALUE;
+				continue;
+			}
+			double d = 0;
+			for(int a=0; a<scale.length; a++){
+				d += vector.weightAt(a)*Math.abs(vector.valueAt(a)-templates[c][a])*scale[a];
+			}
+			dist[c] = d;
+			nearest = Math.min(nearest, d);
+		}
+		double sum = 0;
+		for(int c=0; c<dist.length; c++){
+			if(dist[c]==Double.MAX_VALUE){
+				dist[c] = 0;
+			}else if(nearest==0){
+				dist[c] = dist[c]==0 ? 1 : 0;
+			}else{
+				dist[c] = Math.exp(-dist[c]/nearest);
+			}
+			sum += dist[c];
+		}
+		for(int c=0; c<dist.length; c++){
+			dist[c] /= sum;
+		}
+		return dist;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: margin()
+	 * output:
+	 * 	the difference between the two largest probabilities of a class distribution
+	 *
+	 *****************************************************************/
+	public static double margin(double[] dist){
+		double first = 0;
+		double second = 0;
+		for(double p: dist){
+			if(p>first){
+				second = first;
+				first = p;
+			}else if(p>second){
+				second = p;
+			}
+		}
+		return first - second;
+	}
+}
@@ -0,0 +1,272 @@
+package printocr;
+
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.*;
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  TextBlocks
+*
+*  Purpose: finds the parts of a page that have ink on them so binarization and labeling can skip the white
+*  	space. the page is divided into square tiles, a tile is marked if it has any black pixel, the marks are
+*  	grown by one tile so the edges of the text are not cut off, and each group of touching marked tiles becomes
+*  	a block (its bounding box). overlapping boxes are merged, so every pixel is in at most one block and every
+*  	connected component is inside exactly one block
+*
+*  	before binarization the tiles come from the darkest pixel of each COARSE_SCALE x COARSE_SCALE cell of the
+*  	page, so a stroke a pixel wide still marks its tile. the threshold is the average gray value of the whole
+*  	page (as convertImageToBinary() uses), so every pixel has to be converted to gray and read once before any
+*  	of them can be thresholded: the page is converted once (a gray image is read where it is), and a single pass
+*  	over its bytes sums the gray values and finds the darkest pixel of each cell. only the blocks are then
+*  	thresholded, from the same bytes. before labeling the tiles come from popcounts of the packed binary image,
+*  	64x64 pixels per tile
+*
+*  	the gray conversion and the pass over the bytes cost the same for any page, the thresholding and labeling
+*  	saved are roughly the fraction of the page that is blank
+*
+******************************************************************************************************************/
+
+public final class TextBlocks{
+
+	public static final int COARSE_SCALE = 4; //binarize() reads the cells four bytes at a time
+	private static final int coarse_tile = 8; //in cells, COARSE_SCALE*8 = 32 pixels of the page
+	private static final int bit_tile = 64; //one long of a packed row
+
+	private TextBlocks(){}
+
+	/*****************************************************************
+	 *
+	 * function: binarize()
+	 * purpose: the same as PrintOcr.convertImageToBinary() except that only the text blocks found from the
+	 * 	darkest pixel of each cell are thresholded, everything outside them is left white
+	 * input:
+	 * 	img: the image, only read
+	 * 	blocks: filled with the text blocks found
+	 * output:
+	 * 	the binary image, bit i*width+j is the pixel in row i, column j
+	 *
+	 *****************************************************************/
+	public static BitSet binarize(BufferedImage img, List<Rectangle> blocks){
+		int width = img.getWidth();
+		int height = img.getHeight();
+		//the page is converted to gray once, a gray image is read where it is
+		byte[] data = null;
+		int offset = 0;
+		int stride = width;
+		int[] srgb = null;
+		WritableRaster raster = img.getRaster();
+		if(img.getType()==BufferedImage.TYPE_BYTE_GRAY&&raster.getDataBuffer() instanceof DataBufferByte
+				&&raster.getSampleModel() instanceof ComponentSampleModel&&((ComponentSampleModel)raster.getSampleModel()).getPixelStride()==1){
+			ComponentSampleModel sm = (ComponentSampleModel)raster.getSampleModel();
+			DataBufferByte db = (DataBufferByte)raster.getDataBuffer();
+			data = db.getData();
+			offset = db.getOffset() + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+			stride = sm.getScanlineStride();
+			srgb = RasterBinarizer.srgb(img.getColorModel());
+		}else{
+			BufferedImage img_gr = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+			Graphics g = img_gr.getGraphics();
+			g.drawImage(img, 0, 0, null);
+			g.dispose();
+			data = ((DataBufferByte)img_gr.getRaster().getDataBuffer()).getData();
+			srgb = RasterBinarizer.srgb(img_gr.getColorModel());
+		}
+		//when the gray values go up with the bytes the darkest byte of a cell is its darkest pixel, otherwise
+		//each byte is looked up
+		boolean ordered = RasterBinarizer.cut(srgb, 0)>=0;
+
+		//one pass over the bytes for the sum of the gray values (the threshold is their average, as
+		//convertImageToBinary() uses) and the darkest pixel of each cell. the cells are by area, not a shrunk
+		//copy, so a stroke a pixel wide still marks its cell. a table lookup and an add per pixel, the cells a
+		//COARSE_SCALE wide run at a time
+		int sw = (width+COARSE_SCALE-1)/COARSE_SCALE;
+		int sh = (height+COARSE_SCALE-1)/COARSE_SCALE;
+		int whole = width/COARSE_SCALE;
+		int[] order = ordered ? null : srgb; //what the darkest pixel is judged by, the bytes themselves if ordered
+		int[][] darkest = new int[sh][sw];
+		long sum = 0;
+		for(int ci=0; ci<sh; ci++){
+			int[] cells = darkest[ci];
+			Arrays.fill(cells, 255);
+			int rows = Math.min(COARSE_SCALE, height-ci*COARSE_SCALE);
+			for(int r=0; r<rows; r++){
+				int p = offset + (ci*COARSE_SCALE+r)*stride;
+				for(int c=0; c<whole; c++, p+=COARSE_SCALE){
+					int b0 = data[p]&0xff, b1 = data[p+1]&0xff, b2 = data[p+2]&0xff, b3 = data[p+3]&0xff;
+					sum += srgb[b0] + srgb[b1] + srgb[b2] + srgb[b3];
+					int m = order==null ? Math.min(Math.min(b0, b1), Math.min(b2, b3))
+						: Math.min(Math.min(order[b0], order[b1]), Math.min(order[b2], order[b3]));
+					if(m<cells[c]){
+						cells[c] = m;
+					}
+				}
+				for(int j=whole*COARSE_SCALE; j<width; j++, p++){ //the partial cell at the end of the row
+					int b = data[p]&0xff;
+					sum += srgb[b];
+					int v = order==null ? b : order[b];
+					if(v<cells[whole]){
+						cells[whole] = v;
+					}
+				}
+			}
+		}
+		int threshold = (int)(sum/((long)width*height));
+		int cut = RasterBinarizer.cut(srgb, threshold);
+
+		int tw = (sw+coarse_tile-1)/coarse_tile;
+		int th = (sh+coarse_tile-1)/coarse_tile;
+		boolean[][] ink = new boolean[th][tw];
+		for(int i=0; i<sh; i++){
+			for(int j=0; j<sw; j++){
+				if(ordered ? darkest[i][j]<cut : darkest[i][j]<threshold){
+					ink[i/coarse_tile][j/coarse_tile] = true;
+				}
+			}
+		}
+		blocks.clear();
+		blocks.addAll(find(ink, coarse_tile*COARSE_SCALE, width, height));
+
+		//only the blocks are thresholded
+		long[] words = new long[(int)(((long)width*height+63)>>>6)];
+		PixelKernels kernels = PixelKernels.get();
+		for(Rectangle b: blocks){
+			for(int i=0; i<b.height; i++){
+				int p = offset + (b.y+i)*stride + b.x;
+				long bit = (long)(b.y+i)*width + b.x;
+				if(cut>=0){
+					kernels.threshold(data, p, b.width, cut, words, bit);
+					continue;
+				}
+				for(int j=0; j<b.width; j++){
+					if(srgb[data[p+j]&0xff]<threshold){ //lower numbers are black points
+						words[(int)((bit+j)>>>6)] |= 1L<<((bit+j)&63);
+					}
+				}
+			}
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: fromBits()
+	 * purpose: the text blocks of a binary image, from the popcounts of 64x64 pixel tiles
+	 *
+	 *****************************************************************/
+	public static List<Rectangle> fromBits(PageBits page){
+		int width = page.getWidth();
+		int height = page.getHeight();
+		long[][] rows = PackedRows.pack(page);
+		int words = (width+63)>>>6;
+		int th = (height+bit_tile-1)/bit_tile;
+		boolean[][] ink = new boolean[th][words];
+		for(int i=0; i<height; i++){
+			for(int k=0; k<words; k++){
+				if(rows[i][k]!=0){
+					ink[i/bit_tile][k] = true;
+				}
+			}
+		}
+		return find(ink, bit_tile, width, height);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: label()
+	 * purpose: labels the components inside each block (see RunLabeler). the blocks must not overlap
+	 *
+	 *****************************************************************/
+	public static ArrayList<Region> label(PageBits page, List<Rectangle> blocks){
+		ArrayList<Region> components = new ArrayList<Region>();
+		for(Rectangle b: blocks){
+			components.addAll(RunLabeler.label(page, b));
+		}
+		return components;
+	}
+
+	//the blocks of marked tiles (grown by one tile) in pixels, clipped to the page, with overlapping blocks merged
+	static List<Rectangle> find(boolean[][] ink, int tile, int width, int height){
+		int th = ink.length;
+		int tw = th==0 ? 0 : ink[0].length;
+		boolean[][] grown = new boolean[th][tw];
+		for(int i=0; i<th; i++){
+			for(int j=0; j<tw; j++){
+				if(ink[i][j]){
+					for(int di=Math.max(0, i-1); di<=Math.min(th-1, i+1); di++){
+						for(int dj=Math.max(0, j-1); dj<=Math.min(tw-1, j+1); dj++){
+							grown[di][dj] = true;
+						}
+					}
+				}
+			}
+		}
+
+		//flood fill the groups of touching tiles
+		ArrayList<Rectangle> blocks = new ArrayList<Rectangle>();
+		boolean[][] seen = new boolean[th][tw];
+		ArrayDeque<int[]> stack = new ArrayDeque<int[]>();
+		for(int i=0; i<th; i++){
+			for(int j=0; j<tw; j++){
+				if(!grown[i][j]||seen[i][j]){
+					continue;
+				}
+				int imin = i, imax = i, jmin = j, jmax = j;
+				seen[i][j] = true;
+				stack.push(new int[]{i, j});
+				while(!stack.isEmpty()){
+					int[] t = stack.pop();
+					imin = Math.min(imin, t[0]);
+					imax = Math.max(imax, t[0]);
+					jmin = Math.min(jmin, t[1]);
+					jmax = Math.max(jmax, t[1]);
+					for(int di=Math.max(0, t[0]-1); di<=Math.min(th-1, t[0]+1); di++){
+						for(int dj=Math.max(0, t[1]-1); dj<=Math.min(tw-1, t[1]+1); dj++){
+							if(grown[di][dj]&&!seen[di][dj]){
+								seen[di][dj] = true;
+								stack.push(new int[]{di, dj});
+							}
+						}
+					}
+				}
+				Rectangle r = new Rectangle(jmin*tile, imin*tile, (jmax+1)*tile-jmin*tile, (imax+1)*tile-imin*tile);
+				blocks.add(r.intersection(new Rectangle(0, 0, width, height)));
+			}
+		}
+		return merge(blocks);
+	}
+
+	//replaces overlapping blocks by their union until none overlap
+	private static List<Rectangle> merge(ArrayList<Rectangle> blocks){
+		boolean merged = true;
+		while(merged){
+			merged = false;
+			for(int a=0; a<blocks.size()&&!merged; a++){
+				for(int b=a+1; b<blocks.size(); b++){
+					if(blocks.get(a).intersects(blocks.get(b))){
+						blocks.set(a, blocks.get(a).union(blocks.get(b)));
+						blocks.remove(b);
+						merged = true;
+						break;
+					}
+				}
+			}
+		}
+		Collections.sort(blocks, new Comparator<Rectangle>(){
+			public int compare(Rectangle a, Rectangle b){
+				return a.y!=b.y ? a.y-b.y : a.x-b.x;
+			}
+		});
+		return blocks;
+	}
+
+	//fraction of the page covered by the blocks
+	public static double coverage(List<Rectangle> blocks, int width, int height){
+		long area = 0;
+		for(Rectangle b: blocks){
+			area += (long)b.width*b.height;
+		}
+		return (double)area/((long)width*height);
+	}
+}
@@ -0,0 +1,233 @@
+package printocr;
+
+import java.util.*;
+import weka.core.*;
+
+/*****************************************************************************************************************
+*
+*  TrainingMatrix
+*
+*  Purpose: a set of labeled attribute vectors, stored by column: one float[] per attribute holding that attribute
+*  	of every vector, and an int[] with the class of each one. a vector costs 4 bytes an attribute plus 4 for its
+*  	class, about a tenth of a list of LetterVectors of boxed Doubles. used to collect the training vectors in
+*  	PrintOcr.train_font() and to build the TemplateClassifier from the arff data
+*
+*  	the batch operations (class means, attribute spreads, the distances from a vector to every row) run down the
+*  	columns, so the inner loops read one array front to back. values are kept as floats, the 7 significant digits
+*  	are more than the pixel ratios of a glyph carry
+*
+*  	the columns grow by doubling as vectors are added. not safe to add to from several threads
+*
+******************************************************************************************************************/
+
+public final class TrainingMatrix{
+
+	private final String[] classes;
+	private final HashMap<String, Integer> class_index = new HashMap<String, Integer>();
+	private float[][] columns; //[attribute][row], only the first rows are used
+	private int[] labels; //the class of each row
+	private int rows = 0;
+
+	/*****************************************************************
+	 *
+	 * function: TrainingMatrix()
+	 * input:
+	 * 	attributes: the length of every vector
+	 * 	classes: the class names, by class index (alpha_tnr for the training font)
+	 *
+	 *****************************************************************/
+	public TrainingMatrix(int attributes, String[] classes){
+		this.classes = classes.clone();
+		for(int c=0; c<classes.length; c++){
+			class_index.put(classes[c], c);
+		}
+		columns = new float[attributes][16];
+		labels = new int[16];
+	}
+
+	/*****************************************************************
+	 *
+	 * function: fromInstances()
+	 * purpose: copies weka data into a matrix. the class attribute has to be the last one
+	 *
+	 *****************************************************************/
+	public static TrainingMatrix fromInstances(Instances data){
+		Attribute class_att = data.classAttribute();
+		String[] names = new String[class_att.numValues()];
+		for(int c=0; c<names.length; c++){
+			names[c] = class_att.value(c);
+		}
+		int attrs = data.numAttributes()-1;
+		TrainingMatrix m = new TrainingMatrix(attrs, names);
+		m.ensureCapacity(data.numInstances());
+		for(int i=0; i<data.numInstances(); i++){
+			Instance inst = data.instance(i);
+			for(int a=0; a<attrs; a++){
+				m.columns[a][i] = (float)inst.value(a);
+			}
+			m.labels[i] = (int)inst.classValue();
+		}
+		m.rows = data.numInstances();
+		return m;
+	}
+
+	public int rows(){ return rows; }
+	public int attributes(){ return columns.length; }
+	public int numClasses(){ return classes.length; }
+	public int classOf(int row){ return labels[row]; }
+	public String label(int row){ return classes[labels[row]]; }
+	public double value(int row, int attribute){ return columns[attribute][row]; }
+
+	//the bytes held by the columns and labels, used or not
+	public long bytes(){ return 4L*labels.length*(columns.length+1); }
+
+	/*****************************************************************
+	 *
+	 * function: add()
+	 * purpose: adds a vector as the last row. attributes the vector doesn't have are stored as -1 (as
+	 * 	LetterVector.valueAt() gives them)
+	 * input:
+	 * 	v: the vector
+	 * 	c: its class name, one of the matrix's classes
+	 *
+	 *****************************************************************/
+	public void add(LetterVector v, String c){
+		Integer cls = class_index.get(c);
+		if(cls==null){
+			throw new IllegalArgumentException("Error: "+c+" is not one of the classes of the training matrix");
+		}
+		ensureCapacity(rows+1);
+		for(int a=0; a<columns.length; a++){
+			columns[a][rows] = (float)v.valueAt(a);
+		}
+		labels[rows++] = cls;
+	}
+
+	//a copy of a row, with no weights
+	public LetterVector row(int row){
+		double[] values = new double[columns.length];
+		for(int a=0; a<columns.length; a++){
+			values[a] = columns[a][row];
+		}
+		return new LetterVector(values, null, label(row));
+	}
+
+	private void ensureCapacity(int n){
+		if(n<=labels.length){
+			return;
+		}
+		int capacity = Math.max(n, 2*labels.length);
+		for(int a=0; a<columns.length; a++){
+			columns[a] = Arrays.copyOf(columns[a], capacity);
+		}
+		labels = Arrays.copyOf(labels, capacity);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: classMeans()
+	 * output:
+	 * 	the average vector of each class, [class][attribute], null for a class with no rows
+	 *
+	 *****************************************************************/
+	public double[][] classMeans(){
+		int[] counts = new int[classes.length];
+		for(int r=0; r<rows; r++){
+			counts[labels[r]]++;
+		}
+		double[][] sums = new double[classes.length][columns.length];
+		for(int a=0; a<columns.length; a++){
+			float[] col = columns[a];
+			for(int r=0; r<rows; r++){
+				sums[labels[r]][a] += col[r];
+			}
+		}
+		double[][] means = new double[classes.length][];
+		for(int c=0; c<classes.length; c++){
+			if(counts[c]==0){
+				continue;
+			}
+			means[c] = sums[c];
+			for(int a=0; a<columns.length; a++){
+				means[c][a] /= counts[c];
+			}
+		}
+		return means;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: deviations()
+	 * output:
+	 * 	the standard deviation of each attribute over every row
+	 *
+	 *****************************************************************/
+	public double[] deviations(){
+		double[] sd = new double[columns.length];
+		int n = Math.max(1, rows);
+		for(int a=0; a<columns.length; a++){
+			float[] col = columns[a];
+			double sum = 0;
+			double sq = 0;
+			for(int r=0; r<rows; r++){
+				sum += col[r];
+				sq += (double)col[r]*col[r];
+			}
+			double m = sum/n;
+			sd[a] = Math.sqrt(Math.max(0, sq/n - m*m));
+		}
+		return sd;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: distances()
+	 * purpose: the weighted L1 distance (as LetterVector.computeDistanceTo()) from the vector to every row,
+	 * 	computed an attribute at a time
+	 * input:
+	 * 	v: the vector, its weights are used
+	 * 	scale: a factor for each attribute (e.g. 1/its deviation), null for none
+	 * output:
+	 * 	the distance to each row
+	 *
+	 *****************************************************************/
+	public double[] distances(LetterVector v, double[] scale){
+		double[] d = new double[rows];
+		for(int a=0; a<columns.length; a++){
+			float[] col = columns[a];
+			double x = v.valueAt(a);
+			double w = v.weightAt(a)*(scale==null ? 1 : scale[a]);
+			for(int r=0; r<rows; r++){
+				d[r] += w*Math.abs(x-col[r]);
+			}
+		}
+		return d;
+	}
+
+	//the row nearest to the vector by distances(), -1 if there are none
+	public int nearest(LetterVector v, double[] scale){
+		double[] d = distances(v, scale);
+		int best = -1;
+		for(int r=0; r<rows; r++){
+			if(best<0||d[r]<d[best]){
+				best = r;
+			}
+		}
+		return best;
+	}
+
+	/*****************************************************************
+	 *
+	 * function: appendArff()
+	 * purpose: writes each row as an arff data line, the values then the quoted class name
+	 *
+	 *****************************************************************/
+	public void appendArff(StringBuilder out){
+		for(int r=0; r<rows; r++){
+			for(int a=0; a<columns.length; a++){
+				out.append(columns[a][r]).append(", ");
+			}
+			out.append('"').append(classes[labels[r]]).append("\"\n");
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package printocr;
+
+import jdk.incubator.vector.*;
+
+/*****************************************************************************************************************
+*
+*  VectorKernels
+*
+*  Purpose: the PixelKernels on the widest vectors the cpu has (jdk.incubator.vector), e.g. 16 ints or 64 bytes
+*  	at a time with AVX-512. the lanes left over at the end of a row go through the scalar loop. only loaded by
+*  	PixelKernels.select() when the module is there, never reference this class directly
+*
+*  	threshold() compares 64 (or as many as there are lanes) gray bytes against the cut at once and ORs the
+*  	comparison mask into the packed image as it is (VectorMask.toLong()), no bit is set one at a time
+*
+******************************************************************************************************************/
+
+final class VectorKernels extends PixelKernels{
+
+	private static final VectorSpecies<Integer> ints = IntVector.SPECIES_PREFERRED;
+	//a mask has to fit in a long
+	private static final VectorSpecies<Byte> bytes = ByteVector.SPECIES_PREFERRED.length()<=64 ? ByteVector.SPECIES_PREFERRED : ByteVector.SPECIES_512;
+	private static final VectorShuffle<Integer> reverse = VectorShuffle.iota(ints, ints.length()-1, -1, false);
+
+	private final PixelKernels scalar = new PixelKernels.Scalar();
+
+	public String name(){ return "vector ("+ints.vectorBitSize()+" bit)"; }
+
+	public int sum(int[] row){
+		int bound = ints.loopBound(row.length);
+		IntVector acc = IntVector.zero(ints);
+		int i = 0;
+		for(; i<bound; i+=ints.length()){
+			acc = acc.add(IntVector.fromArray(ints, row, i));
+		}
+		int sum = acc.reduceLanes(VectorOperators.ADD);
+		for(; i<row.length; i++){
+			sum += row[i];
+		}
+		return sum;
+	}
+
+	public void addTo(int[] row, int[] sums){
+		int bound = ints.loopBound(row.length);
+		int i = 0;
+		for(; i<bound; i+=ints.length()){
+			IntVector.fromArray(ints, sums, i).add(IntVector.fromArray(ints, row, i)).intoArray(sums, i);
+		}
+		for(; i<row.length; i++){
+			sums[i] += row[i];
+		}
+	}
+
+	public int mirrored(int[] row){
+		int w = row.length;
+		int lanes = ints.length();
+		int count = 0;
+		int j = 0;
+		//row[j..j+lanes) against row[w-j-lanes..w-j) turned around
+		for(; j+lanes<=w/2; j+=lanes){
+			IntVector left = IntVector.fromArray(ints, row, j);
+			IntVector right = IntVector.fromArray(ints, row, w-j-lanes).rearrange(reverse);
+			count += left.compare(VectorOperators.EQ, right).trueCount();
+		}
+		for(; j<w/2; j++){
+			if(row[j]==row[w-j-1]){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int matches(int[] a, int[] b){
+		int bound = ints.loopBound(a.length);
+		int count = 0;
+		int j = 0;
+		for(; j<bound; j+=ints.length()){
+			count += IntVector.fromArray(ints, a, j).compare(VectorOperators.EQ, IntVector.fromArray(ints, b, j)).trueCount();
+		}
+		for(; j<a.length; j++){
+			if(a[j]==b[j]){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void threshold(byte[] data, int offset, int length, int cut, long[] words, long bit){
+		if(cut<=0){
+			return;
+		}
+		if(cut>255){
+			scalar.threshold(data, offset, length, cut, words, bit); //every pixel is black, a byte can't hold the cut
+			return;
+		}
+		int bound = bytes.loopBound(length);
+		byte limit = (byte)cut;
+		int j = 0;
+		for(; j<bound; j+=bytes.length()){
+			long m = ByteVector.fromArray(bytes, data, offset+j).compare(VectorOperators.UNSIGNED_LT, limit).toLong();
+			if(m!=0){
+				orBits(words, bit+j, m);
+			}
+		}
+		scalar.threshold(data, offset+j, length-j, cut, words, bit+j);
+	}
+}
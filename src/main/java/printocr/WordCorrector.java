@@ -0,0 +1,378 @@
+package printocr;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/*****************************************************************************************************************
+*
+*  WordCorrector
+*
+*  Purpose: dictionary post-correction of the recognized words. used by OcrEngine when the config names a word
+*  	list (dict= on the command line), after each line is classified and before it is handed over
+*
+*  	the word list is one word per line, optionally followed by its count (e.g. "the 23135851162"), words without a
+*  	count are counted once. it is indexed the way SymSpell does it: every string made by deleting up to
+*  	MAX_DISTANCE letters from the first letters of a word points back to the word. the words within MAX_DISTANCE
+*  	edits of a misread word are then found by looking up its own deletions, a few dozen hash lookups however big
+*  	the list is, and checking the distance of only the words they point to
+*
+*  	only the words with a glyph whose confidence is below the threshold are looked up, and only those glyphs may
+*  	change: each candidate word is matched against the glyphs of the word, the confident glyphs having to read as
+*  	they are and the others as any class (the two letter classes included) the classifier gave a probability to.
+*  	a candidate scores the log of the probabilities of the classes it takes plus the log of its share of the
+*  	counts, and replaces the word if it beats the word as read (which scores as a word seen a tenth of a time if
+*  	it isn't in the list). matching is case insensitive, the glyphs keep the case of the classes they take
+*
+*  	immutable once loaded, safe to share between threads
+*
+******************************************************************************************************************/
+
+public final class WordCorrector{
+
+	public static final int MAX_DISTANCE = 2; //edits between the word read and the words it can be corrected to
+	private static final int prefix_length = 7; //the deletions of only this many first letters are indexed
+	private static final double unknown_count = 0.1; //the count of a word read that isn't in the list
+	private static final double min_probability = 1e-4; //the least a class is given, the classifiers can give 0
+
+	private final String[] words;
+	private final double[] log_prior; //log of each word's share of the counts
+	private final double unknown_prior;
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private final HashMap<String, int[]> deletes = new HashMap<String, int[]>(); //deletion -> the words it was made from
+	private final String[] labels;
+	private final String[] lower_labels;
+
+	/*****************************************************************
+	 *
+	 * function: WordCorrector()
+	 * input:
+	 * 	counts: the words (in lower case) and their counts
+	 * 	labels: the classifier's classes, by class index
+	 *
+	 *****************************************************************/
+	public WordCorrector(Map<String, Long> counts, String[] labels){
+		this.labels = labels.clone();
+		this.lower_labels = new String[labels.length];
+		for(int k=0; k<labels.length; k++){
+			lower_labels[k] = labels[k].toLowerCase(Locale.ROOT);
+		}
+		words = counts.keySet().toArray(new String[0]);
+		log_prior = new double[words.length];
+		double total = 0;
+		for(Long c: counts.values()){
+			total += c;
+		}
+		unknown_prior = Math.log(unknown_count/Math.max(total, 1));
+		HashSet<String> dels = new HashSet<String>();
+		for(int id=0; id<words.length; id++){
+			ids.put(words[id], id);
+			log_prior[id] = Math.log(counts.get(words[id])/total);
+			dels.clear();
+			deletions(prefix(words[id]), 0, dels);
+			for(String d: dels){
+				//grown by doubling while building, the number of words is kept in the first element
+				int[] list = deletes.get(d);
+				if(list==null){
+					list = new int[3];
+					deletes.put(d, list);
+				}else if(list[0]+1==list.length){
+					list = Arrays.copyOf(list, 2*list.length);
+					deletes.put(d, list);
+				}
+				list[++list[0]] = id;
+			}
+		}
+		for(Map.Entry<String, int[]> e: deletes.entrySet()){
+			int[] list = e.getValue();
+			e.setValue(Arrays.copyOfRange(list, 1, list[0]+1));
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: load()
+	 * purpose: reads a word list. blank lines and lines starting with # are skipped, a word listed twice has
+	 * 	its counts added
+	 * input:
+	 * 	file: the word list, UTF-8
+	 * 	labels: the classifier's classes, by class index
+	 *
+	 *****************************************************************/
+	public static WordCorrector load(Path file, String[] labels) throws IOException{
+		LinkedHashMap<String, Long> counts = new LinkedHashMap<String, Long>();
+		BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+		try{
+			String line;
+			int n = 0;
+			while((line = in.readLine())!=null){
+				n++;
+				line = line.trim();
+				if(line.isEmpty()||line.startsWith("#")){
+					continue;
+				}
+				String[] parts = line.split("\\s+");
+				long count = 1;
+				if(parts.length>1){
+					try{
+						count = Long.parseLong(parts[1]);
+					}catch(NumberFormatException e){
+						throw new IOException("Error: line "+n+" of "+file+" is not a word and a count: "+line);
+					}
+				}
+				String word = parts[0].toLowerCase(Locale.ROOT);
+				Long old = counts.get(word);
+				counts.put(word, count+(old==null ? 0 : old));
+			}
+		}finally{
+			in.close();
+		}
+		if(counts.isEmpty()){
+			throw new IOException("Error: the word list "+file+" is empty");
+		}
+		return new WordCorrector(counts, labels);
+	}
+
+	public int size(){ return words.length; }
+
+	public boolean contains(String word){ return ids.containsKey(word.toLowerCase(Locale.ROOT)); }
+
+	/*****************************************************************
+	 *
+	 * function: candidates()
+	 * output:
+	 * 	the words of the list within MAX_DISTANCE edits (insertions, deletions, substitutions and swaps of two
+	 * 	neighbouring letters) of the given lower case word, the word itself included if it is in the list
+	 *
+	 *****************************************************************/
+	public List<String> candidates(String word){
+		ArrayList<String> out = new ArrayList<String>();
+		for(int id: candidateIds(word)){
+			out.add(words[id]);
+		}
+		return out;
+	}
+
+	private int[] candidateIds(String word){
+		HashSet<String> dels = new HashSet<String>();
+		deletions(prefix(word), 0, dels);
+		HashSet<Integer> seen = new HashSet<Integer>();
+		int[] out = new int[8];
+		int n = 0;
+		for(String d: dels){
+			int[] list = deletes.get(d);
+			if(list==null){
+				continue;
+			}
+			for(int id: list){
+				if(Math.abs(words[id].length()-word.length())>MAX_DISTANCE||!seen.add(id)||distance(word, words[id])>MAX_DISTANCE){
+					continue;
+				}
+				if(n==out.length){
+					out = Arrays.copyOf(out, 2*n);
+				}
+				out[n++] = id;
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	/*****************************************************************
+	 *
+	 * function: correct()
+	 * purpose: corrects the words of a line in place
+	 * input:
+	 * 	letters: the class read for each glyph
+	 * 	confidences: the probability of each glyph's class, updated for the glyphs that change
+	 * 	wordStarts: the glyphs that start a word
+	 * 	dists: the classifier's distribution over the classes for each glyph
+	 * 	below: the glyphs with a confidence below this may be corrected
+	 * output:
+	 * 	{words looked up, words changed}
+	 *
+	 *****************************************************************/
+	public int[] correct(String[] letters, double[] confidences, boolean[] wordStarts, double[][] dists, double below){
+		int checked = 0;
+		int changed = 0;
+		int[] chosen = new int[letters.length];
+		int[] best_chosen = new int[letters.length];
+		int e = 0;
+		for(int start=0; start<letters.length; start=e){
+			e = start+1;
+			while(e<letters.length&&!wordStarts[e]){
+				e++;
+			}
+			//punctuation before or after the word stays as it is
+			int s = start;
+			int t = e;
+			while(s<t&&!isWordGlyph(letters[s])){
+				s++;
+			}
+			while(t>s&&!isWordGlyph(letters[t-1])){
+				t--;
+			}
+			boolean unsure = false;
+			StringBuilder sb = new StringBuilder();
+			double read = 0;
+			for(int i=s; i<t; i++){
+				unsure |= confidences[i]<below;
+				sb.append(letters[i]);
+				read += Math.log(Math.max(confidences[i], min_probability));
+			}
+			if(!unsure||sb.length()<2){
+				continue;
+			}
+			checked++;
+			String word = sb.toString().toLowerCase(Locale.ROOT);
+			Integer known = ids.get(word);
+			double best = known==null ? read+unknown_prior : Double.NEGATIVE_INFINITY; //a known word is one of the candidates
+			boolean found = false;
+			for(int id: candidateIds(word)){
+				double score = align(words[id], letters, confidences, dists, s, t, below, chosen);
+				if(score==Double.NEGATIVE_INFINITY){
+					continue;
+				}
+				score += log_prior[id];
+				if(score>best){
+					best = score;
+					found = true;
+					System.arraycopy(chosen, s, best_chosen, s, t-s);
+				}
+			}
+			if(!found){
+				continue;
+			}
+			boolean differs = false;
+			for(int i=s; i<t; i++){
+				int k = best_chosen[i];
+				if(k>=0&&!labels[k].equals(letters[i])){
+					letters[i] = labels[k];
+					confidences[i] = dists[i][k];
+					differs = true;
+				}
+			}
+			if(differs){
+				changed++;
+			}
+		}
+		return new int[]{checked, changed};
+	}
+
+	/*****************************************************************
+	 *
+	 * function: align()
+	 * purpose: finds the most likely way of reading the glyphs s..t as the word, one class per glyph. the
+	 * 	confident glyphs have to keep their class
+	 * output:
+	 * 	the log of the probabilities of the classes taken, -infinity if the glyphs can't be read as the word.
+	 * 	chosen[s..t) gets the class of each glyph, -1 for a glyph that keeps its class
+	 *
+	 *****************************************************************/
+	private double align(String word, String[] letters, double[] confidences, double[][] dists, int s, int t, double below, int[] chosen){
+		int m = t-s;
+		int len = word.length();
+		double[][] score = new double[m+1][len+1];
+		int[][] choice = new int[m+1][len+1];
+		for(double[] row: score){
+			Arrays.fill(row, Double.NEGATIVE_INFINITY);
+		}
+		score[0][0] = 0;
+		for(int i=0; i<m; i++){
+			int g = s+i;
+			for(int p=0; p<len; p++){
+				double base = score[i][p];
+				if(base==Double.NEGATIVE_INFINITY){
+					continue;
+				}
+				if(confidences[g]>=below){
+					String own = letters[g].toLowerCase(Locale.ROOT);
+					if(word.startsWith(own, p)){
+						relax(score, choice, i+1, p+own.length(), base+Math.log(Math.max(confidences[g], min_probability)), -1);
+					}
+					continue;
+				}
+				for(int k=0; k<lower_labels.length; k++){
+					if(word.startsWith(lower_labels[k], p)){
+						relax(score, choice, i+1, p+lower_labels[k].length(), base+Math.log(Math.max(dists[g][k], min_probability)), k);
+					}
+				}
+			}
+		}
+		if(score[m][len]==Double.NEGATIVE_INFINITY){
+			return Double.NEGATIVE_INFINITY;
+		}
+		int p = len;
+		for(int i=m; i>0; i--){
+			int k = choice[i][p];
+			chosen[s+i-1] = k;
+			p -= k<0 ? letters[s+i-1].length() : labels[k].length();
+		}
+		return score[m][len];
+	}
+
+	private static void relax(double[][] score, int[][] choice, int i, int p, double value, int k){
+		if(value>score[i][p]){
+			score[i][p] = value;
+			choice[i][p] = k;
+		}
+	}
+
+	//a glyph that can be part of a word: a letter or a digit
+	private static boolean isWordGlyph(String letter){
+		for(int i=0; i<letter.length(); i++){
+			if(Character.isLetterOrDigit(letter.charAt(i))){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String prefix(String word){
+		return word.length()>prefix_length ? word.substring(0, prefix_length) : word;
+	}
+
+	//adds the word and every string made by deleting up to MAX_DISTANCE-distance more of its letters
+	private static void deletions(String word, int distance, HashSet<String> out){
+		out.add(word);
+		if(distance==MAX_DISTANCE){
+			return;
+		}
+		for(int i=0; i<word.length(); i++){
+			String d = word.substring(0, i)+word.substring(i+1);
+			if(!out.contains(d)){ //a deletion is always reached at the same distance, its own deletions are there already
+				deletions(d, distance+1, out);
+			}
+		}
+	}
+
+	/*****************************************************************
+	 *
+	 * function: distance()
+	 * output:
+	 * 	the optimal string alignment distance between a and b: the fewest insertions, deletions, substitutions and
+	 * 	swaps of two neighbouring letters that turn a into b
+	 *
+	 *****************************************************************/
+	static int distance(String a, String b){
+		int n = a.length();
+		int m = b.length();
+		int[][] d = new int[n+1][m+1];
+		for(int i=0; i<=n; i++){
+			d[i][0] = i;
+		}
+		for(int j=0; j<=m; j++){
+			d[0][j] = j;
+		}
+		for(int i=1; i<=n; i++){
+			for(int j=1; j<=m; j++){
+				int cost = a.charAt(i-1)==b.charAt(j-1) ? 0 : 1;
+				d[i][j] = Math.min(Math.min(d[i-1][j]+1, d[i][j-1]+1), d[i-1][j-1]+cost);
+				if(i>1&&j>1&&a.charAt(i-1)==b.charAt(j-2)&&a.charAt(i-2)==b.charAt(j-1)){
+					d[i][j] = Math.min(d[i][j], d[i-2][j-2]+1);
+				}
+			}
+		}
+		return d[n][m];
+	}
+}
@@ -0,0 +1,71 @@
+package printocr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/*****************************************************************************************************************
+*
+*  NoiseFilterTest
+*
+*  Purpose: NoiseFilter.filterComponents() drops specks and keeps letters and periods, also on a scan where the
+*  	specks outnumber the letters
+*
+******************************************************************************************************************/
+
+public class NoiseFilterTest{
+
+	private static Region box(int x, int y, int w, int h){
+		Region r = new Region();
+		r.updateX(x);
+		r.updateX(x+w-1);
+		r.updateY(y);
+		r.updateY(y+h-1);
+		return r;
+	}
+
+	//30 letters 14x20, 5 periods 3x3 and the given number of specks of 1x1 and 2x2
+	private static ArrayList<Region> page(int specks){
+		ArrayList<Region> components = new ArrayList<Region>();
+		for(int i=0; i<30; i++){
+			components.add(box(20*i, 100, 14, 20));
+		}
+		for(int i=0; i<5; i++){
+			components.add(box(20*i, 200, 3, 3));
+		}
+		Random rnd = new Random(9);
+		for(int i=0; i<specks; i++){
+			int size = 1+rnd.nextInt(2);
+			components.add(box(rnd.nextInt(1000), 300+rnd.nextInt(500), size, size));
+		}
+		return components;
+	}
+
+	@Test
+	public void cleanPage(){
+		ArrayList<Region> components = page(10);
+		assertEquals(10, NoiseFilter.filterComponents(components, 0.015));
+		assertEquals(35, components.size());
+	}
+
+	@Test
+	public void mostlySpecks(){
+		//the median component is a speck, the letters still set the size
+		ArrayList<Region> components = page(200);
+		assertEquals(200, NoiseFilter.filterComponents(components, 0.015));
+		assertEquals(35, components.size());
+	}
+
+	@Test
+	public void noLetters(){
+		//nothing as high as a letter, the median of everything is used
+		ArrayList<Region> components = new ArrayList<Region>();
+		for(int i=0; i<10; i++){
+			components.add(box(10*i, 0, 3, 3));
+		}
+		components.add(box(0, 50, 1, 1));
+		assertEquals(1, NoiseFilter.filterComponents(components, 0.2));
+		assertEquals(10, components.size());
+	}
+}
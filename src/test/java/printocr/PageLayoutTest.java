@@ -0,0 +1,138 @@
+package printocr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.Executable;
+
+/*****************************************************************************************************************
+*
+*  PageLayoutTest
+*
+*  Purpose: PageLayout.cut() finds side by side columns whose lines don't line up, and PageLayout.split() puts
+*  	each component in the block that holds its top left corner, or in the nearest block if none does, and never
+*  	drops one
+*
+******************************************************************************************************************/
+
+public class PageLayoutTest{
+
+	private static Region box(int xmin, int ymin, int xmax, int ymax){
+		Region r = new Region();
+		r.updateX(xmin);
+		r.updateX(xmax);
+		r.updateY(ymin);
+		r.updateY(ymax);
+		return r;
+	}
+
+	//two columns side by side, 0-99 and 200-299
+	private static List<Rectangle> columns(){
+		return Arrays.asList(new Rectangle(0, 0, 100, 500), new Rectangle(200, 0, 100, 500));
+	}
+
+	/*****************************************************************
+	 *
+	 * function: twoColumns()
+	 * purpose: draws two columns of lines of glyphs, the right column's lines half a line lower than the left's,
+	 * 	so every row of the page between the first and last line has ink in it
+	 * input:
+	 * 	bits: the page, width 1000
+	 * 	components: gets the box of every glyph
+	 *
+	 *****************************************************************/
+	private static void twoColumns(BitSet bits, List<Region> components){
+		Random rnd = new Random(3);
+		int[][] columns = {{60, 440, 100}, {520, 940, 118}}; //left, right, first line
+		for(int[] c: columns){
+			for(int y=c[2]; y<c[2]+20*36; y+=36){
+				for(int x=c[0]; x<c[1]-16; ){
+					int w = 8+rnd.nextInt(6);
+					int h = rnd.nextInt(4)==0 ? 28 : 20; //ascenders
+					for(int i=y+20-h; i<y+20; i++){
+						bits.set(i*1000+x, i*1000+x+w);
+					}
+					components.add(box(x, y+20-h, x+w-1, y+19));
+					x += w + (rnd.nextInt(5)==0 ? 10 : 3); //word and letter spaces
+				}
+			}
+		}
+	}
+
+	@Test
+	public void offsetColumns(){
+		int width = 1000;
+		int height = 1000;
+		BitSet bits = new BitSet(width*height);
+		ArrayList<Region> components = new ArrayList<Region>();
+		twoColumns(bits, components);
+		long[][] rows = PackedRows.pack(bits, width, height);
+		List<Rectangle> leaves = PageLayout.cut(rows, width, components).leaves();
+		assertEquals(2, leaves.size(), "leaves "+leaves);
+		assertTrue(leaves.get(0).x+leaves.get(0).width<=440, "left column "+leaves.get(0));
+		assertTrue(leaves.get(1).x>=520, "right column "+leaves.get(1));
+		//every glyph goes to its own column
+		int total = components.size();
+		List<ArrayList<Region>> blocks = PageLayout.split(components, leaves);
+		for(Region r: blocks.get(0)){
+			assertTrue(r.getXmin()<480);
+		}
+		for(Region r: blocks.get(1)){
+			assertTrue(r.getXmin()>=520);
+		}
+		assertEquals(total, blocks.get(0).size()+blocks.get(1).size());
+	}
+
+	@Test
+	public void specksDontSetTheGaps(){
+		ArrayList<Region> components = new ArrayList<Region>();
+		for(int i=0; i<100; i++){
+			components.add(box(i*5, 0, i*5, 1));
+		}
+		assertEquals(0, PageLayout.medianHeight(components));
+		for(int i=0; i<10; i++){
+			components.add(box(i*20, 10, i*20+8, 29));
+		}
+		assertEquals(20, PageLayout.medianHeight(components));
+	}
+
+	@Test
+	public void insideABlock(){
+		ArrayList<Region> components = new ArrayList<Region>();
+		Region left = box(10, 10, 20, 20);
+		Region right = box(299, 499, 299, 499);
+		components.add(left);
+		components.add(right);
+		List<ArrayList<Region>> blocks = PageLayout.split(components, columns());
+		assertTrue(components.isEmpty());
+		assertEquals(Arrays.asList(left), blocks.get(0));
+		assertEquals(Arrays.asList(right), blocks.get(1));
+	}
+
+	@Test
+	public void outsideEveryBlock(){
+		//between the columns, nearer the left one, and below the page to the right
+		ArrayList<Region> components = new ArrayList<Region>();
+		Region gutter = box(120, 30, 125, 40);
+		Region below = box(250, 560, 260, 570);
+		components.add(gutter);
+		components.add(below);
+		List<ArrayList<Region>> blocks = PageLayout.split(components, columns());
+		assertEquals(Arrays.asList(gutter), blocks.get(0));
+		assertEquals(Arrays.asList(below), blocks.get(1));
+	}
+
+	@Test
+	public void noBlocks(){
+		final ArrayList<Region> components = new ArrayList<Region>();
+		assertTrue(PageLayout.split(components, new ArrayList<Rectangle>()).isEmpty());
+		components.add(box(1, 1, 2, 2));
+		assertThrows(IllegalArgumentException.class, new Executable(){
+			public void execute(){
+				PageLayout.split(components, new ArrayList<Rectangle>());
+			}
+		});
+	}
+}
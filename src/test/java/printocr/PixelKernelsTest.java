@@ -0,0 +1,146 @@
+package printocr;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/*****************************************************************************************************************
+*
+*  PixelKernelsTest
+*
+*  Purpose: holds VectorKernels to PixelKernels.Scalar. every kernel is run on random rows of every length from 0
+*  	to 300 (so every tail length of every vector width is covered), with 0/1 values as in the glyphs and with any
+*  	values, and the threshold on every bit offset of two words, unaligned source offsets and the cuts at and
+*  	around the ends of the byte range. needs --add-modules jdk.incubator.vector (set in the pom)
+*
+******************************************************************************************************************/
+
+public class PixelKernelsTest{
+
+	private static final int max_length = 300;
+	private static final int[] cuts = {0, 1, 2, 127, 128, 129, 254, 255, 256, 300};
+
+	private PixelKernels scalar;
+	private PixelKernels vector;
+
+	@BeforeEach
+	public void kernels(){
+		assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "jdk.incubator.vector isn't loaded");
+		scalar = new PixelKernels.Scalar();
+		vector = new VectorKernels();
+	}
+
+	//a row of the given length, 0/1 values for even lengths and 0..999 for odd ones
+	private static int[] row(Random rnd, int n){
+		int range = n%2==0 ? 2 : 1000;
+		int[] x = new int[n];
+		for(int i=0; i<n; i++){
+			x[i] = rnd.nextInt(range);
+		}
+		return x;
+	}
+
+	@Test
+	public void sum(){
+		Random rnd = new Random(1);
+		for(int n=0; n<=max_length; n++){
+			int[] x = row(rnd, n);
+			assertEquals(scalar.sum(x), vector.sum(x), "length "+n);
+		}
+	}
+
+	@Test
+	public void addTo(){
+		Random rnd = new Random(2);
+		for(int n=0; n<=max_length; n++){
+			int[] x = row(rnd, n);
+			int[] y = row(rnd, n);
+			int[] a = y.clone();
+			int[] b = y.clone();
+			scalar.addTo(x, a);
+			vector.addTo(x, b);
+			assertArrayEquals(a, b, "length "+n);
+		}
+	}
+
+	@Test
+	public void mirrored(){
+		Random rnd = new Random(3);
+		for(int n=0; n<=max_length; n++){
+			int[] x = row(rnd, n);
+			assertEquals(scalar.mirrored(x), vector.mirrored(x), "length "+n);
+			//a palindrome, every pair matches
+			int[] p = x.clone();
+			for(int j=0; j<n/2; j++){
+				p[n-j-1] = p[j];
+			}
+			assertEquals(n/2, vector.mirrored(p), "palindrome of length "+n);
+		}
+	}
+
+	@Test
+	public void matches(){
+		Random rnd = new Random(4);
+		for(int n=0; n<=max_length; n++){
+			int[] x = row(rnd, n);
+			int[] y = row(rnd, n);
+			assertEquals(scalar.matches(x, y), vector.matches(x, y), "length "+n);
+			assertEquals(n, vector.matches(x, x.clone()), "same row of length "+n);
+		}
+	}
+
+	@Test
+	public void threshold(){
+		Random rnd = new Random(5);
+		for(int n=0; n<=max_length; n++){
+			byte[] gray = new byte[n+7];
+			rnd.nextBytes(gray);
+			for(int cut: cuts){
+				for(int offset=0; offset<=7; offset+=7){ //the row at the start of the array and part way into it
+					for(int bit=0; bit<128; bit+=n%3==0 ? 1 : 13){
+						long[] a = new long[((bit+n+63)>>>6)+1];
+						long[] b = new long[a.length];
+						scalar.threshold(gray, offset, n, cut, a, bit);
+						vector.threshold(gray, offset, n, cut, b, bit);
+						assertArrayEquals(a, b, "length "+n+", cut "+cut+", offset "+offset+", bit "+bit);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void thresholdOnlyOrs(){
+		//bits already set stay set and nothing outside the row is touched
+		byte[] gray = new byte[200];
+		Arrays.fill(gray, (byte)200);
+		long[] words = new long[6];
+		words[0] = 1L;
+		vector.threshold(gray, 0, 200, 100, words, 3);
+		assertEquals(1L, words[0]);
+		for(int i=1; i<words.length; i++){
+			assertEquals(0L, words[i]);
+		}
+		vector.threshold(gray, 0, 200, 256, words, 3);
+		assertEquals(-1L<<3|1L, words[0]);
+		assertEquals(-1L, words[1]);
+		assertEquals(-1L, words[2]);
+		assertEquals((1L<<(203-192))-1, words[3]);
+		assertEquals(0L, words[4]);
+	}
+
+	@Test
+	public void scalarThreshold(){
+		//the reference itself: a pixel is black when its unsigned gray value is below the cut
+		byte[] gray = {0, (byte)127, (byte)128, (byte)254, (byte)255};
+		for(int cut: cuts){
+			long[] words = new long[1];
+			scalar.threshold(gray, 0, gray.length, cut, words, 0);
+			for(int j=0; j<gray.length; j++){
+				assertEquals((gray[j]&0xff)<cut, (words[0]>>>j&1)==1, "gray "+(gray[j]&0xff)+", cut "+cut);
+			}
+		}
+	}
+}
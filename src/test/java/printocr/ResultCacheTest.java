@@ -0,0 +1,123 @@
+package printocr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/*****************************************************************************************************************
+*
+*  ResultCacheTest
+*
+*  Purpose: a document put in the ResultCache comes back page for page with the text and box of every line and
+*  	the text, confidence, word start and box of every glyph, also from a new cache on the same directory
+*
+******************************************************************************************************************/
+
+public class ResultCacheTest{
+
+	private Path dir;
+
+	@BeforeEach
+	public void directory() throws IOException{
+		dir = Files.createTempDirectory("resultcache");
+	}
+
+	@AfterEach
+	public void clean() throws IOException{
+		DirectoryStream<Path> files = Files.newDirectoryStream(dir);
+		try{
+			for(Path p: files){
+				Files.delete(p);
+			}
+		}finally{
+			files.close();
+		}
+		Files.delete(dir);
+	}
+
+	private static Region box(int xmin, int ymin, int xmax, int ymax){
+		Region r = new Region();
+		r.updateX(xmin);
+		r.updateX(xmax);
+		r.updateY(ymin);
+		r.updateY(ymax);
+		return r;
+	}
+
+	private static OcrLine line(int index, String text, int x, int y){
+		ArrayList<Region> regions = new ArrayList<Region>();
+		ArrayList<OcrGlyph> glyphs = new ArrayList<OcrGlyph>();
+		for(int i=0; i<text.length(); i++){
+			if(text.charAt(i)==' '){
+				continue;
+			}
+			Region r = box(x+10*i, y, x+10*i+7, y+12);
+			regions.add(r);
+			glyphs.add(new OcrGlyph(String.valueOf(text.charAt(i)), 0.5+i/100.0, i==0||text.charAt(i-1)==' ', r));
+		}
+		return new OcrLine(index, text, regions, glyphs);
+	}
+
+	private static OcrDocument document(){
+		OcrResult first = new OcrResult(Arrays.asList(line(0, "ab cd", 20, 30), line(1, "e", 20, 60)));
+		OcrResult second = new OcrResult(Arrays.asList(line(0, "xyz", 5, 5)));
+		OcrResult blank = new OcrResult(new ArrayList<OcrLine>());
+		return new OcrDocument(Arrays.asList(first, second, blank));
+	}
+
+	private static void assertSameDocument(OcrDocument a, OcrDocument b){
+		assertEquals(a.getText(), b.getText());
+		assertEquals(a.getPageCount(), b.getPageCount());
+		for(int p=0; p<a.getPageCount(); p++){
+			List<OcrLine> la = a.getPages().get(p).getLines();
+			List<OcrLine> lb = b.getPages().get(p).getLines();
+			assertEquals(la.size(), lb.size());
+			for(int i=0; i<la.size(); i++){
+				OcrLine x = la.get(i);
+				OcrLine y = lb.get(i);
+				assertEquals(x.getIndex(), y.getIndex());
+				assertEquals(x.getText(), y.getText());
+				assertEquals(Arrays.asList(x.getXmin(), x.getYmin(), x.getXmax(), x.getYmax()), Arrays.asList(y.getXmin(), y.getYmin(), y.getXmax(), y.getYmax()));
+				assertEquals(x.getGlyphs().size(), y.getGlyphs().size());
+				for(int k=0; k<x.getGlyphs().size(); k++){
+					OcrGlyph g = x.getGlyphs().get(k);
+					OcrGlyph h = y.getGlyphs().get(k);
+					assertEquals(g.getText(), h.getText());
+					assertEquals(g.getConfidence(), h.getConfidence(), 0);
+					assertEquals(g.isWordStart(), h.isWordStart());
+					assertEquals(Arrays.asList(g.getXmin(), g.getYmin(), g.getXmax(), g.getYmax()), Arrays.asList(h.getXmin(), h.getYmin(), h.getXmax(), h.getYmax()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void roundTrip() throws IOException{
+		OcrConfig config = new OcrConfig.Builder().build();
+		ResultCache cache = new ResultCache(dir, 1<<20, config);
+		assertNull(cache.get("k"));
+		OcrDocument doc = document();
+		cache.put("k", doc);
+		assertSameDocument(doc, cache.get("k"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		//read back by a new process
+		ResultCache reopened = new ResultCache(dir, 1<<20, config);
+		assertEquals(1, reopened.getEntryCount());
+		assertSameDocument(doc, reopened.get("k"));
+	}
+
+	@Test
+	public void evicts() throws IOException{
+		ResultCache cache = new ResultCache(dir, 1, new OcrConfig.Builder().build());
+		cache.put("a", document());
+		cache.put("b", document());
+		assertNull(cache.get("a"));
+		assertNotNull(cache.get("b"));
+		assertEquals(1, cache.getEvictions());
+	}
+}
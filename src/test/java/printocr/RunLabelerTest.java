@@ -0,0 +1,125 @@
+package printocr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/*****************************************************************************************************************
+*
+*  RunLabelerTest
+*
+*  Purpose: RunLabeler.label() finds the same component boxes as PrintOcr.cluster_connected_pixels(), on random
+*  	pages, on pixels that touch only at a corner, on runs that cross a 64 bit word of the page, and inside an area
+*  	of the page
+*
+******************************************************************************************************************/
+
+public class RunLabelerTest{
+
+	private PageArena arena;
+
+	@BeforeEach
+	public void open(){
+		arena = new PageArena(new PageArena.Pool(0));
+	}
+
+	@AfterEach
+	public void release(){
+		arena.close();
+	}
+
+	//the boxes as xmin,ymin,xmax,ymax strings, sorted, since the two labelers give them in different orders
+	private static List<String> boxes(List<Region> regions){
+		ArrayList<String> out = new ArrayList<String>();
+		for(Region r: regions){
+			out.add(r.getXmin()+","+r.getYmin()+","+r.getXmax()+","+r.getYmax());
+		}
+		Collections.sort(out);
+		return out;
+	}
+
+	private void assertSameBoxes(BitSet bits, int width, int height){
+		List<String> expected = boxes(PrintOcr.cluster_connected_pixels(bits, width, height));
+		assertEquals(expected, boxes(RunLabeler.label(PageBits.copyOf(bits, width, height, arena))));
+	}
+
+	@Test
+	public void randomPages(){
+		Random rnd = new Random(11);
+		int[][] sizes = {{1, 1}, {7, 5}, {64, 3}, {65, 9}, {100, 40}, {130, 70}};
+		for(int[] s: sizes){
+			for(int fill=10; fill<=60; fill+=25){
+				BitSet bits = new BitSet(s[0]*s[1]);
+				for(int i=0; i<s[0]*s[1]; i++){
+					if(rnd.nextInt(100)<fill){
+						bits.set(i);
+					}
+				}
+				assertSameBoxes(bits, s[0], s[1]);
+			}
+		}
+	}
+
+	@Test
+	public void touchingDiagonals(){
+		//a staircase and an x: the pixels touch only at their corners, so every one is its own component
+		int width = 20;
+		int height = 10;
+		BitSet bits = new BitSet(width*height);
+		for(int i=0; i<6; i++){
+			bits.set(i*width+i);
+		}
+		bits.set(1*width+12);
+		bits.set(1*width+14);
+		bits.set(2*width+13);
+		bits.set(3*width+12);
+		bits.set(3*width+14);
+		assertSameBoxes(bits, width, height);
+		assertEquals(11, RunLabeler.label(PageBits.copyOf(bits, width, height, arena)).size());
+	}
+
+	@Test
+	public void runsAcrossWords(){
+		//rows of 100 pixels don't start on a word, so these runs cross the 64 bit boundaries at different columns
+		int width = 100;
+		int height = 8;
+		BitSet bits = new BitSet(width*height);
+		bits.set(0*width+60, 0*width+70);
+		bits.set(1*width+27, 1*width+29); //pixel 127, 128 is a word boundary
+		bits.set(2*width+55, 2*width+75); //pixel 255, 256 is a word boundary
+		bits.set(3*width+74, 3*width+75); //joins the row above at its last pixel
+		bits.set(5*width+90, 6*width+10); //wraps from the end of one row to the start of the next
+		bits.set(7*width, 8*width); //a whole row, across two boundaries
+		assertSameBoxes(bits, width, height);
+	}
+
+	@Test
+	public void area(){
+		Random rnd = new Random(5);
+		int width = 150;
+		int height = 60;
+		BitSet bits = new BitSet(width*height);
+		for(int i=0; i<width*height; i++){
+			if(rnd.nextInt(100)<45){
+				bits.set(i);
+			}
+		}
+		PageBits page = PageBits.copyOf(bits, width, height, arena);
+		Rectangle[] areas = {new Rectangle(0, 0, width, height), new Rectangle(10, 5, 90, 30), new Rectangle(63, 0, 3, height), new Rectangle(149, 59, 1, 1), new Rectangle(40, 20, 0, 10)};
+		for(Rectangle a: areas){
+			//the same page with everything outside the area white
+			BitSet inside = new BitSet(width*height);
+			for(int y=a.y; y<a.y+a.height; y++){
+				for(int x=a.x; x<a.x+a.width; x++){
+					if(bits.get(y*width+x)){
+						inside.set(y*width+x);
+					}
+				}
+			}
+			List<String> expected = boxes(PrintOcr.cluster_connected_pixels(inside, width, height));
+			assertEquals(expected, boxes(RunLabeler.label(page, a)), "area "+a);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package printocr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/*****************************************************************************************************************
+*
+*  TextBlocksTest
+*
+*  Purpose: TextBlocks.binarize() has to give the same pixels as PrintOcr.convertImageToBinary(), isolated thin
+*  	strokes (one or two pixels wide, at every offset within a cell) included
+*
+******************************************************************************************************************/
+
+public class TextBlocksTest{
+
+	private static BufferedImage page(int width, int height){
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics g = img.getGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.dispose();
+		return img;
+	}
+
+	@Test
+	public void thinStrokes(){
+		for(int stroke=1; stroke<=2; stroke++){
+			for(int offset=0; offset<TextBlocks.COARSE_SCALE; offset++){
+				//a vertical and a horizontal stroke far from each other and from anything else
+				BufferedImage img = page(403, 301);
+				Graphics g = img.getGraphics();
+				g.setColor(Color.BLACK);
+				g.fillRect(100+offset, 40, stroke, 30);
+				g.fillRect(250, 200+offset, 40, stroke);
+				g.dispose();
+				ArrayList<Rectangle> blocks = new ArrayList<Rectangle>();
+				BitSet bits = TextBlocks.binarize(img, blocks);
+				assertEquals(PrintOcr.convertImageToBinary(img), bits, "stroke "+stroke+" at offset "+offset);
+				assertEquals(2, blocks.size(), "stroke "+stroke+" at offset "+offset);
+			}
+		}
+	}
+
+	@Test
+	public void dotAtTheEdge(){
+		//a single pixel in the partial cells past the last whole cell
+		BufferedImage img = page(403, 301);
+		img.setRGB(402, 300, 0);
+		ArrayList<Rectangle> blocks = new ArrayList<Rectangle>();
+		BitSet bits = TextBlocks.binarize(img, blocks);
+		assertEquals(PrintOcr.convertImageToBinary(img), bits);
+		assertTrue(bits.get(300*403+402));
+	}
+
+	@Test
+	public void grayPage(){
+		//read from the gray image's own bytes, a sub image so the rows don't start at the front of the array
+		BufferedImage gray = new BufferedImage(420, 330, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics g = gray.getGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, 420, 330);
+		g.setColor(Color.DARK_GRAY);
+		g.fillRect(40, 50, 1, 20);
+		g.fillRect(300, 250, 60, 2);
+		g.dispose();
+		BufferedImage img = gray.getSubimage(9, 13, 403, 301);
+		ArrayList<Rectangle> blocks = new ArrayList<Rectangle>();
+		BitSet bits = TextBlocks.binarize(img, blocks);
+		assertEquals(PrintOcr.convertImageToBinary(img), bits);
+		assertEquals(2, blocks.size());
+	}
+
+	@Test
+	public void speckledPage(){
+		Random rnd = new Random(7);
+		BufferedImage img = page(517, 389);
+		Graphics g = img.getGraphics();
+		for(int k=0; k<60; k++){
+			g.setColor(new Color(rnd.nextInt(120), rnd.nextInt(120), rnd.nextInt(120)));
+			g.fillRect(rnd.nextInt(510), rnd.nextInt(380), 1+rnd.nextInt(6), 1+rnd.nextInt(6));
+		}
+		g.dispose();
+		BitSet bits = TextBlocks.binarize(img, new ArrayList<Rectangle>());
+		assertEquals(PrintOcr.convertImageToBinary(img), bits);
+	}
+}